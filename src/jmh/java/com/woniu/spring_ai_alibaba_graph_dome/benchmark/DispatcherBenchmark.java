@@ -0,0 +1,110 @@
+package com.woniu.spring_ai_alibaba_graph_dome.benchmark;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.woniu.spring_ai_alibaba_graph_dome.Demo.RecordingNode;
+import com.woniu.spring_ai_alibaba_graph_dome.config.CustomerServiceConfiguration;
+import com.woniu.spring_ai_alibaba_graph_dome.config.GraphAutoConfiguration;
+import com.woniu.spring_ai_alibaba_graph_dome.config.RecommendedPlacesConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EdgeAction 调度器和 RecordingNode 的单次调用开销。
+ * 每个调度器都用“最差”的输入：匹配的类别排在判断链的最后，或者完全不匹配走默认分支。
+ * legacy* 是改用 LabelRouter 之前的 String.contains 实现（见 LegacyDispatchers），配合 -prof gc 对比耗时和分配。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatcherBenchmark {
+
+    private final GraphAutoConfiguration.FeedbackQuestionDispatcher feedbackDispatcher =
+            new GraphAutoConfiguration.FeedbackQuestionDispatcher();
+
+    private final GraphAutoConfiguration.SpecificQuestionDispatcher specificDispatcher =
+            new GraphAutoConfiguration.SpecificQuestionDispatcher();
+
+    private final CustomerServiceConfiguration.FeedbackQuestionDispatcher customerDispatcher =
+            new CustomerServiceConfiguration.FeedbackQuestionDispatcher();
+
+    private final RecommendedPlacesConfiguration.IntentClassifier intentClassifier =
+            new RecommendedPlacesConfiguration.IntentClassifier();
+
+    private final RecordingNode recordingNode = new RecordingNode();
+
+    private OverAllState negativeFeedback;
+
+    private OverAllState othersQuestion;
+
+    private OverAllState customerOther;
+
+    private OverAllState withoutIntent;
+
+    @Setup
+    public void setUp() {
+        negativeFeedback = GraphFixtures.stateWithClassifierOutput("The user is not satisfied: negative feedback");
+        othersQuestion = GraphFixtures.stateWithClassifierOutput("The question is about billing, so: others");
+        customerOther = GraphFixtures.stateWithClassifierOutput("与设备无关的问题：Other");
+        withoutIntent = GraphFixtures.stateWithClassifierOutput("General inquiry, without intent");
+    }
+
+    @Benchmark
+    public String feedbackQuestionDispatcher() throws Exception {
+        return feedbackDispatcher.apply(negativeFeedback);
+    }
+
+    @Benchmark
+    public String specificQuestionDispatcher() throws Exception {
+        return specificDispatcher.apply(othersQuestion);
+    }
+
+    @Benchmark
+    public String customerServiceDispatcher() throws Exception {
+        return customerDispatcher.apply(customerOther);
+    }
+
+    @Benchmark
+    public String intentClassifier() throws Exception {
+        return intentClassifier.apply(withoutIntent);
+    }
+
+    @Benchmark
+    public String legacyFeedbackQuestionDispatcher() throws Exception {
+        return LegacyDispatchers.FEEDBACK.apply(negativeFeedback);
+    }
+
+    @Benchmark
+    public String legacySpecificQuestionDispatcher() throws Exception {
+        return LegacyDispatchers.SPECIFIC.apply(othersQuestion);
+    }
+
+    @Benchmark
+    public String legacyCustomerServiceDispatcher() throws Exception {
+        return LegacyDispatchers.CUSTOMER_SERVICE.apply(customerOther);
+    }
+
+    @Benchmark
+    public String legacyIntentClassifier() throws Exception {
+        return LegacyDispatchers.INTENT.apply(withoutIntent);
+    }
+
+    @Benchmark
+    public Map<String, Object> recordingNode() {
+        return recordingNode.apply(negativeFeedback);
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.woniu.spring_ai_alibaba_graph_dome.benchmark;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.StateGraph;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import com.woniu.spring_ai_alibaba_graph_dome.batch.ClassifierBatching;
+import com.woniu.spring_ai_alibaba_graph_dome.cache.ClassificationCache;
+import com.woniu.spring_ai_alibaba_graph_dome.checkpoint.NodeCheckpointStore;
+import com.woniu.spring_ai_alibaba_graph_dome.config.CustomerServiceConfiguration;
+import com.woniu.spring_ai_alibaba_graph_dome.config.GraphAutoConfiguration;
+import com.woniu.spring_ai_alibaba_graph_dome.config.RecommendedPlacesConfiguration;
+import com.woniu.spring_ai_alibaba_graph_dome.distill.DistilledClassifier;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import com.woniu.spring_ai_alibaba_graph_dome.node.CompactClassifiers;
+import com.woniu.spring_ai_alibaba_graph_dome.resilience.ClassifierResilience;
+import com.woniu.spring_ai_alibaba_graph_dome.support.StubChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * 基准测试用的工作流：和线上同一套 @Configuration 代码构建，只是模型换成 {@link StubChatModel}，
+ * 分类缓存、节点 checkpoint 和模型调用容错关闭、结果不落盘（OutcomeSink 传 null）、节点在当前线程执行（并行分支除外）、指标写进内存里的 SimpleMeterRegistry，测到的就是图框架本身的开销。
+ */
+final class GraphFixtures {
+
+    static final Executor DIRECT = Runnable::run;
+
+    /* workflowGraphR 的并行分支必须真的跑在别的线程上 */
+    static final Executor BRANCHES = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "benchmark-branch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private GraphFixtures() {
+    }
+
+    static CompiledGraph compile(String graph) throws Exception {
+        ChatClient chatClient = ChatClient.builder(new StubChatModel()).build();
+        ClassificationCache noCache = new ClassificationCache(false, 0, Duration.ZERO, "");
+        NodeCheckpointStore noCheckpoints = new NodeCheckpointStore(false, "", Duration.ZERO, 0, DataSize.ofBytes(0));
+        ClassifierResilience noResilience = ClassifierResilience.disabled();
+        CompactClassifiers standard = CompactClassifiers.none();
+        DistilledClassifier noDistill = DistilledClassifier.off();
+        ClassifierBatching noBatching = ClassifierBatching.none();
+        GraphMetrics metrics = new GraphMetrics(new SimpleMeterRegistry());
+        StateGraph stateGraph = switch (graph) {
+            case "demo" -> new GraphAutoConfiguration().workflowGraph(chatClient, noCache, noCheckpoints, null, noResilience, standard, noBatching, noDistill, false, DIRECT, metrics);
+            case "demoCompact" -> new GraphAutoConfiguration().workflowGraph(chatClient, noCache, noCheckpoints, null, noResilience,
+                    new CompactClassifiers(Set.of("workflowGraph"), 500, 4), noBatching, noDistill, false, DIRECT, metrics);
+            case "demoFused" -> new GraphAutoConfiguration().workflowGraph(chatClient, noCache, noCheckpoints, null, noResilience, standard, noBatching, noDistill, true, DIRECT, metrics);
+            case "customerService" -> new CustomerServiceConfiguration().CustomerGraph(chatClient, noCache, noCheckpoints, null, noResilience, standard, noBatching, noDistill, DIRECT, metrics);
+            case "recommendedPlaces" -> new RecommendedPlacesConfiguration().workflowGraphR(chatClient, noCache, noCheckpoints, null, noResilience, standard, noBatching, noDistill, DIRECT, BRANCHES, metrics);
+            default -> throw new IllegalArgumentException("Unknown graph: " + graph);
+        };
+        return stateGraph.compile();
+    }
+
+    static OverAllState stateWithClassifierOutput(String classifierOutput) {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("input", new ReplaceStrategy());
+        state.registerKeyAndStrategy("classifier_output", new ReplaceStrategy());
+        state.registerKeyAndStrategy("solution", new ReplaceStrategy());
+        state.updateState(Map.of("classifier_output", classifierOutput));
+        return state;
+    }
+
+}
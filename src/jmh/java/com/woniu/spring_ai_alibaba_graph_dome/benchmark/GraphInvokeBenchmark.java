@@ -0,0 +1,50 @@
+package com.woniu.spring_ai_alibaba_graph_dome.benchmark;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整图 invoke 的吞吐、延迟；配合 -prof gc 看 gc.alloc.rate.norm（每次 invoke 分配的字节数）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphInvokeBenchmark {
+
+    @Param({"demo", "demoFused", "demoCompact", "customerService", "recommendedPlaces"})
+    public String graph;
+
+    private CompiledGraph compiledGraph;
+
+    private Map<String, Object> inputs;
+
+    @Setup
+    public void setUp() throws Exception {
+        compiledGraph = GraphFixtures.compile(graph);
+        inputs = Map.of("input", "快递太慢了，等了一个星期才到");
+    }
+
+    @Benchmark
+    public Object invoke() {
+        return compiledGraph.invoke(inputs)
+                .flatMap(state -> state.value("solution"))
+                .orElseThrow();
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.woniu.spring_ai_alibaba_graph_dome.benchmark;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.EdgeAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 改用 LabelRouter 之前的调度器实现（String.contains 判断链），只作为 DispatcherBenchmark 的对照组。
+ */
+final class LegacyDispatchers {
+
+    private static final Logger logger = LoggerFactory.getLogger(LegacyDispatchers.class);
+
+    private LegacyDispatchers() {
+    }
+
+    static final EdgeAction FEEDBACK = state -> {
+        String classifierOutput = classifierOutput(state);
+        if (classifierOutput.contains("positive")) {
+            return "positive";
+        }
+        return "negative";
+    };
+
+    static final EdgeAction SPECIFIC = state -> {
+        String classifierOutput = classifierOutput(state);
+        Map<String, String> classifierMap = new HashMap<>();
+        classifierMap.put("after-sale", "after-sale");
+        classifierMap.put("quality", "quality");
+        classifierMap.put("transportation", "transportation");
+        for (Map.Entry<String, String> entry : classifierMap.entrySet()) {
+            if (classifierOutput.contains(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return "others";
+    };
+
+    static final EdgeAction CUSTOMER_SERVICE = state -> {
+        String classifierOutput = classifierOutput(state);
+        if (classifierOutput.contains("新增设备")) {
+            return "新增设备";
+        } else if (classifierOutput.contains("维修记录")) {
+            return "维修记录";
+        } else if (classifierOutput.contains("设备下架")) {
+            return "设备下架";
+        } else if (classifierOutput.contains("手册导入")) {
+            return "手册导入";
+        } else if (classifierOutput.contains("运维经验录入")) {
+            return "运维经验录入";
+        }
+        return "Other";
+    };
+
+    static final EdgeAction INTENT = state -> {
+        String classifierOutput = classifierOutput(state);
+        if (classifierOutput.contains("with intent")) {
+            return "with intent";
+        }
+        return "without intent";
+    };
+
+    /* 和现在的调度器一样取值并打日志，两组只差在匹配逻辑上 */
+    private static String classifierOutput(OverAllState state) {
+        String classifierOutput = (String) state.value("classifier_output").orElse("");
+        logger.info("classifierOutput: {}", classifierOutput);
+        return classifierOutput;
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.woniu.spring_ai_alibaba_graph_dome.benchmark;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.OverAllStateFactory;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.StateSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次 run 创建初始状态的开销：legacy 是改用 StateSchema 之前配置类里的工厂 lambda（每个 key new 一个 ReplaceStrategy），
+ * schema 是现在共用策略实例、按数组注册的版本。配合 -prof gc 看 gc.alloc.rate.norm。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateSchemaBenchmark {
+
+    private final OverAllStateFactory legacy = () -> {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("input", new ReplaceStrategy());
+        state.registerKeyAndStrategy("classifier_output", new ReplaceStrategy());
+        state.registerKeyAndStrategy("solution", new ReplaceStrategy());
+        state.registerKeyAndStrategy("run_id", new ReplaceStrategy());
+        state.registerKeyAndStrategy("deadline_ms", new ReplaceStrategy());
+        return state;
+    };
+
+    private final StateSchema schema = StateSchema.builder()
+            .replace("input", "classifier_output", "solution", "run_id", "deadline_ms")
+            .build();
+
+    @Benchmark
+    public OverAllState legacy() {
+        return legacy.create();
+    }
+
+    @Benchmark
+    public OverAllState schema() {
+        return schema.newState();
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.woniu.spring_ai_alibaba_graph_dome.loadtest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.woniu.spring_ai_alibaba_graph_dome.support.StubChatModel;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地 DashScope 桩：实现 spring-ai-alibaba-starter-dashscope 用到的文本生成接口
+ * （POST /api/v1/services/aigc/text-generation/generation），应用把 spring.ai.dashscope.base-url 指过来即可，不消耗配额。
+ * <p>
+ * 回答和进程内的 {@link StubChatModel} 一致（按提示词里的类别表给固定类别）；
+ * 延迟按 {@link LatencyDistribution} 抽样，按比例返回 429（Throttling.RateQuota）和 500，
+ * 请求头带 X-DashScope-SSE: enable 时以 SSE 分片返回。
+ */
+final class DashScopeStub implements AutoCloseable {
+
+    private static final Gson GSON = new Gson();
+
+    private static final String GENERATION_PATH = "/api/v1/services/aigc/text-generation/generation";
+
+    /* 流式返回时每个分片的字符数 */
+    private static final int CHUNK_CHARS = 4;
+
+    private final LatencyDistribution latency;
+
+    private final double throttleRate;
+
+    private final double errorRate;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong throttled = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    DashScopeStub(int port, LatencyDistribution latency, double throttleRate, double errorRate) throws IOException {
+        this.latency = latency;
+        this.throttleRate = throttleRate;
+        this.errorRate = errorRate;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        /* 每个请求都要睡一段模拟延迟，不能用有界线程池，否则桩自己先成了瓶颈 */
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "dashscope-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(GENERATION_PATH, this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    Map<String, Long> counts() {
+        return Map.of("requests", requests.get(), "throttled", throttled.get(), "failed", failed.get());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            JsonObject request;
+            try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                request = GSON.fromJson(reader, JsonObject.class);
+            }
+            sleep(latency.sampleMillis());
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < throttleRate) {
+                throttled.incrementAndGet();
+                error(exchange, 429, "Throttling.RateQuota", "Requests rate limit exceeded, please try again later.");
+                return;
+            }
+            if (roll < throttleRate + errorRate) {
+                failed.incrementAndGet();
+                error(exchange, 500, "InternalError", "Stub injected failure.");
+                return;
+            }
+
+            String prompt = prompt(request);
+            String answer = StubChatModel.answer(prompt);
+            int inputTokens = tokens(prompt);
+            int outputTokens = tokens(answer);
+            if ("enable".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("X-DashScope-SSE"))) {
+                stream(exchange, answer, inputTokens, outputTokens);
+            } else {
+                byte[] body = GSON.toJson(completion(answer, "stop", inputTokens, outputTokens))
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void stream(HttpExchange exchange, String answer, int inputTokens, int outputTokens) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream;charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        int id = 0;
+        for (int start = 0; start < answer.length(); start += CHUNK_CHARS) {
+            int end = Math.min(answer.length(), start + CHUNK_CHARS);
+            boolean last = end == answer.length();
+            JsonObject chunk = completion(answer.substring(start, end), last ? "stop" : "null", inputTokens,
+                    last ? outputTokens : tokens(answer.substring(0, end)));
+            String event = "id:" + (++id) + "\nevent:result\n:HTTP_STATUS/200\ndata:" + GSON.toJson(chunk) + "\n\n";
+            out.write(event.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    private static JsonObject completion(String content, String finishReason, int inputTokens, int outputTokens) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", content);
+        JsonObject choice = new JsonObject();
+        choice.addProperty("finish_reason", finishReason);
+        choice.add("message", message);
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject output = new JsonObject();
+        output.add("choices", choices);
+
+        JsonObject usage = new JsonObject();
+        usage.addProperty("input_tokens", inputTokens);
+        usage.addProperty("output_tokens", outputTokens);
+        usage.addProperty("total_tokens", inputTokens + outputTokens);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("request_id", UUID.randomUUID().toString());
+        response.add("output", output);
+        response.add("usage", usage);
+        return response;
+    }
+
+    private static void error(HttpExchange exchange, int status, String code, String message) throws IOException {
+        JsonObject body = new JsonObject();
+        body.addProperty("request_id", UUID.randomUUID().toString());
+        body.addProperty("code", code);
+        body.addProperty("message", message);
+        byte[] bytes = GSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /* 所有消息的文本拼在一起；content 可能是字符串，也可能是 [{"text": ...}] */
+    private static String prompt(JsonObject request) {
+        StringBuilder prompt = new StringBuilder();
+        JsonObject input = request == null ? null : request.getAsJsonObject("input");
+        JsonArray messages = input == null ? null : input.getAsJsonArray("messages");
+        if (messages == null) {
+            return "";
+        }
+        for (JsonElement element : messages) {
+            JsonElement content = element.getAsJsonObject().get("content");
+            if (content == null || content.isJsonNull()) {
+                continue;
+            }
+            if (content.isJsonArray()) {
+                for (JsonElement part : content.getAsJsonArray()) {
+                    JsonElement text = part.getAsJsonObject().get("text");
+                    if (text != null) {
+                        prompt.append(text.getAsString()).append('\n');
+                    }
+                }
+            } else {
+                prompt.append(content.getAsString()).append('\n');
+            }
+        }
+        return prompt.toString();
+    }
+
+    /* 粗略估算：中文一字一 token，其它四个字符一 token */
+    private static int tokens(String text) {
+        int cjk = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.UnicodeScript.of(text.charAt(i)) == Character.UnicodeScript.HAN) {
+                cjk++;
+            }
+        }
+        return cjk + (text.length() - cjk + 3) / 4;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
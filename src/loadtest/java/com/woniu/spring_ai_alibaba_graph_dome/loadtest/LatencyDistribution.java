@@ -0,0 +1,46 @@
+package com.woniu.spring_ai_alibaba_graph_dome.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * DashScope 桩的响应延迟分布（毫秒），从字符串解析：
+ * <ul>
+ *     <li>fixed:200 —— 固定 200ms；</li>
+ *     <li>uniform:100:400 —— 100 到 400ms 均匀分布；</li>
+ *     <li>lognormal:300:0.5 —— 中位数 300ms、sigma 0.5 的对数正态分布，长尾和真实模型接口比较像。</li>
+ * </ul>
+ */
+@FunctionalInterface
+interface LatencyDistribution {
+
+    long sampleMillis();
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed": {
+                    long millis = Long.parseLong(parts[1]);
+                    return () -> millis;
+                }
+                case "uniform": {
+                    long min = Long.parseLong(parts[1]);
+                    long max = Long.parseLong(parts[2]);
+                    return () -> ThreadLocalRandom.current().nextLong(min, max + 1);
+                }
+                case "lognormal": {
+                    double mu = Math.log(Double.parseDouble(parts[1]));
+                    double sigma = Double.parseDouble(parts[2]);
+                    return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+                }
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid latency distribution: " + spec, e);
+        }
+        throw new IllegalArgumentException("Unknown latency distribution: " + spec
+                + " (expected fixed:ms, uniform:min:max or lognormal:median:sigma)");
+    }
+
+}
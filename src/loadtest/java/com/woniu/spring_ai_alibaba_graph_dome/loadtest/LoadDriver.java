@@ -0,0 +1,211 @@
+package com.woniu.spring_ai_alibaba_graph_dome.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 开环压测：每个接口按固定速率发请求，不等上一个请求返回（服务变慢时请求照样进来，和线上一致）。
+ * 预热阶段发出的请求不计入结果。
+ */
+final class LoadDriver {
+
+    private final HttpClient client;
+
+    private final ExecutorService callbacks;
+
+    private final Duration requestTimeout;
+
+    private final boolean uniqueQueries;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    LoadDriver(Duration requestTimeout, boolean uniqueQueries) {
+        this.callbacks = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "load-driver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .executor(callbacks)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.requestTimeout = requestTimeout;
+        this.uniqueQueries = uniqueQueries;
+    }
+
+    /**
+     * 对所有接口同时施压：先 warmup 再 duration，返回每个接口在 duration 内发出的请求的统计。
+     */
+    List<EndpointStats> run(String baseUrl, List<Endpoint> endpoints, double rps, Duration warmup, Duration duration)
+            throws InterruptedException {
+        List<EndpointStats> results = new ArrayList<>();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(endpoints.size());
+        List<ScheduledFuture<?>> tickers = new ArrayList<>();
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        long periodNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rps));
+        for (Endpoint endpoint : endpoints) {
+            EndpointStats stats = new EndpointStats(endpoint.name(), requestTimeout);
+            results.add(stats);
+            tickers.add(scheduler.scheduleAtFixedRate(() -> {
+                long now = System.nanoTime();
+                send(baseUrl, endpoint, now >= measureFrom && now < measureUntil ? stats : null);
+            }, 0, periodNanos, TimeUnit.NANOSECONDS));
+        }
+
+        TimeUnit.NANOSECONDS.sleep(measureUntil - System.nanoTime());
+        tickers.forEach(ticker -> ticker.cancel(false));
+        scheduler.shutdown();
+        /* 等在途请求回来（最多一个请求超时） */
+        long drainUntil = System.nanoTime() + requestTimeout.toNanos();
+        for (EndpointStats stats : results) {
+            while (stats.pending() > 0 && System.nanoTime() < drainUntil) {
+                Thread.sleep(50);
+            }
+            stats.finish(duration);
+        }
+        return results;
+    }
+
+    private void send(String baseUrl, Endpoint endpoint, EndpointStats stats) {
+        long n = sequence.incrementAndGet();
+        String query = endpoint.queries().get((int) (n % endpoint.queries().size()));
+        if (uniqueQueries) {
+            /* 加上序号，绕开分类缓存和相同请求合并，每个请求都真的调用模型 */
+            query = query + " #" + n;
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint.path() + "?query="
+                        + URLEncoder.encode(query, StandardCharsets.UTF_8)))
+                .timeout(requestTimeout)
+                .GET()
+                .build();
+        long start = System.nanoTime();
+        if (stats != null) {
+            stats.sent();
+        }
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (stats != null) {
+                        stats.complete(System.nanoTime() - start, response == null ? -1 : response.statusCode());
+                    }
+                });
+    }
+
+    void close() {
+        callbacks.shutdownNow();
+    }
+
+    record Endpoint(String name, String path, List<String> queries) {
+    }
+
+    /**
+     * 单个接口的统计；status -1 表示连接失败或客户端超时。
+     * <p>
+     * 延迟分位数包含所有请求，不只是成功的：只统计成功请求时，服务越慢、超时越多，p99 反而越好看。
+     * 客户端超时和压测结束时还没回来的请求按请求超时计。
+     */
+    static final class EndpointStats {
+
+        private final String name;
+
+        private final AtomicLong sent = new AtomicLong();
+
+        private final AtomicLong completed = new AtomicLong();
+
+        private final AtomicLong ok = new AtomicLong();
+
+        private final AtomicLong rejected = new AtomicLong();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final long timeoutNanos;
+
+        private final List<Long> latencies = new ArrayList<>();
+
+        private Report report;
+
+        EndpointStats(String name, Duration requestTimeout) {
+            this.name = name;
+            this.timeoutNanos = requestTimeout.toNanos();
+        }
+
+        void sent() {
+            sent.incrementAndGet();
+        }
+
+        long pending() {
+            return sent.get() - completed.get();
+        }
+
+        void complete(long nanos, int status) {
+            synchronized (latencies) {
+                latencies.add(status == -1 ? Math.max(nanos, timeoutNanos) : nanos);
+            }
+            if (status >= 200 && status < 300) {
+                ok.incrementAndGet();
+            } else if (status == 429) {
+                rejected.incrementAndGet();
+            } else {
+                errors.incrementAndGet();
+            }
+            completed.incrementAndGet();
+        }
+
+        void finish(Duration duration) {
+            long[] sorted;
+            synchronized (latencies) {
+                sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            }
+            /* 没回来的请求至少等了一个请求超时 */
+            int outstanding = (int) Math.max(0, pending());
+            sorted = Arrays.copyOf(sorted, sorted.length + outstanding);
+            Arrays.fill(sorted, sorted.length - outstanding, sorted.length, timeoutNanos);
+            Arrays.sort(sorted);
+            long total = sent.get();
+            report = new Report(name, total, ok.get(), rejected.get(), errors.get() + pending(),
+                    ok.get() / (duration.toMillis() / 1000.0),
+                    total == 0 ? 0 : (double) (total - ok.get()) / total,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1_000_000.0);
+        }
+
+        Report report() {
+            return report;
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+        }
+
+    }
+
+    /**
+     * @param rejected   429 的个数（准入控制拒绝）
+     * @param errors     其它非 2xx、连接失败、超时以及压测结束时还没回来的请求
+     * @param throughput 每秒成功的请求数
+     * @param errorRate  非 2xx（含 429）占发出请求的比例
+     * @param p50Ms      所有发出请求的延迟分位数（毫秒，超时和没回来的按请求超时计），p95Ms、p99Ms、maxMs 同理
+     */
+    record Report(String endpoint, long sent, long ok, long rejected, long errors, double throughput,
+                  double errorRate, double p50Ms, double p95Ms, double p99Ms, double maxMs) {
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.woniu.spring_ai_alibaba_graph_dome.loadtest;
+
+import com.google.gson.GsonBuilder;
+import com.woniu.spring_ai_alibaba_graph_dome.SpringAiAlibabaGraphDomeApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 端到端压测：起本地 DashScope 桩（{@link DashScopeStub}）和整个应用，按目标 RPS 打四个接口，输出延迟分位数、吞吐和错误率。
+ * <pre>
+ * mvn -Ploadtest -DskipTests test-compile exec:exec
+ * mvn -Ploadtest -DskipTests test-compile exec:exec -Dloadtest.args="--rps 20 --duration 60s --latency lognormal:800:0.6 --throttle-rate 0.02"
+ * </pre>
+ * 参数（--name value）：
+ * <ul>
+ *     <li>--endpoints：demo、customerService、recommendedPlaces、helloworld、helloworldStream 中的若干个，逗号分隔，默认全部；</li>
+ *     <li>--rps：每个接口每秒的请求数；--warmup、--duration：预热和统计时长；--timeout：单个请求的客户端超时；</li>
+ *     <li>--latency：桩的延迟分布（见 {@link LatencyDistribution}）；--throttle-rate、--error-rate：桩返回 429 / 500 的比例；</li>
+ *     <li>--unique-queries：默认 true，每个请求的输入都不同，分类缓存和相同请求合并不起作用；</li>
+ *     <li>--max-p99、--max-error-rate：任一接口超过时以非 0 退出，CI 里据此判断性能回退。</li>
+ * </ul>
+ * 写成 --name=value 的参数原样交给 Spring，例如 --graph.admission.max-limit=16。
+ * 应用的数据文件（缓存快照、checkpoint、outcomes 等）写到 target/loadtest 下，不碰 ./data。
+ */
+public final class LoadTest {
+
+    private static final Map<String, LoadDriver.Endpoint> ENDPOINTS = new LinkedHashMap<>();
+
+    static {
+        ENDPOINTS.put("demo", new LoadDriver.Endpoint("demo", "/graph/demo/chat",
+                List.of("快递太慢了，等了一个星期才到", "东西很好用，下次还买", "收到的商品有破损")));
+        ENDPOINTS.put("customerService", new LoadDriver.Endpoint("customerService", "/graph/customerService/chat",
+                List.of("新增一台空压机，编号 A-102", "3 号产线的电机上周换过轴承", "把旧的叉车下架")));
+        ENDPOINTS.put("recommendedPlaces", new LoadDriver.Endpoint("recommendedPlaces", "/graph/recommendedPlaces/places",
+                List.of("周末想去杭州玩两天", "推荐几个适合带孩子去的地方", "今天天气怎么样")));
+        ENDPOINTS.put("helloworld", new LoadDriver.Endpoint("helloworld", "/helloworld/simple/chat",
+                List.of("你好，介绍一下你自己", "写一句关于春天的诗")));
+        ENDPOINTS.put("helloworldStream", new LoadDriver.Endpoint("helloworldStream", "/helloworld/simple/chat/stream",
+                List.of("你好，介绍一下你自己", "写一句关于春天的诗")));
+    }
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> springArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--") && args[i].contains("=")) {
+                springArgs.add(args[i]);
+            } else if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i].substring(2), args[++i]);
+            } else {
+                throw new IllegalArgumentException("Expected --name value or --spring.property=value, got " + args[i]);
+            }
+        }
+        List<LoadDriver.Endpoint> endpoints = new ArrayList<>();
+        for (String name : options.getOrDefault("endpoints", String.join(",", ENDPOINTS.keySet())).split(",")) {
+            LoadDriver.Endpoint endpoint = ENDPOINTS.get(name.trim());
+            if (endpoint == null) {
+                throw new IllegalArgumentException("Unknown endpoint " + name + ", expected one of " + ENDPOINTS.keySet());
+            }
+            endpoints.add(endpoint);
+        }
+        double rps = Double.parseDouble(options.getOrDefault("rps", "10"));
+        Duration warmup = duration(options.getOrDefault("warmup", "10s"));
+        Duration duration = duration(options.getOrDefault("duration", "30s"));
+        Duration timeout = duration(options.getOrDefault("timeout", "30s"));
+        boolean uniqueQueries = Boolean.parseBoolean(options.getOrDefault("unique-queries", "true"));
+        double maxP99 = Double.parseDouble(options.getOrDefault("max-p99", "0"));
+        double maxErrorRate = Double.parseDouble(options.getOrDefault("max-error-rate", "1"));
+        Path workDir = Paths.get(options.getOrDefault("work-dir", "target/loadtest"));
+        Files.createDirectories(workDir);
+
+        try (DashScopeStub stub = new DashScopeStub(0,
+                LatencyDistribution.parse(options.getOrDefault("latency", "lognormal:300:0.5")),
+                Double.parseDouble(options.getOrDefault("throttle-rate", "0")),
+                Double.parseDouble(options.getOrDefault("error-rate", "0")))) {
+            List<String> appArgs = new ArrayList<>(List.of(
+                    "--server.port=0",
+                    "--spring.ai.dashscope.base-url=" + stub.baseUrl(),
+                    "--spring.ai.dashscope.api-key=loadtest",
+                    "--graph.cache.snapshot-file=" + workDir.resolve("classification-cache.json"),
+                    "--graph.checkpoint.file=" + workDir.resolve("checkpoints.log"),
+                    "--graph.outcomes.file=" + workDir.resolve("outcomes.jsonl"),
+                    "--graph.memory.spill-dir=" + workDir.resolve("chat-memory"),
+                    "--graph.distilled.model-file=" + workDir.resolve("distilled-model.bin"),
+                    "--graph.distilled.label-log=" + workDir.resolve("labels.jsonl")));
+            appArgs.addAll(springArgs);
+
+            List<LoadDriver.Report> reports = new ArrayList<>();
+            try (ConfigurableApplicationContext context = SpringApplication.run(SpringAiAlibabaGraphDomeApplication.class,
+                    appArgs.toArray(String[]::new))) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                System.out.printf("Load test: %s at %.1f rps each, warmup %s, duration %s, stub %s%n",
+                        endpoints.stream().map(LoadDriver.Endpoint::name).toList(), rps, warmup, duration, stub.baseUrl());
+                LoadDriver driver = new LoadDriver(timeout, uniqueQueries);
+                try {
+                    for (LoadDriver.EndpointStats stats : driver.run("http://127.0.0.1:" + port, endpoints, rps, warmup,
+                            duration)) {
+                        reports.add(stats.report());
+                    }
+                } finally {
+                    driver.close();
+                }
+            }
+
+            print(reports, stub.counts());
+            Path reportFile = workDir.resolve("report.json");
+            write(reportFile, reports);
+            System.out.println("Report written to " + reportFile.toAbsolutePath());
+
+            boolean failed = false;
+            for (LoadDriver.Report report : reports) {
+                if (maxP99 > 0 && report.p99Ms() > maxP99) {
+                    System.out.printf("FAIL %s: p99 %.1f ms > %.1f ms%n", report.endpoint(), report.p99Ms(), maxP99);
+                    failed = true;
+                }
+                if (report.errorRate() > maxErrorRate) {
+                    System.out.printf("FAIL %s: error rate %.3f > %.3f%n", report.endpoint(), report.errorRate(),
+                            maxErrorRate);
+                    failed = true;
+                }
+            }
+            if (failed) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static void print(List<LoadDriver.Report> reports, Map<String, Long> stubCounts) {
+        System.out.printf("%-18s %7s %7s %6s %6s %9s %7s %9s %9s %9s %9s%n",
+                "endpoint", "sent", "ok", "429", "error", "ok/s", "err%", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (LoadDriver.Report r : reports) {
+            System.out.printf("%-18s %7d %7d %6d %6d %9.2f %6.2f%% %9.1f %9.1f %9.1f %9.1f%n",
+                    r.endpoint(), r.sent(), r.ok(), r.rejected(), r.errors(), r.throughput(), r.errorRate() * 100,
+                    r.p50Ms(), r.p95Ms(), r.p99Ms(), r.maxMs());
+        }
+        System.out.println("DashScope stub: " + stubCounts);
+    }
+
+    private static void write(Path file, List<LoadDriver.Report> reports) throws IOException {
+        Files.writeString(file, new GsonBuilder().setPrettyPrinting().create().toJson(reports));
+    }
+
+    private static Duration duration(String value) {
+        return DurationStyle.detectAndParse(value);
+    }
+
+}
@@ -0,0 +1,253 @@
+package com.woniu.spring_ai_alibaba_graph_dome.loadtest;
+
+import com.google.gson.GsonBuilder;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动耗时和常驻内存（RSS）对比：同一份代码的普通 jar、CDS、native image 各冷启动若干次，
+ * 从拉起进程开始计时，到 HTTP 端口第一次返回响应为止（Spring 容器刷新完才开始接受连接），
+ * 此时读 /proc/&lt;pid&gt;/status 里的 VmRSS / VmHWM，然后正常关闭进程再开始下一次。
+ * <pre>
+ * mvn -DskipTests package                      # 普通 jar
+ * mvn -Pcds -DskipTests package                # 再加上 target/cds（训练运行生成 application.jsa）
+ * mvn -Pnative -DskipTests native:compile      # 再加上 native 可执行文件（需要 GraalVM）
+ * mvn -Ploadtest,startup -DskipTests test-compile exec:exec
+ * </pre>
+ * 参数（--name value）：
+ * <ul>
+ *     <li>--variants：jar、aot、cds、native 中的若干个，逗号分隔；默认测已经构建出来的 jar / cds / native。
+ *     aot 是带 -Dspring.aot.enabled=true 跑 -Pnative 打出来的 jar；</li>
+ *     <li>--runs：每种方式启动几次，报告取中位数；--timeout：单次启动最多等多久；</li>
+ *     <li>--jar、--cds-dir、--native：产物路径，默认 target 下 Maven 的输出；</li>
+ *     <li>--max-startup-ms：任一方式的中位启动耗时超过时以非 0 退出。</li>
+ * </ul>
+ * 写成 --name=value 的参数原样交给应用。应用不会调用 DashScope，数据文件写到 target/startup 下。
+ * RSS 只在 Linux 上能取到，其它系统报告为 -1。
+ */
+public final class StartupBenchmark {
+
+    private static final String ARTIFACT = "Spring_AI_Alibaba_Graph_Dome";
+
+    private static final String JAR = "target/" + ARTIFACT + "-0.0.1-SNAPSHOT.jar";
+
+    private static final String CDS_JAR = ARTIFACT + "-0.0.1-SNAPSHOT-cds.jar";
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> springArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--") && args[i].contains("=")) {
+                springArgs.add(args[i]);
+            } else if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i].substring(2), args[++i]);
+            } else {
+                throw new IllegalArgumentException("Expected --name value or --spring.property=value, got " + args[i]);
+            }
+        }
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        Duration timeout = DurationStyle.detectAndParse(options.getOrDefault("timeout", "120s"));
+        double maxStartupMs = Double.parseDouble(options.getOrDefault("max-startup-ms", "0"));
+        Path workDir = Paths.get(options.getOrDefault("work-dir", "target/startup"));
+        Files.createDirectories(workDir);
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Path jar = Paths.get(options.getOrDefault("jar", JAR));
+        Path cdsDir = Paths.get(options.getOrDefault("cds-dir", "target/cds"));
+        Path nativeImage = Paths.get(options.getOrDefault("native", "target/" + ARTIFACT));
+
+        Map<String, List<String>> commands = new LinkedHashMap<>();
+        commands.put("jar", List.of(java, "-jar", jar.toString()));
+        commands.put("aot", List.of(java, "-Dspring.aot.enabled=true", "-jar", jar.toString()));
+        commands.put("cds", List.of(java, "-XX:SharedArchiveFile=" + cdsDir.resolve("application.jsa"),
+                "-jar", cdsDir.resolve(CDS_JAR).toString()));
+        commands.put("native", List.of(nativeImage.toString()));
+
+        List<String> variants = new ArrayList<>();
+        if (options.containsKey("variants")) {
+            for (String name : options.get("variants").split(",")) {
+                if (!commands.containsKey(name.trim())) {
+                    throw new IllegalArgumentException("Unknown variant " + name + ", expected one of " + commands.keySet());
+                }
+                variants.add(name.trim());
+            }
+        } else {
+            if (Files.isRegularFile(jar)) {
+                variants.add("jar");
+            }
+            if (Files.isRegularFile(cdsDir.resolve("application.jsa"))) {
+                variants.add("cds");
+            }
+            if (Files.isExecutable(nativeImage)) {
+                variants.add("native");
+            }
+            if (variants.isEmpty()) {
+                throw new IllegalStateException("Nothing to measure, build the jar first: mvn -DskipTests package");
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        List<Report> reports = new ArrayList<>();
+        for (String variant : variants) {
+            double[] startupMs = new double[runs];
+            double[] rssMb = new double[runs];
+            double[] peakRssMb = new double[runs];
+            for (int run = 0; run < runs; run++) {
+                Sample sample = launch(client, variant, commands.get(variant), springArgs, workDir, timeout);
+                startupMs[run] = sample.startupMs();
+                rssMb[run] = sample.rssMb();
+                peakRssMb[run] = sample.peakRssMb();
+                System.out.printf("%-7s run %d: %.0f ms, RSS %.1f MB%n", variant, run + 1, sample.startupMs(),
+                        sample.rssMb());
+            }
+            reports.add(new Report(variant, String.join(" ", commands.get(variant)), runs, median(startupMs),
+                    min(startupMs), max(startupMs), median(rssMb), max(peakRssMb)));
+        }
+
+        print(reports);
+        Path reportFile = workDir.resolve("report.json");
+        Files.writeString(reportFile, new GsonBuilder().setPrettyPrinting().create().toJson(reports));
+        System.out.println("Report written to " + reportFile.toAbsolutePath());
+
+        boolean failed = false;
+        for (Report report : reports) {
+            if (maxStartupMs > 0 && report.startupP50Ms() > maxStartupMs) {
+                System.out.printf("FAIL %s: startup %.0f ms > %.0f ms%n", report.variant(), report.startupP50Ms(),
+                        maxStartupMs);
+                failed = true;
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static Sample launch(HttpClient client, String variant, List<String> command, List<String> springArgs,
+                                 Path workDir, Duration timeout) throws IOException, InterruptedException {
+        int port = freePort();
+        Path dataDir = workDir.resolve(variant);
+        List<String> fullCommand = new ArrayList<>(command);
+        fullCommand.addAll(List.of(
+                "--server.port=" + port,
+                "--spring.ai.dashscope.api-key=startup",
+                "--graph.cache.snapshot-file=" + dataDir.resolve("classification-cache.json"),
+                "--graph.checkpoint.file=" + dataDir.resolve("checkpoints.log"),
+                "--graph.outcomes.file=" + dataDir.resolve("outcomes.jsonl"),
+                "--graph.memory.spill-dir=" + dataDir.resolve("chat-memory"),
+                "--graph.distilled.model-file=" + dataDir.resolve("distilled-model.bin"),
+                "--graph.distilled.label-log=" + dataDir.resolve("labels.jsonl")));
+        fullCommand.addAll(springArgs);
+        Files.createDirectories(dataDir);
+
+        HttpRequest probe = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/actuator/health"))
+                .timeout(Duration.ofSeconds(1))
+                .build();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(fullCommand)
+                .redirectErrorStream(true)
+                .redirectOutput(dataDir.resolve("app.log").toFile())
+                .start();
+        try {
+            long deadline = start + timeout.toNanos();
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(variant + " exited with " + process.exitValue() + ", see "
+                            + dataDir.resolve("app.log"));
+                }
+                try {
+                    /* 任何响应都说明已经启动完成，health 是不是 UP 不影响计时 */
+                    client.send(probe, HttpResponse.BodyHandlers.discarding());
+                    break;
+                } catch (IOException notYet) {
+                    if (System.nanoTime() > deadline) {
+                        throw new IllegalStateException(variant + " did not start within " + timeout);
+                    }
+                    Thread.sleep(10);
+                }
+            }
+            double startupMs = (System.nanoTime() - start) / 1_000_000.0;
+            return new Sample(startupMs, statusMb(process.pid(), "VmRSS"), statusMb(process.pid(), "VmHWM"));
+        } finally {
+            /* SIGTERM，让应用正常关闭（写快照等），超时再强杀 */
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    /* /proc/<pid>/status 里的 "VmRSS:   123456 kB" */
+    private static double statusMb(long pid, String field) {
+        Path status = Paths.get("/proc", Long.toString(pid), "status");
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith(field + ":")) {
+                    String[] parts = line.substring(field.length() + 1).trim().split("\\s+");
+                    return Long.parseLong(parts[0]) / 1024.0;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            /* 不是 Linux，或进程已经退出 */
+        }
+        return -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    private static double min(double[] values) {
+        return Arrays.stream(values).min().orElse(0);
+    }
+
+    private static double max(double[] values) {
+        return Arrays.stream(values).max().orElse(0);
+    }
+
+    private static void print(List<Report> reports) {
+        System.out.printf("%-8s %5s %12s %10s %10s %12s %14s%n",
+                "variant", "runs", "startup ms", "min ms", "max ms", "RSS MB", "peak RSS MB");
+        for (Report r : reports) {
+            System.out.printf("%-8s %5d %12.0f %10.0f %10.0f %12.1f %14.1f%n",
+                    r.variant(), r.runs(), r.startupP50Ms(), r.startupMinMs(), r.startupMaxMs(), r.rssP50Mb(),
+                    r.peakRssMaxMb());
+        }
+    }
+
+    private record Sample(double startupMs, double rssMb, double peakRssMb) {
+    }
+
+    record Report(String variant, String command, int runs, double startupP50Ms, double startupMinMs,
+                  double startupMaxMs, double rssP50Mb, double peakRssMaxMb) {
+    }
+
+}
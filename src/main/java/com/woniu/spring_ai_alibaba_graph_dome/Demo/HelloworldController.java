@@ -1,26 +1,63 @@
 package com.woniu.spring_ai_alibaba_graph_dome.Demo;
 
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import com.woniu.spring_ai_alibaba_graph_dome.admission.ModelAdmission;
+import com.woniu.spring_ai_alibaba_graph_dome.memory.BoundedChatMemory;
+import com.woniu.spring_ai_alibaba_graph_dome.memory.SingleSystemPromptAdvisor;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/helloworld")
 public class HelloworldController {
+    private static final Logger logger = LoggerFactory.getLogger(HelloworldController.class);
+
     private static final String DEFAULT_PROMPT = "你是一个博学的智能聊天助手，请根据用户提问回答！";
  
     private final ChatClient dashScopeChatClient;
+
+    private final long streamTimeoutMs;
+
+    private final BoundedChatMemory chatMemory;
+
+    private final MessageChatMemoryAdvisor memoryAdvisor;
+
+    /* 会话摘要和 DEFAULT_PROMPT 合成开头的一条系统消息 */
+    private final SingleSystemPromptAdvisor systemPromptAdvisor = new SingleSystemPromptAdvisor();
  
-    public HelloworldController(ChatClient.Builder chatClientBuilder) {
+    public HelloworldController(ChatClient.Builder chatClientBuilder, GraphMetrics graphMetrics,
+                               ModelAdmission modelAdmission, BoundedChatMemory chatMemory,
+                               @Value("${graph.stream.timeout-ms:120000}") long streamTimeoutMs) {
+        this.streamTimeoutMs = streamTimeoutMs;
+        this.chatMemory = chatMemory;
+        this.memoryAdvisor = MessageChatMemoryAdvisor.builder(chatMemory).build();
         this.dashScopeChatClient = chatClientBuilder
                 .defaultSystem(DEFAULT_PROMPT)
                 // 实现 Logger 的 Advisor
                 .defaultAdvisors(
-                        new SimpleLoggerAdvisor()
+                        new SimpleLoggerAdvisor(),
+                        graphMetrics.advisor("helloworld"),
+                        // 和工作流共用 DashScope 配额，按 helloworld 分道排队
+                        modelAdmission.advisor("helloworld")
                 )
                 // 设置 ChatClient 中 ChatModel 的 Options 参数
                 .defaultOptions(
@@ -32,13 +69,92 @@ public class HelloworldController {
     }
  
 /**
-     * ChatClient 简单调用*/
+     * ChatClient 简单调用；带 sessionId 时同一会话的多轮对话共享记忆（见 BoundedChatMemory）*/
 
 
     @GetMapping("/simple/chat")
-    public String simpleChat(@RequestParam(value = "query", defaultValue = "你好，很高兴认识你，能简单介绍一下自己吗？")String query) {
+    public String simpleChat(@RequestParam(value = "query", defaultValue = "你好，很高兴认识你，能简单介绍一下自己吗？")String query,
+                             @RequestParam(value = "sessionId", required = false) String sessionId) {
  
-        System.out.println(123);
-        return dashScopeChatClient.prompt(query).call().content();
+        return prompt(query, sessionId).call().content();
+    }
+
+    /**
+     * 流式调用：模型每生成一段就推一条 SSE，首字延迟不再等于整段回答的耗时。
+     * <p>
+     * 事件格式：
+     * event: token data: 一段文本
+     * event: done  data: {"firstTokenMs":312,"elapsedMs":2405,"chars":186}
+     * event: error data: {"message":"..."}
+     * 客户端断开、超时时取消订阅，DashScope 的流式请求随之断开，不再为没人看的回答付费。
+     */
+    @GetMapping(value = "/simple/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChat(@RequestParam(value = "query", defaultValue = "你好，很高兴认识你，能简单介绍一下自己吗？")String query,
+                                 @RequestParam(value = "sessionId", required = false) String sessionId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        long start = System.nanoTime();
+        AtomicLong firstToken = new AtomicLong(-1);
+        AtomicLong chars = new AtomicLong();
+        AtomicReference<Disposable> subscription = new AtomicReference<>();
+
+        Disposable disposable = prompt(query, sessionId).stream().content().subscribe(
+                token -> {
+                    firstToken.compareAndSet(-1, System.nanoTime() - start);
+                    chars.addAndGet(token.length());
+                    try {
+                        emitter.send(SseEmitter.event().name("token").data(token));
+                    } catch (IOException | IllegalStateException e) {
+                        /* 客户端已断开，或 emitter 已经超时结束 */
+                        logger.debug("Chat stream client disconnected", e);
+                        cancel(subscription);
+                        emitter.completeWithError(e);
+                    }
+                },
+                error -> {
+                    logger.warn("Chat stream failed", error);
+                    try {
+                        emitter.send(SseEmitter.event().name("error").data(Map.of("message", String.valueOf(error.getMessage()))));
+                        emitter.complete();
+                    } catch (IOException | IllegalStateException ignored) {
+                        emitter.completeWithError(error);
+                    }
+                },
+                () -> {
+                    Map<String, Object> done = new LinkedHashMap<>();
+                    done.put("firstTokenMs", firstToken.get() < 0 ? null : firstToken.get() / 1_000_000);
+                    done.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+                    done.put("chars", chars.get());
+                    try {
+                        emitter.send(SseEmitter.event().name("done").data(done));
+                        emitter.complete();
+                    } catch (IOException | IllegalStateException e) {
+                        emitter.completeWithError(e);
+                    }
+                });
+        subscription.set(disposable);
+        /* 超时、连接出错或请求结束时（包括 Tomcat 发现客户端断开）都取消订阅；已经结束的订阅取消是空操作 */
+        emitter.onTimeout(() -> cancel(subscription));
+        emitter.onError(error -> cancel(subscription));
+        emitter.onCompletion(() -> cancel(subscription));
+        return emitter;
+    }
+
+    /**
+     * 没有 sessionId 时不挂记忆，避免所有匿名请求落进同一个默认会话。
+     */
+    private ChatClient.ChatClientRequestSpec prompt(String query, String sessionId) {
+        ChatClient.ChatClientRequestSpec spec = dashScopeChatClient.prompt(query);
+        if (sessionId == null || sessionId.isBlank() || !chatMemory.enabled()) {
+            return spec;
+        }
+        return spec.advisors(memoryAdvisor, systemPromptAdvisor)
+                .advisors(advisor -> advisor.param(ChatMemory.CONVERSATION_ID, sessionId));
+    }
+
+    private static void cancel(AtomicReference<Disposable> subscription) {
+        Disposable disposable = subscription.get();
+        if (disposable != null) {
+            disposable.dispose();
+        }
     }
 }
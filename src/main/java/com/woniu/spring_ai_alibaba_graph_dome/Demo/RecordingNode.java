@@ -2,16 +2,42 @@ package com.woniu.spring_ai_alibaba_graph_dome.Demo;
 
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.woniu.spring_ai_alibaba_graph_dome.checkpoint.NodeCheckpointStore;
+import com.woniu.spring_ai_alibaba_graph_dome.outcome.OutcomeRecord;
+import com.woniu.spring_ai_alibaba_graph_dome.outcome.OutcomeSink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
 
 public class RecordingNode implements NodeAction {
 
     private static final Logger logger = LoggerFactory.getLogger(RecordingNode.class);
 
+    /* 结果交给 OutcomeSink 异步落盘，为 null 时只打日志 */
+    private final OutcomeSink outcomeSink;
+
+    private final String graphName;
+
+    /* 分类之外的补充信息（例如地点推荐的类别和位置），附在 solution 后面并写进 OutcomeRecord；返回 null 表示没有 */
+    private final Function<OverAllState, String> detail;
+
+    public RecordingNode() {
+        this(null, null);
+    }
+
+    public RecordingNode(OutcomeSink outcomeSink, String graphName) {
+        this(outcomeSink, graphName, state -> null);
+    }
+
+    public RecordingNode(OutcomeSink outcomeSink, String graphName, Function<OverAllState, String> detail) {
+        this.outcomeSink = outcomeSink;
+        this.graphName = graphName;
+        this.detail = detail;
+    }
+
     @Override   //“接力棒”：接收一个OverAllState参数，用于获取全局状态。
     public Map<String, Object> apply(OverAllState state) {
         //获取输出内容
@@ -28,7 +54,18 @@ public class RecordingNode implements NodeAction {
             logger.info("Received negative feedback: {}", feedback);
             updatedState.put("solution", feedback);
         }
+        String details = detail.apply(state);
+        if (details != null) {
+            updatedState.put("solution", updatedState.get("solution") + ": " + details);
+        }
 
+        if (outcomeSink != null) {
+            /* 只入队，不等写盘 */
+            outcomeSink.submit(new OutcomeRecord(System.currentTimeMillis(), graphName,
+                    state.value(NodeCheckpointStore.RUN_ID_KEY).map(Object::toString).orElse(null),
+                    state.value("input").map(Object::toString).orElse(null),
+                    feedback, (String) updatedState.get("solution"), details));
+        }
         return updatedState;
     }
 
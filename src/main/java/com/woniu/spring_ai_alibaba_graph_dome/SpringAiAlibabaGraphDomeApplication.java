@@ -1,9 +1,12 @@
 package com.woniu.spring_ai_alibaba_graph_dome;
 
+import com.woniu.spring_ai_alibaba_graph_dome.config.GraphRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(GraphRuntimeHints.class)
 public class SpringAiAlibabaGraphDomeApplication {
 
     public static void main(String[] args) {
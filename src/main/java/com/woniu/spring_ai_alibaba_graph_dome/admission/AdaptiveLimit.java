@@ -0,0 +1,89 @@
+package com.woniu.spring_ai_alibaba_graph_dome.admission;
+
+/**
+ * 按延迟自适应的并发上限（gradient 算法）。
+ * <p>
+ * 长期平均耗时（慢 EWMA）近似模型没排队时的耗时，短期平均耗时（快 EWMA）是现在的耗时：
+ * gradient = tolerance * 长期 / 短期，限制在 [0.5, 1]；新上限 = 上限 * gradient + sqrt(上限)，再做平滑。
+ * 耗时正常时 gradient 为 1，上限按 sqrt 缓慢增长；DashScope 开始排队变慢时 gradient 小于 1，上限随之收缩。
+ * 调用失败（限流、超时等）按丢弃处理，上限直接乘 0.9。
+ * 并发不到上限一半时说明流量本身不大，这时的耗时说明不了容量，不调整。
+ */
+final class AdaptiveLimit {
+
+    private static final double LONG_ALPHA = 2.0 / (600 + 1);
+
+    private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+
+    private static final double SMOOTHING = 0.2;
+
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private double limit;
+
+    private double longRtt;
+
+    private double shortRtt;
+
+    private volatile int current;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(this.maxLimit, initialLimit));
+        this.current = (int) limit;
+    }
+
+    int limit() {
+        return current;
+    }
+
+    /**
+     * @return 长期平均耗时（毫秒），还没有样本时为 0
+     */
+    synchronized double averageRttMillis() {
+        return longRtt / 1_000_000;
+    }
+
+    /**
+     * @param rttNanos 本次调用耗时
+     * @param inflight 本次调用开始时的并发数
+     * @param dropped  调用是否失败
+     */
+    synchronized void onSample(long rttNanos, int inflight, boolean dropped) {
+        if (dropped) {
+            update(limit * BACKOFF);
+            return;
+        }
+        if (longRtt == 0) {
+            longRtt = rttNanos;
+            shortRtt = rttNanos;
+        } else {
+            longRtt += (rttNanos - longRtt) * LONG_ALPHA;
+            shortRtt += (rttNanos - shortRtt) * SHORT_ALPHA;
+        }
+        /* 长时间过载后长期均值被拉高，短期恢复得更快时让它往回走，否则 gradient 一直是 1 */
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        if (inflight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double next = limit * gradient + Math.sqrt(limit);
+        update(limit * (1 - SMOOTHING) + next * SMOOTHING);
+    }
+
+    private void update(double next) {
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+        current = (int) limit;
+    }
+
+}
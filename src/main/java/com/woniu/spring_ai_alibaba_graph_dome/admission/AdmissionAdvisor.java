@@ -0,0 +1,85 @@
+package com.woniu.spring_ai_alibaba_graph_dome.admission;
+
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * ChatClient 的准入 advisor（见 {@link ModelAdmission}）：调用前拿名额，调用结束（含流式结束、取消）后归还。
+ * 排在模型调用指标之内，graph.model.call 的耗时包含排队时间，被拒绝的调用记为一次错误。
+ */
+public class AdmissionAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final ModelAdmission admission;
+
+    private final String defaultLane;
+
+    AdmissionAdvisor(ModelAdmission admission, String defaultLane) {
+        this.admission = admission;
+        this.defaultLane = defaultLane;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        ModelAdmission.Permit permit = acquire(lane());
+        boolean failed = true;
+        try {
+            ChatClientResponse response = callAdvisorChain.nextCall(chatClientRequest);
+            failed = false;
+            return response;
+        } finally {
+            permit.release(failed);
+        }
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        /* 分道在调用线程上取；排队会阻塞，放到 boundedElastic 上等 */
+        String lane = lane();
+        return Flux.usingWhen(Mono.fromCallable(() -> acquire(lane)).subscribeOn(Schedulers.boundedElastic()),
+                        permit -> streamAdvisorChain.nextStream(chatClientRequest),
+                        permit -> release(permit, false),
+                        (permit, error) -> release(permit, true),
+                        permit -> release(permit, false))
+                /* 排队期间被取消：名额拿到时已经没有下游，Reactor 把它当作丢弃的元素 */
+                .doOnDiscard(ModelAdmission.Permit.class, permit -> permit.release(false));
+    }
+
+    private static Mono<Void> release(ModelAdmission.Permit permit, boolean failed) {
+        return Mono.fromRunnable(() -> permit.release(failed));
+    }
+
+    private String lane() {
+        String graph = GraphMetrics.currentGraph();
+        return graph != null ? graph : defaultLane;
+    }
+
+    private ModelAdmission.Permit acquire(String lane) {
+        try {
+            return admission.acquire(lane);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a model call slot", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "AdmissionAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        /* 紧挨着 ModelCallMetricsAdvisor（HIGHEST_PRECEDENCE）之内 */
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+
+}
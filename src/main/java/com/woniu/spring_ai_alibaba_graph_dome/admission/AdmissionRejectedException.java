@@ -0,0 +1,51 @@
+package com.woniu.spring_ai_alibaba_graph_dome.admission;
+
+import java.time.Duration;
+
+/**
+ * 模型调用没有拿到并发名额：所在分道的队列已满，或排队超过 graph.admission.max-wait。
+ * 控制器把它转成 429 + Retry-After（见 AdmissionRejectedHandler）。
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final String lane;
+
+    private final String reason;
+
+    private final Duration retryAfter;
+
+    public AdmissionRejectedException(String lane, String reason, Duration retryAfter) {
+        super("Model call from " + lane + " rejected (" + reason + "), retry after " + retryAfter.toSeconds() + "s");
+        this.lane = lane;
+        this.reason = reason;
+        this.retryAfter = retryAfter;
+    }
+
+    public String lane() {
+        return lane;
+    }
+
+    public String reason() {
+        return reason;
+    }
+
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * 在异常链里找拒绝异常（图框架、线程池会把它包几层），没有返回 null。
+     */
+    public static AdmissionRejectedException find(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AdmissionRejectedException rejected) {
+                return rejected;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,330 @@
+package com.woniu.spring_ai_alibaba_graph_dome.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 出站模型调用的准入控制：三个工作流和 HelloworldController 共用一份 DashScope 配额，
+ * 这里给所有 ChatClient 调用一个共同的并发上限（{@link AdaptiveLimit}，随模型耗时自适应）。
+ * <p>
+ * 名额用完后按分道排队：分道就是调用方，在节点里调用时是图名，否则是挂 advisor 时给的默认名（graph、helloworld）。
+ * 每个分道一个队列，容量 graph.admission.queue-capacity；名额空出来时优先级数字小的分道先拿，
+ * 同一分道先到先得。队列满或排队超过 max-wait 直接拒绝（{@link AdmissionRejectedException}，接口返回 429），
+ * 不让请求堆积到 DashScope 那边被限流。
+ * <p>
+ * 指标：graph.admission.limit、graph.admission.inflight、graph.admission.queue（tag lane）、
+ * graph.admission.wait（排队耗时，tag lane）、graph.admission.rejected（tag lane / reason=queue_full|timeout）。
+ */
+@Component
+public class ModelAdmission {
+
+    /* 没有在 priorities 里列出的分道的优先级 */
+    static final int DEFAULT_PRIORITY = 100;
+
+    private static final Duration MAX_RETRY_AFTER = Duration.ofSeconds(60);
+
+    private final boolean enabled;
+
+    private final AdaptiveLimit limit;
+
+    private final int queueCapacity;
+
+    private final long maxWaitNanos;
+
+    private final Map<String, Integer> priorities;
+
+    private final MeterRegistry meterRegistry;
+
+    /* 以下字段由 this 保护 */
+    private final Map<String, Lane> lanes = new HashMap<>();
+
+    private final List<Lane> byPriority = new ArrayList<>();
+
+    private volatile int inflight;
+
+    public ModelAdmission(@Value("${graph.admission.enabled:true}") boolean enabled,
+                          @Value("${graph.admission.initial-limit:8}") int initialLimit,
+                          @Value("${graph.admission.min-limit:2}") int minLimit,
+                          @Value("${graph.admission.max-limit:64}") int maxLimit,
+                          @Value("${graph.admission.tolerance:1.5}") double tolerance,
+                          @Value("${graph.admission.queue-capacity:32}") int queueCapacity,
+                          @Value("${graph.admission.max-wait:5s}") Duration maxWait,
+                          @Value("${graph.admission.priorities:}") String priorities,
+                          MeterRegistry meterRegistry) {
+        this(enabled, new AdaptiveLimit(initialLimit, minLimit, maxLimit, tolerance), queueCapacity, maxWait,
+                parsePriorities(priorities), meterRegistry);
+    }
+
+    ModelAdmission(boolean enabled, AdaptiveLimit limit, int queueCapacity, Duration maxWait,
+                   Map<String, Integer> priorities, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.limit = limit;
+        this.queueCapacity = queueCapacity;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.priorities = Map.copyOf(priorities);
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("graph.admission.limit", limit, AdaptiveLimit::limit)
+                .description("Current concurrency limit for model calls")
+                .register(meterRegistry);
+        Gauge.builder("graph.admission.inflight", this, admission -> admission.inflight)
+                .description("Model calls currently holding a slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 挂到 ChatClient 上的准入 advisor；不在节点里调用时使用 defaultLane 分道。
+     */
+    public AdmissionAdvisor advisor(String defaultLane) {
+        return new AdmissionAdvisor(this, defaultLane);
+    }
+
+    /**
+     * 拿一个调用名额，必要时在分道队列里等待；调用结束后必须 {@link Permit#release(boolean)}。
+     *
+     * @throws AdmissionRejectedException 队列已满或等待超时
+     */
+    public Permit acquire(String laneName) throws InterruptedException {
+        if (!enabled) {
+            return new Permit(null, 0, 0);
+        }
+        long start = System.nanoTime();
+        Lane lane;
+        int startInflight;
+        synchronized (this) {
+            lane = lane(laneName);
+            if (inflight < limit.limit() && !waitingAhead(lane)) {
+                startInflight = ++inflight;
+            } else {
+                startInflight = await(lane, start);
+            }
+        }
+        lane.wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Permit(lane, System.nanoTime(), startInflight);
+    }
+
+    /* 持有锁：排队直到被 dispatch 选中，返回拿到名额时的并发数 */
+    private int await(Lane lane, long start) throws InterruptedException {
+        if (lane.waiters.size() >= queueCapacity) {
+            throw reject(lane, "queue_full");
+        }
+        Waiter waiter = new Waiter();
+        lane.waiters.addLast(waiter);
+        long deadline = start + maxWaitNanos;
+        try {
+            while (!waiter.granted) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    lane.waiters.remove(waiter);
+                    throw reject(lane, "timeout");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException e) {
+            if (waiter.granted) {
+                /* 名额已经分给了自己，退还给下一个 */
+                inflight--;
+                dispatch();
+            } else {
+                lane.waiters.remove(waiter);
+            }
+            throw e;
+        }
+        return waiter.inflight;
+    }
+
+    private void release(Permit permit, boolean failed) {
+        limit.onSample(System.nanoTime() - permit.start, permit.inflight, failed);
+        synchronized (this) {
+            inflight--;
+            dispatch();
+        }
+    }
+
+    /* 持有锁：按优先级把空出来的名额分给排队的调用 */
+    private void dispatch() {
+        boolean granted = false;
+        for (Lane lane : byPriority) {
+            while (inflight < limit.limit() && !lane.waiters.isEmpty()) {
+                Waiter waiter = lane.waiters.pollFirst();
+                waiter.granted = true;
+                waiter.inflight = ++inflight;
+                granted = true;
+            }
+        }
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    /* 持有锁：同优先级或更高优先级的分道里有没有人在排队（有就不能插队） */
+    private boolean waitingAhead(Lane lane) {
+        for (Lane other : byPriority) {
+            if (other.priority > lane.priority) {
+                return false;
+            }
+            if (!other.waiters.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* 持有锁 */
+    private AdmissionRejectedException reject(Lane lane, String reason) {
+        lane.rejected(reason).increment();
+        int ahead = 0;
+        for (Lane other : byPriority) {
+            if (other.priority <= lane.priority) {
+                ahead += other.waiters.size();
+            }
+        }
+        /* 估算排在前面的调用需要几轮才能跑完 */
+        double rounds = (double) (ahead + inflight) / Math.max(1, limit.limit());
+        long millis = (long) Math.ceil(rounds * Math.max(limit.averageRttMillis(), 1));
+        Duration retryAfter = Duration.ofSeconds(Math.max(1, (millis + 999) / 1000));
+        return new AdmissionRejectedException(lane.name,
+                reason, retryAfter.compareTo(MAX_RETRY_AFTER) > 0 ? MAX_RETRY_AFTER : retryAfter);
+    }
+
+    /* 持有锁 */
+    private Lane lane(String name) {
+        Lane lane = lanes.get(name);
+        if (lane == null) {
+            lane = new Lane(name, priorities.getOrDefault(name, DEFAULT_PRIORITY));
+            lanes.put(name, lane);
+            byPriority.add(lane);
+            byPriority.sort(Comparator.comparingInt(l -> l.priority));
+        }
+        return lane;
+    }
+
+    public synchronized Stats stats() {
+        List<LaneStats> laneStats = new ArrayList<>();
+        for (Lane lane : byPriority) {
+            laneStats.add(new LaneStats(lane.name, lane.priority, lane.waiters.size()));
+        }
+        return new Stats(enabled, limit.limit(), inflight, limit.averageRttMillis(), laneStats);
+    }
+
+    /**
+     * 解析 "CustomerGraph:0,workflowGraph:1" 形式的优先级配置，数字越小越优先。
+     */
+    static Map<String, Integer> parsePriorities(String value) {
+        Map<String, Integer> priorities = new HashMap<>();
+        for (String entry : value.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("graph.admission.priorities entry must be lane:priority, got " + entry);
+            }
+            priorities.put(entry.substring(0, colon).trim(), Integer.parseInt(entry.substring(colon + 1).trim()));
+        }
+        return priorities;
+    }
+
+    /**
+     * 一次模型调用持有的名额；release 可以重复调用，只有第一次生效。
+     */
+    public final class Permit {
+
+        private final Lane lane;
+
+        private final long start;
+
+        private final int inflight;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Lane lane, long start, int inflight) {
+            this.lane = lane;
+            this.start = start;
+            this.inflight = inflight;
+        }
+
+        /**
+         * @param failed 调用失败时为 true，并发上限会随之收缩
+         */
+        public void release(boolean failed) {
+            if (lane != null && released.compareAndSet(false, true)) {
+                ModelAdmission.this.release(this, failed);
+            }
+        }
+
+    }
+
+    private final class Lane {
+
+        final String name;
+
+        final int priority;
+
+        final Deque<Waiter> waiters = new ArrayDeque<>();
+
+        final Timer wait;
+
+        /* 拒绝计数在构造时注册好，reject 持有锁时只做 increment */
+        final Counter queueFull;
+
+        final Counter timedOut;
+
+        Lane(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+            this.wait = Timer.builder("graph.admission.wait")
+                    .description("Time model calls spent waiting for a slot")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            Gauge.builder("graph.admission.queue", this, lane -> lane.waiters.size())
+                    .description("Model calls waiting for a slot")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            this.queueFull = rejectedCounter("queue_full");
+            this.timedOut = rejectedCounter("timeout");
+        }
+
+        Counter rejected(String reason) {
+            return "queue_full".equals(reason) ? queueFull : timedOut;
+        }
+
+        private Counter rejectedCounter(String reason) {
+            return Counter.builder("graph.admission.rejected")
+                    .description("Model calls rejected by admission control")
+                    .tag("lane", name)
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+
+    }
+
+    private static final class Waiter {
+
+        boolean granted;
+
+        int inflight;
+
+    }
+
+    public record LaneStats(String lane, int priority, int queued) {
+    }
+
+    public record Stats(boolean enabled, int limit, int inflight, double averageRttMillis, List<LaneStats> lanes) {
+    }
+
+}
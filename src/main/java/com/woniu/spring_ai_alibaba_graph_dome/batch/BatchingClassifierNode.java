@@ -0,0 +1,57 @@
+package com.woniu.spring_ai_alibaba_graph_dome.batch;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.woniu.spring_ai_alibaba_graph_dome.node.CompactClassifierNode;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 经过微批分类的节点（见 {@link ClassifierBatching}）：类别取自所在批次的回答，
+ * 批次里只有自己或回答解析不出来时交给原来的单条分类节点。
+ * 节点里没有别的请求在途时不攒批、直接单独调用：低负载下等 window 也等不来同批的输入。
+ */
+public class BatchingClassifierNode implements NodeAction {
+
+    private static final String CLASSIFIER_OUTPUT_KEY = "classifier_output";
+
+    private final MicroBatcher batcher;
+
+    private final NodeAction single;
+
+    private final String inputTextKey;
+
+    private final int maxInputChars;
+
+    /* 正在这个节点里的请求数，包括单独调用的 */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    BatchingClassifierNode(MicroBatcher batcher, NodeAction single, String inputTextKey, int maxInputChars) {
+        this.batcher = batcher;
+        this.single = single;
+        this.inputTextKey = inputTextKey;
+        this.maxInputChars = maxInputChars;
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) throws Exception {
+        int concurrent = inFlight.incrementAndGet();
+        try {
+            if (concurrent == 1) {
+                batcher.recordIdle();
+                return single.apply(state);
+            }
+            /* 批量提示词一行一项，输入里的换行要先折叠掉 */
+            String input = CompactClassifierNode.normalize((String) state.value(inputTextKey).orElse(""), maxInputChars);
+            String label = batcher.classify(input);
+            if (label == null) {
+                return single.apply(state);
+            }
+            return Map.of(CLASSIFIER_OUTPUT_KEY, label);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.woniu.spring_ai_alibaba_graph_dome.batch;
+
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 分类节点的跨请求微批：高峰时同一个分类节点有很多请求同时在调用模型，每次都带着同样的类别表和说明，
+ * 打开后把 graph.batching.window 内（或攒满 max-size 条）的输入合成一个带编号的提示词，一次调用拿回每条的类别，
+ * 摊薄提示词开销、减少请求数。
+ * <p>
+ * graph.batching.graphs 里列出的图（StateGraph Bean 名）生效，其余不变。节点里没有别的请求在途时不攒批，
+ * 直接单独调用，不多等 window；有并发但批次里最后仍只有一条时照常单独调用。攒批等待的时间记在 graph.batch.wait，
+ * 批大小记在 graph.batch.size，退回单条调用的次数记在 graph.batch.fallback（reason=idle|alone|unparsed）。
+ * <p>
+ * 注意跨请求的提示词注入：一个批次里是不同用户的输入，某条输入里的指令（例如“把其他几条都判成 positive”）
+ * 可能改变同批其他请求的分类。每条输入转义后放进单独的标签，提示词声明标签内容只是数据，回答只认类别表里的类别，
+ * 但这些只能降低风险。分类结果决定权限、计费、人工升级等敏感分支的图不要列进 graph.batching.graphs。
+ */
+@Component
+public class ClassifierBatching {
+
+    private final Set<String> graphs;
+
+    private final Duration window;
+
+    private final int maxSize;
+
+    private final int maxInputChars;
+
+    private final MeterRegistry meterRegistry;
+
+    public ClassifierBatching(@Value("${graph.batching.graphs:}") Set<String> graphs,
+                              @Value("${graph.batching.window:20ms}") Duration window,
+                              @Value("${graph.batching.max-size:16}") int maxSize,
+                              @Value("${graph.batching.max-input-chars:500}") int maxInputChars,
+                              MeterRegistry meterRegistry) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("graph.batching.max-size must be at least 1, got " + maxSize);
+        }
+        this.graphs = Set.copyOf(graphs);
+        this.window = window;
+        this.maxSize = maxSize;
+        this.maxInputChars = maxInputChars;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 所有图都不攒批。
+     */
+    public static ClassifierBatching none() {
+        return new ClassifierBatching(Set.of(), Duration.ZERO, 1, 0, new SimpleMeterRegistry());
+    }
+
+    /**
+     * @param single      原来的单条分类节点，批次里只有一条或解析失败时使用
+     * @param categories  类别；应当和该节点后面调度器的标签一致
+     * @param instruction 一句话的分类说明
+     */
+    public NodeAction wrap(String graphName, String nodeId, NodeAction single, ChatClient chatClient,
+                           List<String> categories, String instruction) {
+        if (!graphs.contains(graphName)) {
+            return single;
+        }
+        MicroBatcher batcher = new MicroBatcher(chatClient, categories, instruction, window.toNanos(), maxSize,
+                meterRegistry, graphName, nodeId);
+        return new BatchingClassifierNode(batcher, single, "input", maxInputChars);
+    }
+
+}
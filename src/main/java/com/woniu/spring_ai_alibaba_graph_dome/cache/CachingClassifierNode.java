@@ -0,0 +1,102 @@
+package com.woniu.spring_ai_alibaba_graph_dome.cache;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.woniu.spring_ai_alibaba_graph_dome.resilience.FallbackOutput;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分类节点的缓存装饰器：命中缓存直接把结果写回 state，未命中再调用真正的分类节点。
+ * 只改变“结果从哪来”，写入 state 的 key 和值都和原节点一致，所以后面的 EdgeAction 路由不受影响。
+ * <p>
+ * 默认只缓存 classifier_output；像合并分类节点这样一次写多个 key 的，缓存值是这些 key 的 JSON。
+ */
+public class CachingClassifierNode implements NodeAction {
+
+    static final String INPUT_KEY = "input";
+
+    static final String OUTPUT_KEY = "classifier_output";
+
+    private static final Gson GSON = new Gson();
+
+    private static final Type MAP_TYPE = new TypeToken<Map<String, String>>() {
+    }.getType();
+
+    private final ClassificationCache cache;
+
+    private final String graphName;
+
+    private final String nodeId;
+
+    private final NodeAction delegate;
+
+    private final List<String> outputKeys;
+
+    public CachingClassifierNode(ClassificationCache cache, String graphName, String nodeId, NodeAction delegate) {
+        this(cache, graphName, nodeId, delegate, List.of(OUTPUT_KEY));
+    }
+
+    public CachingClassifierNode(ClassificationCache cache, String graphName, String nodeId, NodeAction delegate,
+                                 List<String> outputKeys) {
+        this.cache = cache;
+        this.graphName = graphName;
+        this.nodeId = nodeId;
+        this.delegate = delegate;
+        this.outputKeys = outputKeys;
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) throws Exception {
+        String input = (String) state.value(INPUT_KEY).orElse("");
+        if (!ClassificationCache.cacheable(input)) {
+            return delegate.apply(state);
+        }
+
+        String cached = cache.get(graphName, nodeId, input);
+        if (cached != null) {
+            return decode(cached);
+        }
+
+        Map<String, Object> result = delegate.apply(state);
+        if (FallbackOutput.isFallback(result)) {
+            /* 模型不可用时的兜底类别，不能当成这条输入的分类结果缓存 6 小时 */
+            return result;
+        }
+        String encoded = encode(result);
+        if (encoded != null) {
+            cache.put(graphName, nodeId, input, encoded);
+        }
+        return result;
+    }
+
+    private Map<String, Object> decode(String cached) {
+        if (outputKeys.size() == 1) {
+            return Map.of(outputKeys.get(0), cached);
+        }
+        Map<String, String> values = GSON.fromJson(cached, MAP_TYPE);
+        return new HashMap<>(values);
+    }
+
+    private String encode(Map<String, Object> result) {
+        if (result == null || !(result.get(outputKeys.get(0)) instanceof String first) || first.isBlank()) {
+            return null;
+        }
+        if (outputKeys.size() == 1) {
+            return first;
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String key : outputKeys) {
+            if (result.get(key) instanceof String value) {
+                values.put(key, value);
+            }
+        }
+        return GSON.toJson(values);
+    }
+
+}
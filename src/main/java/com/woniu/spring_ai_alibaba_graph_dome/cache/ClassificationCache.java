@@ -0,0 +1,271 @@
+package com.woniu.spring_ai_alibaba_graph_dome.cache;
+
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 分类结果缓存：放在 QuestionClassifierNode 前面，相同的输入不再重复请求大模型。
+ * <p>
+ * key = 图名 + 节点 id + 归一化后的输入（折叠空白、大小写和标点），
+ * 按条数（LRU）和 TTL 两种方式淘汰；关闭时把缓存快照写到本地文件，启动时再读回来，实现热启动。
+ *
+ * @author zcnovice
+ */
+@Component
+public class ClassificationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassificationCache.class);
+
+    /* 空白、标点、符号统统去掉，"快递 太慢了！" 和 "快递太慢了" 命中同一个 key；
+       表情里的零宽连接符和变体选择符也一并去掉，"❤️" 和 "😡" 一样归一化成空串 */
+    private static final Pattern FOLDED_CHARS = Pattern.compile("[\\p{Z}\\s\\p{P}\\p{S}\\p{Cf}\\x{FE00}-\\x{FE0F}]+");
+
+    private static final String KEY_SEPARATOR = "\u0001";
+
+    private final boolean enabled;
+
+    private final int maxSize;
+
+    private final Duration ttl;
+
+    private final Path snapshotFile;
+
+    private final Clock clock;
+
+    /* accessOrder = true，配合 removeEldestEntry 实现 LRU */
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public ClassificationCache(@Value("${graph.cache.enabled:true}") boolean enabled,
+                               @Value("${graph.cache.max-size:10000}") int maxSize,
+                               @Value("${graph.cache.ttl:6h}") Duration ttl,
+                               @Value("${graph.cache.snapshot-file:./data/classification-cache.json}") String snapshotFile) {
+        this(enabled, maxSize, ttl, snapshotFile.isBlank() ? null : Paths.get(snapshotFile), Clock.systemUTC());
+    }
+
+    ClassificationCache(boolean enabled, int maxSize, Duration ttl, Path snapshotFile, Clock clock) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.snapshotFile = snapshotFile;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ClassificationCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 用缓存包装一个分类节点；缓存关闭时原样返回，不改变图的路由。
+     */
+    public NodeAction wrap(String graphName, String nodeId, NodeAction classifier) {
+        if (!enabled) {
+            return classifier;
+        }
+        return new CachingClassifierNode(this, graphName, nodeId, classifier);
+    }
+
+    /**
+     * 同上，用于一次写多个 state key 的分类节点，第一个 key 为空时不缓存。
+     */
+    public NodeAction wrap(String graphName, String nodeId, NodeAction classifier, List<String> outputKeys) {
+        if (!enabled) {
+            return classifier;
+        }
+        return new CachingClassifierNode(this, graphName, nodeId, classifier, outputKeys);
+    }
+
+    /**
+     * 只有表情、标点或空白的输入归一化后是空串，彼此之间毫无关系，不能共用一个 key，直接返回 null（不计入 misses）。
+     */
+    public String get(String graphName, String nodeId, String input) {
+        if (!cacheable(input)) {
+            return null;
+        }
+        String key = key(graphName, nodeId, input);
+        long now = clock.millis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String graphName, String nodeId, String input, String value) {
+        if (!cacheable(input)) {
+            return;
+        }
+        String key = key(graphName, nodeId, input);
+        Entry entry = new Entry(value, clock.millis() + ttl.toMillis());
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(size, maxSize, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    static String key(String graphName, String nodeId, String input) {
+        return graphName + KEY_SEPARATOR + nodeId + KEY_SEPARATOR + normalize(input);
+    }
+
+    /**
+     * 归一化后还有内容的输入才能缓存或合并。
+     */
+    public static boolean cacheable(String input) {
+        return !normalize(input).isEmpty();
+    }
+
+    /**
+     * 归一化输入：NFKC（全角转半角）、转小写、去掉空白和标点。
+     */
+    public static String normalize(String input) {
+        if (input == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(input, Normalizer.Form.NFKC).toLowerCase();
+        return FOLDED_CHARS.matcher(folded).replaceAll("");
+    }
+
+    /**
+     * 启动时从快照文件恢复，已过期的条目直接丢弃。
+     */
+    @PostConstruct
+    public void load() {
+        if (!enabled || snapshotFile == null || !Files.isRegularFile(snapshotFile)) {
+            return;
+        }
+        long now = clock.millis();
+        try (Reader reader = Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8)) {
+            List<SnapshotEntry> snapshot = new Gson().fromJson(reader, new TypeToken<List<SnapshotEntry>>() {
+            }.getType());
+            if (snapshot == null) {
+                return;
+            }
+            int loaded = 0;
+            synchronized (entries) {
+                for (SnapshotEntry item : snapshot) {
+                    if (item.key != null && item.value != null && item.expiresAt > now) {
+                        entries.put(item.key, new Entry(item.value, item.expiresAt));
+                        loaded++;
+                    }
+                }
+            }
+            logger.info("Loaded {} classification cache entries from {}", loaded, snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load classification cache snapshot {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * 关闭时写快照：先写临时文件再原子替换，避免写一半进程被杀导致文件损坏。
+     */
+    @PreDestroy
+    public void save() {
+        if (!enabled || snapshotFile == null) {
+            return;
+        }
+        List<SnapshotEntry> snapshot = new ArrayList<>();
+        long now = clock.millis();
+        synchronized (entries) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (e.getValue().expiresAt > now) {
+                    snapshot.add(new SnapshotEntry(e.getKey(), e.getValue().value, e.getValue().expiresAt));
+                }
+            }
+        }
+        try {
+            Path parent = snapshotFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                new Gson().toJson(snapshot, writer);
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Saved {} classification cache entries to {}, {}", snapshot.size(), snapshotFile, stats());
+        } catch (IOException e) {
+            logger.warn("Failed to save classification cache snapshot {}", snapshotFile, e);
+        }
+    }
+
+    private record Entry(String value, long expiresAt) {
+    }
+
+    private static final class SnapshotEntry {
+        String key;
+        String value;
+        long expiresAt;
+
+        SnapshotEntry(String key, String value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public record Stats(int size, int maxSize, long hits, long misses, long evictions) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+
+}
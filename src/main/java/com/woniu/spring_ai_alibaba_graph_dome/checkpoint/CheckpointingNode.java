@@ -0,0 +1,53 @@
+package com.woniu.spring_ai_alibaba_graph_dome.checkpoint;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.woniu.spring_ai_alibaba_graph_dome.resilience.FallbackOutput;
+
+import java.util.Map;
+
+/**
+ * 节点的 checkpoint 装饰器：state 里带 run_id 时，先查这次 run 是否已经用同样的输入跑过该节点，跑过就直接返回上次的输出；
+ * 没跑过则调用真正的节点，成功后记下输出。节点抛异常或输出兜底类别时什么都不记，重试会重新执行它。
+ */
+public class CheckpointingNode implements NodeAction {
+
+    private static final String INPUT_KEY = "input";
+
+    private final NodeCheckpointStore store;
+
+    private final String graphName;
+
+    private final String nodeId;
+
+    private final NodeAction delegate;
+
+    public CheckpointingNode(NodeCheckpointStore store, String graphName, String nodeId, NodeAction delegate) {
+        this.store = store;
+        this.graphName = graphName;
+        this.nodeId = nodeId;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) throws Exception {
+        String runId = state.value(NodeCheckpointStore.RUN_ID_KEY).map(Object::toString).orElse(null);
+        if (runId == null || runId.isBlank()) {
+            return delegate.apply(state);
+        }
+
+        Object input = state.value(INPUT_KEY).orElse(null);
+        Map<String, Object> completed = store.get(runId, graphName, nodeId, input);
+        if (completed != null) {
+            return completed;
+        }
+
+        Map<String, Object> result = delegate.apply(state);
+        /* 兜底输出不记，重试时重新请求模型 */
+        if (result != null && !FallbackOutput.isFallback(result)) {
+            store.put(runId, graphName, nodeId, input, result);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,461 @@
+package com.woniu.spring_ai_alibaba_graph_dome.checkpoint;
+
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 run id 记录已完成节点的输出，落在本地的追加写日志里（每行一条 JSON）。
+ * <p>
+ * 客户端带着同一个 run id 重试时，已经完成的大模型节点直接回放上次的输出，不再调用模型；
+ * 路由仍由 EdgeAction 根据回放出来的 state 决定，所以实际效果是从上次中断的节点之后继续执行。
+ * 每条记录带上输入的摘要，同一个 run id 换了输入时不回放（计入 mismatched），新的输出覆盖这个 run。
+ * <p>
+ * 请求线程只更新内存并把记录放进有界队列，落盘由后台线程 checkpoint-writer 批量完成（一批只 flush 一次）；
+ * 队列满时这条记录只留在内存里（计入 dropped），本进程内仍然可以回放。
+ * 日志只追加不修改；超过 graph.checkpoint.max-file-size 时由写线程把未过期的 run 重写到新文件再原子替换（compaction），
+ * run 超过 TTL 或者总数超过 max-runs（按最后写入时间淘汰最旧的）都会被丢弃。
+ */
+@Component
+public class NodeCheckpointStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(NodeCheckpointStore.class);
+
+    /* 调用方通过这个 state key 传入 run id，没有则不做 checkpoint */
+    public static final String RUN_ID_KEY = "run_id";
+
+    private static final Gson GSON = new Gson();
+
+    private static final Type OUTPUT_TYPE = new TypeToken<Map<String, Object>>() {
+    }.getType();
+
+    private static final String KEY_SEPARATOR = "\u0001";
+
+    private static final long POLL_MILLIS = 200;
+
+    private final boolean enabled;
+
+    private final Path file;
+
+    private final Duration ttl;
+
+    private final int maxRuns;
+
+    private final long maxFileBytes;
+
+    private final Clock clock;
+
+    /* 按最后写入时间排序（accessOrder = false，写入时先 remove 再 put） */
+    private final LinkedHashMap<String, Run> runs = new LinkedHashMap<>();
+
+    private final BlockingQueue<Record> queue;
+
+    /* 日志文件的写入和压缩都在这把锁下进行，请求线程从不拿它；需要同时拿两把锁时先拿它再拿 runs */
+    private final Object fileLock = new Object();
+
+    private Writer writer;
+
+    private volatile long fileBytes;
+
+    private volatile boolean accepting = true;
+
+    private Thread writerThread;
+
+    private final LongAdder replayed = new LongAdder();
+
+    private final LongAdder mismatched = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder compactions = new LongAdder();
+
+    public NodeCheckpointStore(@Value("${graph.checkpoint.enabled:true}") boolean enabled,
+                               @Value("${graph.checkpoint.file:./data/checkpoints.log}") String file,
+                               @Value("${graph.checkpoint.ttl:30m}") Duration ttl,
+                               @Value("${graph.checkpoint.max-runs:10000}") int maxRuns,
+                               @Value("${graph.checkpoint.max-file-size:16MB}") DataSize maxFileSize,
+                               @Value("${graph.checkpoint.queue-capacity:10000}") int queueCapacity) {
+        this(enabled && !file.isBlank(), file.isBlank() ? null : Paths.get(file), ttl, maxRuns,
+                maxFileSize.toBytes(), queueCapacity, Clock.systemUTC());
+    }
+
+    NodeCheckpointStore(boolean enabled, Path file, Duration ttl, int maxRuns, long maxFileBytes, int queueCapacity,
+                        Clock clock) {
+        this.enabled = enabled;
+        this.file = file;
+        this.ttl = ttl;
+        this.maxRuns = maxRuns;
+        this.maxFileBytes = maxFileBytes;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.clock = clock;
+    }
+
+    /**
+     * 给一个（调用大模型的）节点加上 checkpoint；关闭时原样返回。
+     */
+    public NodeAction wrap(String graphName, String nodeId, NodeAction action) {
+        if (!enabled) {
+            return action;
+        }
+        return new CheckpointingNode(this, graphName, nodeId, action);
+    }
+
+    /**
+     * 取某次 run 里某个节点上次的输出；没有、已过期或者上次的输入和这次不同时返回 null。
+     */
+    public Map<String, Object> get(String runId, String graphName, String nodeId, Object input) {
+        String inputHash = inputHash(input);
+        long now = clock.millis();
+        synchronized (runs) {
+            Run run = runs.get(runKey(runId, graphName));
+            if (run == null || run.expiresAt <= now) {
+                return null;
+            }
+            if (!Objects.equals(run.inputHash, inputHash)) {
+                /* 同一个 run id 换了输入，上次的输出不是这次的答案 */
+                mismatched.increment();
+                return null;
+            }
+            Map<String, Object> output = run.nodes.get(nodeId);
+            if (output == null) {
+                return null;
+            }
+            replayed.increment();
+            return new HashMap<>(output);
+        }
+    }
+
+    /**
+     * 记下节点输出：立即对本进程可见，落盘交给写线程，不等磁盘。
+     */
+    public void put(String runId, String graphName, String nodeId, Object input, Map<String, Object> output) {
+        /* 过一遍 JSON，内存里的值和从日志读回来的完全一致 */
+        Record record = new Record(runId, graphName, nodeId, inputHash(input), copy(output),
+                clock.millis() + ttl.toMillis());
+        synchronized (runs) {
+            apply(record);
+            evictOverflow();
+        }
+        if (!accepting || !queue.offer(record)) {
+            dropped.increment();
+            /* 只在第一次和之后每 1000 次打一条，避免磁盘跟不上时刷屏 */
+            if (dropped.sum() % 1000 == 1) {
+                logger.warn("Checkpoint queue full, {} records kept in memory only so far", dropped.sum());
+            }
+        }
+    }
+
+    /**
+     * 把未过期的 run 重写成新文件，替换掉原来的日志。写线程在日志超过上限时自动调用，也可以手动触发。
+     */
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (fileLock) {
+            /* 快照在文件锁内取：之后 apply 的记录要么还在队列里，要么会追加到新文件上，不会丢 */
+            List<Record> snapshot = new ArrayList<>();
+            synchronized (runs) {
+                removeExpired();
+                for (Run run : runs.values()) {
+                    for (Map.Entry<String, Map<String, Object>> node : run.nodes.entrySet()) {
+                        snapshot.add(new Record(run.runId, run.graph, node.getKey(), run.inputHash, node.getValue(),
+                                run.expiresAt));
+                    }
+                }
+            }
+            closeWriter();
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                createParent();
+                long bytes = 0;
+                try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                    for (Record record : snapshot) {
+                        String line = GSON.toJson(record) + "\n";
+                        out.write(line);
+                        bytes += line.getBytes(StandardCharsets.UTF_8).length;
+                    }
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                fileBytes = bytes;
+                compactions.increment();
+                logger.info("Compacted checkpoint log {}: {} records, {} bytes", file, snapshot.size(), bytes);
+            } catch (IOException e) {
+                logger.warn("Failed to compact checkpoint log {}", file, e);
+            }
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (runs) {
+            size = runs.size();
+        }
+        return new Stats(size, fileBytes, queue.size(), replayed.sum(), mismatched.sum(), written.sum(), dropped.sum(),
+                compactions.sum());
+    }
+
+    /**
+     * 启动时重放日志并启动写线程；最后一行可能是进程被杀时写了一半的，解析失败直接跳过。
+     */
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        if (Files.isRegularFile(file)) {
+            replay();
+            /* 启动时顺手压缩一次，把过期和被覆盖的记录清掉 */
+            compact();
+        }
+        writerThread = new Thread(this::writeLoop, "checkpoint-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 停止接收，等写线程把队列写完；写线程没有启动时在当前线程写完。
+     */
+    @PreDestroy
+    public void close() {
+        accepting = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10) + POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (fileLock) {
+            List<Record> rest = new ArrayList<>();
+            queue.drainTo(rest);
+            write(rest);
+            closeWriter();
+        }
+    }
+
+    private void replay() {
+        int lines = 0;
+        synchronized (runs) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines++;
+                    try {
+                        Record record = GSON.fromJson(line, Record.class);
+                        if (record != null && record.run != null && record.graph != null && record.node != null) {
+                            apply(record);
+                        }
+                    } catch (RuntimeException e) {
+                        logger.debug("Skipping malformed checkpoint line {}", lines);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to load checkpoint log {}", file, e);
+                return;
+            }
+            evictOverflow();
+            logger.info("Loaded {} checkpoint runs from {} ({} lines)", runs.size(), file, lines);
+        }
+    }
+
+    /* 写线程：阻塞取第一条，再把队列里已有的一起取出，一批写完 flush 一次 */
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>();
+        while (accepting || !queue.isEmpty()) {
+            try {
+                Record first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                accepting = false;
+            }
+            queue.drainTo(batch);
+            synchronized (fileLock) {
+                write(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    /* 调用方持有 fileLock */
+    private void write(List<Record> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                createParent();
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                fileBytes = Files.size(file);
+            }
+            long bytes = 0;
+            for (Record record : batch) {
+                String line = GSON.toJson(record) + "\n";
+                writer.write(line);
+                bytes += line.getBytes(StandardCharsets.UTF_8).length;
+            }
+            /* 一批刷一次到操作系统，进程异常退出也不丢 */
+            writer.flush();
+            fileBytes += bytes;
+            written.add(batch.size());
+        } catch (IOException e) {
+            logger.warn("Failed to append {} checkpoints to {}", batch.size(), file, e);
+            closeWriter();
+        }
+        if (fileBytes > maxFileBytes) {
+            compact();
+        }
+    }
+
+    private void apply(Record record) {
+        String key = runKey(record.run, record.graph);
+        Run run = runs.remove(key);
+        if (run == null || !Objects.equals(run.inputHash, record.input)) {
+            /* 新的 run，或者同一个 run id 换了输入：之前的节点输出作废 */
+            run = new Run(record.run, record.graph, record.input);
+        }
+        run.nodes.put(record.node, record.output);
+        run.expiresAt = Math.max(run.expiresAt, record.expiresAt);
+        runs.put(key, run);
+    }
+
+    private void removeExpired() {
+        long now = clock.millis();
+        runs.values().removeIf(run -> run.expiresAt <= now);
+    }
+
+    private void evictOverflow() {
+        Iterator<Run> iterator = runs.values().iterator();
+        while (runs.size() > maxRuns && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void createParent() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close checkpoint log {}", file, e);
+        }
+        writer = null;
+    }
+
+    private static String runKey(String runId, String graphName) {
+        return graphName + KEY_SEPARATOR + runId;
+    }
+
+    /* 输入的 SHA-256 前 16 字节，只用来比较是不是同一个输入，日志里不存原文 */
+    static String inputHash(Object input) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(String.valueOf(input).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Object> copy(Map<String, Object> output) {
+        Map<String, Object> copy = GSON.fromJson(GSON.toJson(output), OUTPUT_TYPE);
+        return copy == null ? new HashMap<>() : copy;
+    }
+
+    private static final class Run {
+        final String runId;
+        final String graph;
+        final String inputHash;
+        final Map<String, Map<String, Object>> nodes = new LinkedHashMap<>();
+        long expiresAt;
+
+        Run(String runId, String graph, String inputHash) {
+            this.runId = runId;
+            this.graph = graph;
+            this.inputHash = inputHash;
+        }
+    }
+
+    /* 日志里的一行；input 是输入摘要，旧日志里没有这个字段的记录不会被回放 */
+    private static final class Record {
+        String run;
+        String graph;
+        String node;
+        String input;
+        Map<String, Object> output;
+        long expiresAt;
+
+        Record(String run, String graph, String node, String input, Map<String, Object> output, long expiresAt) {
+            this.run = run;
+            this.graph = graph;
+            this.node = node;
+            this.input = input;
+            this.output = output;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param runs        内存中的 run 数
+     * @param fileBytes   日志文件当前大小
+     * @param queued      等待写线程落盘的条数
+     * @param replayed    回放（跳过模型调用）的节点次数
+     * @param mismatched  同一个 run id 换了输入、没有回放的次数
+     * @param written     写入日志的节点输出条数
+     * @param dropped     队列满没有落盘（只在内存里）的条数
+     * @param compactions 压缩次数
+     */
+    public record Stats(int runs, long fileBytes, int queued, long replayed, long mismatched, long written,
+                        long dropped, long compactions) {
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.woniu.spring_ai_alibaba_graph_dome.config;
+
+import com.woniu.spring_ai_alibaba_graph_dome.admission.ModelAdmission;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * 三个工作流共用的 ChatClient。
+ * <p>
+ * 原来每个 @Configuration 各自 build 一个，配置完全相同；现在只建一个，第一次有工作流用到时才创建。
+ * 模型调用指标里的 graph / node tag 由节点装饰器在调用线程上设置（见 GraphMetrics），不需要每个图一个 ChatClient；
+ * 准入控制（ModelAdmission）也按这个图名分道排队。
+ */
+@Configuration
+public class ChatClientConfiguration {
+
+    @Bean
+    @Lazy
+    public ChatClient graphChatClient(ChatClient.Builder builder, GraphMetrics graphMetrics,
+                                      ModelAdmission modelAdmission) {
+        /* SimpleLoggerAdvisor 是 Spring AI 提供的一个具体的 Advisor 实现。它的作用非常明确：自动记录（Log）与 AI 模型的每一次交互 */
+        return builder.defaultAdvisors(new SimpleLoggerAdvisor(), graphMetrics.advisor("graph"),
+                modelAdmission.advisor("graph")).build();
+    }
+
+}
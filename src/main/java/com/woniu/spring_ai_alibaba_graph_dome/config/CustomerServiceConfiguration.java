@@ -1,66 +1,90 @@
 package com.woniu.spring_ai_alibaba_graph_dome.config;
 
-import com.alibaba.cloud.ai.graph.GraphRepresentation;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.OverAllStateFactory;
 import com.alibaba.cloud.ai.graph.StateGraph;
 import com.alibaba.cloud.ai.graph.action.EdgeAction;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
 import com.alibaba.cloud.ai.graph.exception.GraphStateException;
 import com.alibaba.cloud.ai.graph.node.QuestionClassifierNode;
-import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
 import com.woniu.spring_ai_alibaba_graph_dome.Demo.RecordingNode;
+import com.woniu.spring_ai_alibaba_graph_dome.batch.ClassifierBatching;
+import com.woniu.spring_ai_alibaba_graph_dome.cache.ClassificationCache;
+import com.woniu.spring_ai_alibaba_graph_dome.checkpoint.NodeCheckpointStore;
+import com.woniu.spring_ai_alibaba_graph_dome.distill.DistilledClassifier;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.LabelRouter;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.StateSchema;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import com.woniu.spring_ai_alibaba_graph_dome.node.CompactClassifiers;
+import com.woniu.spring_ai_alibaba_graph_dome.outcome.OutcomeSink;
+import com.woniu.spring_ai_alibaba_graph_dome.resilience.ClassifierResilience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import static com.alibaba.cloud.ai.graph.StateGraph.END;
 import static com.alibaba.cloud.ai.graph.StateGraph.START;
 import static com.alibaba.cloud.ai.graph.action.AsyncEdgeAction.edge_async;
-import static com.alibaba.cloud.ai.graph.action.AsyncNodeAction.node_async;
+import static com.woniu.spring_ai_alibaba_graph_dome.graph.AsyncNodeActions.node_async;
 
 @Configuration
 public class CustomerServiceConfiguration {
 
     private static final Logger logger = LoggerFactory.getLogger(GraphAutoConfiguration.class);
 
+    /* 一级分类的类别：分类节点、精简提示词和蒸馏模型共用同一份 */
+    private static final List<String> LEVEL1_CATEGORIES = List.of("Other", "新增设备", "维修记录", "设备下架", "手册导入", "运维经验录入");
+
+    /* 一级分类的精简说明：精简提示词和批量分类共用 */
+    private static final String LEVEL1_INSTRUCTION = "Which equipment management request is this? Anything unrelated is Other.";
+
+    /*input: 存储用户输入的原始文本
+        classifier_output: 存储分类器的输出结果
+        solution: 存储最终的处理方案
+        使用ReplaceStrategy策略，表示每次写入会替换旧值*/
+    private static final StateSchema STATE_SCHEMA = StateSchema.builder()
+            .replace("input", "classifier_output", "solution")
+            /* run_id：重试时用来回放已完成的节点 */
+            .replace(NodeCheckpointStore.RUN_ID_KEY)
+            /* 请求截止时间，分类节点据此决定还等不等模型 */
+            .replace(ClassifierResilience.DEADLINE_KEY)
+            .build();
+
     /**
      * 创建一个Graph 工作流
-     * @param builder
+     * @param chatClient 共享的 ChatClient
      * @return
      */
     @Bean
-    public StateGraph CustomerGraph(ChatClient.Builder builder) throws GraphStateException {
-
-        ChatClient chatClient = builder.defaultAdvisors(new SimpleLoggerAdvisor()).build();
-
+    @Lazy
+    public StateGraph CustomerGraph(@Qualifier("graphChatClient") ChatClient chatClient, ClassificationCache classificationCache,
+                                    NodeCheckpointStore nodeCheckpointStore,
+                                    OutcomeSink outcomeSink,
+                                    ClassifierResilience classifierResilience,
+                                    CompactClassifiers compactClassifiers,
+                                    ClassifierBatching classifierBatching,
+                                    DistilledClassifier distilledClassifier,
+                                    @Qualifier("graphNodeExecutor") Executor graphNodeExecutor,
+                                    GraphMetrics graphMetrics) throws GraphStateException {
 
         /**
-         * 每次执行工作流时创建初始的全局状态对象
+         * 每次执行工作流时创建初始的全局状态对象（key 和策略见 STATE_SCHEMA）
          */
-        OverAllStateFactory stateFactory = () -> {
-            OverAllState state = new OverAllState();
-
-            /*input: 存储用户输入的原始文本
-                classifier_output: 存储分类器的输出结果
-                solution: 存储最终的处理方案
-                使用ReplaceStrategy策略，表示每次写入会替换旧值*/
-            state.registerKeyAndStrategy("input", new ReplaceStrategy());
-            state.registerKeyAndStrategy("classifier_output", new ReplaceStrategy());
-            state.registerKeyAndStrategy("solution", new ReplaceStrategy());
-            return state;
-        };
+        OverAllStateFactory stateFactory = STATE_SCHEMA.factory();
 
         //一级节点用于判断用户输入的问题是否涵盖 “新增设备”“维修记录”“设备下架”“手册导入”“运维经验录入”等
         QuestionClassifierNode Level1Node = QuestionClassifierNode.builder()
                 .chatClient(chatClient)
                 .inputTextKey("input")
-                .categories(List.of("Other","新增设备","维修记录","设备下架","手册导入","运维经验录入"))
+                .categories(LEVEL1_CATEGORIES)
                 .classificationInstructions(
                         List.of(
                                 "If the user input is a general AI chat, classify it as: Normal AI Chat",
@@ -73,26 +97,46 @@ public class CustomerServiceConfiguration {
                 .build();
 
 
+        /* 精简模式：一句说明 + 编号类别表，模型只回答编号，代替上面七条说明 */
+        NodeAction level1Action = compactClassifiers.select("CustomerGraph", Level1Node, chatClient, LEVEL1_CATEGORIES,
+                LEVEL1_INSTRUCTION);
+        level1Action = classifierBatching.wrap("CustomerGraph", "Level1Node", level1Action, chatClient, LEVEL1_CATEGORIES,
+                LEVEL1_INSTRUCTION);
+
         //开始编排节点
         StateGraph stateGraph = new StateGraph("Customer Service Workflow Demo", stateFactory)
-                .addNode("Level1Node", node_async(Level1Node))
-                .addNode("recorder", node_async(new RecordingNode()))
+                .addNode("Level1Node", node_async(graphMetrics.node("CustomerGraph", "Level1Node",
+                        nodeCheckpointStore.wrap("CustomerGraph", "Level1Node",
+                                classificationCache.wrap("CustomerGraph", "Level1Node",
+                                        distilledClassifier.wrap("CustomerGraph", "Level1Node",
+                                                /* 模型不可用时按 Other 处理 */
+                                                classifierResilience.wrap("CustomerGraph", "Level1Node", level1Action, "Other"),
+                                                LEVEL1_CATEGORIES)))), graphNodeExecutor))
+                .addNode("recorder", node_async(graphMetrics.node("CustomerGraph", "recorder",
+                        new RecordingNode(outcomeSink, "CustomerGraph")), graphNodeExecutor))
 
                 .addEdge(START,"Level1Node")
                 .addConditionalEdges("Level1Node",
-                        edge_async(new FeedbackQuestionDispatcher()),
+                        edge_async(graphMetrics.edge("CustomerGraph", "Level1Node", new FeedbackQuestionDispatcher())),
                         Map.of("新增设备", "recorder", "维修记录", "recorder", "设备下架", "recorder", "手册导入", "recorder", "运维经验录入", "recorder", "Other", "recorder"))
                 .addEdge("recorder", END);
 
 
-        GraphRepresentation graphRepresentation = stateGraph.getGraph(GraphRepresentation.Type.PLANTUML,
-                "workflow graph");
-
         return stateGraph;
     }
 
 
     public static class FeedbackQuestionDispatcher implements EdgeAction {
+
+        static final LabelRouter ROUTER = LabelRouter.builder()
+                .route("新增设备")
+                .route("维修记录")
+                .route("设备下架")
+                .route("手册导入")
+                .route("运维经验录入")
+                .otherwise("Other")
+                .build();
+
         /* 它的唯一职责是：在第一个分类节点 (feedback_classifier) 完成工作后，检查分类结果，并决定工作流的下一个走向。它本身不进行AI计算，只做简单的逻辑判断。 */
         @Override
         /* 传入“接力棒” */
@@ -104,18 +148,7 @@ public class CustomerServiceConfiguration {
             /* 打印日志信息（调用最上面的日志定义） */
             logger.info("classifierOutput: {}", classifierOutput);
 
-            if (classifierOutput.contains("新增设备")) {
-                return "新增设备";
-            }else if(classifierOutput.contains("维修记录")) {
-                return "维修记录";
-            }else if(classifierOutput.contains("设备下架")) {
-                return "设备下架";
-            }else if(classifierOutput.contains("手册导入")) {
-                return "手册导入";
-            }else if(classifierOutput.contains("运维经验录入")) {
-                return "运维经验录入";
-            }
-            return "Other";
+            return ROUTER.route(classifierOutput);
         }
 
     }
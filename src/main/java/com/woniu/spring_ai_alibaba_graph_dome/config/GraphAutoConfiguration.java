@@ -1,30 +1,43 @@
 package com.woniu.spring_ai_alibaba_graph_dome.config;
 
-import com.alibaba.cloud.ai.graph.GraphRepresentation;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.OverAllStateFactory;
 import com.alibaba.cloud.ai.graph.StateGraph;
 import com.alibaba.cloud.ai.graph.action.EdgeAction;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
 import com.alibaba.cloud.ai.graph.exception.GraphStateException;
 import com.alibaba.cloud.ai.graph.node.QuestionClassifierNode;
-import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
 
 import com.woniu.spring_ai_alibaba_graph_dome.Demo.RecordingNode;
+import com.woniu.spring_ai_alibaba_graph_dome.batch.ClassifierBatching;
+import com.woniu.spring_ai_alibaba_graph_dome.cache.ClassificationCache;
+import com.woniu.spring_ai_alibaba_graph_dome.checkpoint.NodeCheckpointStore;
+import com.woniu.spring_ai_alibaba_graph_dome.distill.DistilledClassifier;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.LabelRouter;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.StateSchema;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import com.woniu.spring_ai_alibaba_graph_dome.node.CompactClassifiers;
+import com.woniu.spring_ai_alibaba_graph_dome.node.FusedFeedbackClassifierNode;
+import com.woniu.spring_ai_alibaba_graph_dome.node.PrecomputedCategoryNode;
+import com.woniu.spring_ai_alibaba_graph_dome.outcome.OutcomeSink;
+import com.woniu.spring_ai_alibaba_graph_dome.resilience.ClassifierResilience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import static com.alibaba.cloud.ai.graph.StateGraph.END;
 import static com.alibaba.cloud.ai.graph.StateGraph.START;
 import static com.alibaba.cloud.ai.graph.action.AsyncEdgeAction.edge_async;
-import static com.alibaba.cloud.ai.graph.action.AsyncNodeAction.node_async;
+import static com.woniu.spring_ai_alibaba_graph_dome.graph.AsyncNodeActions.node_async;
 
 /**
  * Graph Demo：首先判断评价正负，其次细分负面问题，最后输出处理方案。
@@ -38,18 +51,47 @@ public class GraphAutoConfiguration {
 
     private static final Logger logger = LoggerFactory.getLogger(GraphAutoConfiguration.class);
 
+    /* 定义一个接力棒 ‘state’：工作流中的每个结点之间传递的 “接力棒”，也可以理解为共享内存，下面就是共享内存中的变量
+        input: 存储用户输入的原始文本
+        classifier_output: 存储分类器的输出结果
+        solution: 存储最终的处理方案
+        使用ReplaceStrategy策略，表示每次写入会替换旧值 */
+    private static final StateSchema STATE_SCHEMA = StateSchema.builder()
+            .replace("input", "classifier_output", "solution")
+            /* 客户端传入的 run id，带上它重试时已完成的分类节点直接回放（见 NodeCheckpointStore） */
+            .replace(NodeCheckpointStore.RUN_ID_KEY)
+            /* 异步接口写入的请求截止时间（见 ClassifierResilience） */
+            .replace(ClassifierResilience.DEADLINE_KEY)
+            /* 合并分类模式下，一次调用得到的正负标签和问题类别 */
+            .replace(FusedFeedbackClassifierNode.SENTIMENT_KEY, FusedFeedbackClassifierNode.CATEGORY_KEY)
+            .build();
+
+    /* 两个分类节点的类别和精简说明：分类节点、精简提示词、批量分类和蒸馏模型共用同一份 */
+    private static final List<String> FEEDBACK_CATEGORIES = List.of("positive feedback", "negative feedback");
+
+    private static final String FEEDBACK_INSTRUCTION = "Is the customer feedback positive or negative?";
+
+    private static final List<String> QUESTION_CATEGORIES = List.of("after-sale service", "transportation",
+            "product quality", "others");
+
+    private static final String QUESTION_INSTRUCTION = "What kind of service or help is the customer trying to get from us?";
+
     /**
      * 定义一个工作流 StateGraph Bean.
      */
     @Bean
-    /* 接收一个ChatClient.Builder参数，用于构建AI聊天客户端 */
-    public StateGraph workflowGraph(ChatClient.Builder builder) throws GraphStateException {
-
-        // LLMs Bean
-        /*                                   增强顾问                  */
-        ChatClient chatClient = builder.defaultAdvisors(new SimpleLoggerAdvisor()).build();
-        /* SimpleLoggerAdvisor 是 Spring AI 提供的一个具体的 Advisor 实现。它的作用非常明确：自动记录（Log）与 AI 模型的每一次交互 */
-
+    @Lazy
+    /* 接收共享的 ChatClient（见 ChatClientConfiguration），不再每个工作流各建一个 */
+    public StateGraph workflowGraph(@Qualifier("graphChatClient") ChatClient chatClient, ClassificationCache classificationCache,
+                                    NodeCheckpointStore nodeCheckpointStore,
+                                    OutcomeSink outcomeSink,
+                                    ClassifierResilience classifierResilience,
+                                    CompactClassifiers compactClassifiers,
+                                    ClassifierBatching classifierBatching,
+                                    DistilledClassifier distilledClassifier,
+                                    @Value("${graph.fused-classifier.workflow-graph:false}") boolean fusedClassifier,
+                                    @Qualifier("graphNodeExecutor") Executor graphNodeExecutor,
+                                    GraphMetrics graphMetrics) throws GraphStateException {
 
         // 定义一个 OverAllStateFactory，用于在每次执行工作流时创建初始的全局状态对象。通过注册若干 Key 及其更新策略来管理上下文数据
         // 注册三个状态 key 分别为
@@ -60,21 +102,8 @@ public class GraphAutoConfiguration {
 
         /* 定义了一个状态工厂，用于管理工作流执行过程中的状态数据 */
         /* 在 alibaba-cloud-ai-graph 这个工作流框架中，“状态”（State）** 扮演着至关重要的角色，它就像是整个工作流的中央内存或共享数据中心。 */
-        OverAllStateFactory stateFactory = () -> {
-            /* 定义一个接力棒  ‘state’  工作流中的每个结点之间传递的 “接力棒” */
-            /* 也可以理解为共享内存（state） */
-            OverAllState state = new OverAllState();
-
-            /* 下面的就是共享内存中的变量 */
-            /*input: 存储用户输入的原始文本
-                classifier_output: 存储分类器的输出结果
-                solution: 存储最终的处理方案
-                使用ReplaceStrategy策略，表示每次写入会替换旧值*/
-            state.registerKeyAndStrategy("input", new ReplaceStrategy());
-            state.registerKeyAndStrategy("classifier_output", new ReplaceStrategy());
-            state.registerKeyAndStrategy("solution", new ReplaceStrategy());
-            return state;
-        };
+        /* 状态的 key 和策略在 STATE_SCHEMA 里构建一次，每次执行只创建 OverAllState 并注册（见 StateSchema） */
+        OverAllStateFactory stateFactory = STATE_SCHEMA.factory();
         /*  */
 
         // 创建 workflows 节点
@@ -91,7 +120,7 @@ public class GraphAutoConfiguration {
                 /* 指定输入源。这告诉节点：“你要分类的文本，请到全局状态（OverAllState）中去找一个键（Key）为 input 的值”。在工作流开始时，用户的原始输入会被存放在这个 "input" 键中。 */
                 .inputTextKey("input")
                 /* 指定输出键，必须重我给的里面选取 */
-                .categories(List.of("positive feedback", "negative feedback"))
+                .categories(FEEDBACK_CATEGORIES)
                 /* 。这部分是给AI的“特别提示” */
                 .classificationInstructions(
                         /* 尝试理解用户在提供反馈时的感受 */
@@ -104,24 +133,67 @@ public class GraphAutoConfiguration {
         QuestionClassifierNode specificQuestionClassifier = QuestionClassifierNode.builder()
                 .chatClient(chatClient)
                 .inputTextKey("input")
-                .categories(List.of("after-sale service", "transportation", "product quality", "others"))
+                .categories(QUESTION_CATEGORIES)
                 .classificationInstructions(List
                         /* 客户想从我们这里获得什么样的服务或帮助？请根据你的理解进行分类。 */
                         .of("What kind of service or help the customer is trying to get from us? Classify the question based on your understanding."))
                 .build();
 
+        /* graph.compact-classifier.graphs 包含本图时，两个分类节点换成只回答类别编号的精简提示词 */
+        NodeAction feedbackAction = compactClassifiers.select("workflowGraph", feedbackClassifier, chatClient,
+                FEEDBACK_CATEGORIES, FEEDBACK_INSTRUCTION);
+        NodeAction specificQuestionAction = compactClassifiers.select("workflowGraph", specificQuestionClassifier, chatClient,
+                QUESTION_CATEGORIES, QUESTION_INSTRUCTION);
+
+        /* graph.batching.graphs 包含本图时，并发的分类请求攒成一批、一次调用分类 */
+        feedbackAction = classifierBatching.wrap("workflowGraph", "feedback_classifier", feedbackAction, chatClient,
+                FEEDBACK_CATEGORIES, FEEDBACK_INSTRUCTION);
+        specificQuestionAction = classifierBatching.wrap("workflowGraph", "specific_question_classifier",
+                specificQuestionAction, chatClient, QUESTION_CATEGORIES, QUESTION_INSTRUCTION);
+
+        /* 两级分类节点最终挂到图上的实现：默认各自调用一次模型；
+           打开 graph.fused-classifier.workflow-graph 后，一次调用同时得到正负和问题类别，
+           二级节点只把已算好的类别交给 SpecificQuestionDispatcher，两个调度器和图的结构都不变。
+           模型不可用时一级兜底为 negative feedback、二级兜底为 others，最终仍然走到 recorder */
+        NodeAction feedbackNode;
+        NodeAction specificQuestionNode;
+        /* 分类节点外面套一层缓存，相同输入直接复用上次的分类结果 */
+        if (fusedClassifier) {
+            FusedFeedbackClassifierNode fusedNode = new FusedFeedbackClassifierNode(chatClient, "input",
+                    FEEDBACK_CATEGORIES, QUESTION_CATEGORIES);
+            feedbackNode = classificationCache.wrap("workflowGraph", "fused_classifier",
+                    classifierResilience.wrap("workflowGraph", "fused_classifier", fusedNode, "negative feedback"),
+                    List.of("classifier_output", FusedFeedbackClassifierNode.SENTIMENT_KEY, FusedFeedbackClassifierNode.CATEGORY_KEY));
+            specificQuestionNode = new PrecomputedCategoryNode(
+                    classificationCache.wrap("workflowGraph", "specific_question_classifier",
+                            classifierResilience.wrap("workflowGraph", "specific_question_classifier", specificQuestionAction, "others")));
+        } else {
+            /* 本地蒸馏模型有把握时直接给出正负，不调用大模型（见 DistilledClassifier） */
+            feedbackNode = classificationCache.wrap("workflowGraph", "feedback_classifier",
+                    distilledClassifier.wrap("workflowGraph", "feedback_classifier",
+                            classifierResilience.wrap("workflowGraph", "feedback_classifier", feedbackAction, "negative feedback"),
+                            FEEDBACK_CATEGORIES));
+            specificQuestionNode = classificationCache.wrap("workflowGraph", "specific_question_classifier",
+                    classifierResilience.wrap("workflowGraph", "specific_question_classifier", specificQuestionAction, "others"));
+        }
 
 
         // 编排 Node 节点，使用 StateGraph 的 API，将上述节点加入图中，并设置节点间的跳转关系
-        // 首先将节点注册到图，并使用 node_async(...) 将每个 NodeAction 包装为异步节点执行（提高吞吐或防止阻塞，具体实现框架已封装）
+        // 首先将节点注册到图，并使用 node_async(...) 将每个 NodeAction 包装为异步节点执行（执行线程由 graphNodeExecutor 决定，见 GraphExecutionConfiguration）
         /*                                     给这个工作流起一个名字，便于识别和日志记录。     之前定义的接力棒   */
         StateGraph stateGraph = new StateGraph("Consumer Service Workflow Demo", stateFactory)
 
                 // 定义节点
-                .addNode("feedback_classifier", node_async(feedbackClassifier))
-                .addNode("specific_question_classifier", node_async(specificQuestionClassifier))
+                /* 分类节点：外层计时和检查点，缓存已经套在 feedbackNode / specificQuestionNode 上 */
+                .addNode("feedback_classifier", node_async(
+                        graphMetrics.node("workflowGraph", "feedback_classifier",
+                                nodeCheckpointStore.wrap("workflowGraph", "feedback_classifier", feedbackNode)), graphNodeExecutor))
+                .addNode("specific_question_classifier", node_async(
+                        graphMetrics.node("workflowGraph", "specific_question_classifier",
+                                nodeCheckpointStore.wrap("workflowGraph", "specific_question_classifier", specificQuestionNode)), graphNodeExecutor))
                 /* 注册“记录和输出方案”节点。 */
-                .addNode("recorder", node_async(new RecordingNode()))
+                .addNode("recorder", node_async(graphMetrics.node("workflowGraph", "recorder",
+                        new RecordingNode(outcomeSink, "workflowGraph")), graphNodeExecutor))
 
                 // 定义边（流程顺序）
                 /* 所有流程的起点（START）都必须连接到 feedback_classifier 这个节点 */
@@ -133,7 +205,7 @@ public class GraphAutoConfiguration {
                 .addConditionalEdges("feedback_classifier",
 
                         /* edge_async(new FeedbackQuestionDispatcher()): 指定分拣机的决策逻辑。当 feedback_classifier 完成后，会调用 FeedbackQuestionDispatcher 里的代码。这个调度器会检查全局状态（OverAllState）并返回一个字符串（"positive" 或 "negative"）。*/
-                        edge_async(new FeedbackQuestionDispatcher()),
+                        edge_async(graphMetrics.edge("workflowGraph", "feedback_classifier", new FeedbackQuestionDispatcher())),
                         /* 如果调度器返回 "positive"，就把流程导向 "recorder" 节点。
                         如果调度器返回 "negative"，就把流程导向 "specific_question_classifier" 节点。 */
                         Map.of("positive", "recorder", "negative", "specific_question_classifier"))
@@ -142,25 +214,14 @@ public class GraphAutoConfiguration {
 
 
                 .addConditionalEdges("specific_question_classifier",
-                        edge_async(new SpecificQuestionDispatcher()),
+                        edge_async(graphMetrics.edge("workflowGraph", "specific_question_classifier", new SpecificQuestionDispatcher())),
                         Map.of("after-sale", "recorder", "transportation", "recorder", "quality", "recorder", "others",
                                 "recorder"))
 
                 // 图的结束节点
                 .addEdge("recorder", END);
 
-        /*使用stateGraph.getGraph()方法生成工作流的图形表示
-            GraphRepresentation.Type.PLANTUML指定使用PlantUML格式来生成图形
-            "workflow graph"是给这个图形起的名称*/
-        GraphRepresentation graphRepresentation = stateGraph.getGraph(GraphRepresentation.Type.PLANTUML,
-                "workflow graph");
-
-
-
-        System.out.println("\n\n");
-        System.out.println(graphRepresentation.content());
-        System.out.println("\n\n");
-
+        /* 流程图不在启动时渲染，需要时访问 GET /graph/{graph}/diagram（见 GraphRegistry） */
         return stateGraph;
     }
 
@@ -168,6 +229,14 @@ public class GraphAutoConfiguration {
     /* FeedbackQuestionDispatcher 是一个决策逻辑单元，在你的工作流中，它扮演着第一个智能分拣机的角色。 */
     /* 在 alibaba-cloud-ai-graph 框架中，任何想要在“边”（Edge）上执行逻辑、决定下一跳去哪里的类，都必须实现这个接口。EdgeAction 直译过来就是“边的动作”。 */
     public static class FeedbackQuestionDispatcher implements EdgeAction {
+
+        /* "not positive" 里也有 "positive"，否定说法排在前面优先命中 */
+        static final LabelRouter ROUTER = LabelRouter.builder()
+                .route("negative", "negative", "not positive")
+                .route("positive")
+                .otherwise("negative")
+                .build();
+
         /* 它的唯一职责是：在第一个分类节点 (feedback_classifier) 完成工作后，检查分类结果，并决定工作流的下一个走向。它本身不进行AI计算，只做简单的逻辑判断。 */
         @Override
         /* 传入“接力棒” */
@@ -179,34 +248,28 @@ public class GraphAutoConfiguration {
             /* 打印日志信息（调用最上面的日志定义） */
             logger.info("classifierOutput: {}", classifierOutput);
 
-            if (classifierOutput.contains("positive")) {
-                return "positive";
-            }
-            return "negative";
+            return ROUTER.route(classifierOutput);
         }
 
     }
 
     public static class SpecificQuestionDispatcher implements EdgeAction {
 
+        /* 构建一次，多个类别同时出现时按这里的顺序取第一个 */
+        static final LabelRouter ROUTER = LabelRouter.builder()
+                .route("after-sale")
+                .route("quality")
+                .route("transportation")
+                .otherwise("others")
+                .build();
+
         @Override
         public String apply(OverAllState state) {
 
             String classifierOutput = (String) state.value("classifier_output").orElse("");
             logger.info("classifierOutput: {}", classifierOutput);
 
-            Map<String, String> classifierMap = new HashMap<>();
-            classifierMap.put("after-sale", "after-sale");
-            classifierMap.put("quality", "quality");
-            classifierMap.put("transportation", "transportation");
-
-            for (Map.Entry<String, String> entry : classifierMap.entrySet()) {
-                if (classifierOutput.contains(entry.getKey())) {
-                    return entry.getValue();
-                }
-            }
-
-            return "others";
+            return ROUTER.route(classifierOutput);
         }
 
     }
@@ -0,0 +1,90 @@
+package com.woniu.spring_ai_alibaba_graph_dome.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作流的线程模型。
+ * <p>
+ * 默认（graph.execution.virtual-threads=false）保持原来的模型：节点在调用 invoke 的线程上同步执行，
+ * 批量 / SSE 等后台任务用普通线程池。
+ * 打开后（需要 Java 21+ 运行时）：节点动作、批量 / SSE 任务都跑在虚拟线程上，
+ * 配合 spring.threads.virtual.enabled 让 Tomcat 请求线程也换成虚拟线程，阻塞在 DashScope HTTP 调用上的请求不再占用平台线程。
+ * <p>
+ * 项目仍按 Java 17 编译，虚拟线程执行器通过反射获取。
+ */
+@Configuration
+public class GraphExecutionConfiguration implements WebMvcConfigurer {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphExecutionConfiguration.class);
+
+    private final ObjectProvider<ExecutorService> graphTaskExecutor;
+
+    public GraphExecutionConfiguration(@Qualifier("graphTaskExecutor") ObjectProvider<ExecutorService> graphTaskExecutor) {
+        this.graphTaskExecutor = graphTaskExecutor;
+    }
+
+    /**
+     * 这里声明了 Executor 类型的 Bean，Spring Boot 默认的 applicationTaskExecutor 不再创建，
+     * 所以 StreamingResponseBody 等 MVC 异步处理也显式交给 graphTaskExecutor。
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(graphTaskExecutor.getObject()));
+    }
+
+    /**
+     * 请求级别的后台任务（批量分类、SSE 推送）使用的执行器。
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService graphTaskExecutor(@Value("${graph.execution.virtual-threads:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            logger.info("Graph tasks run on virtual threads");
+            return newVirtualThreadPerTaskExecutor();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "graph-task-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 节点动作（node_async 包装的 NodeAction）使用的执行器：默认直接在当前线程执行，与框架自带的 node_async 一致。
+     */
+    @Bean
+    public Executor graphNodeExecutor(@Value("${graph.execution.virtual-threads:false}") boolean virtualThreads,
+                                      ExecutorService graphTaskExecutor) {
+        if (virtualThreads) {
+            return graphTaskExecutor;
+        }
+        return Runnable::run;
+    }
+
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (Runtime.version().feature() < 21) {
+            throw new IllegalStateException("graph.execution.virtual-threads requires Java 21+, current runtime is "
+                    + Runtime.version());
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available", e);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.woniu.spring_ai_alibaba_graph_dome.config;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.node.QuestionClassifierNode;
+import com.woniu.spring_ai_alibaba_graph_dome.Demo.RecordingNode;
+import com.woniu.spring_ai_alibaba_graph_dome.distill.LabelLog;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.CountingEdgeAction;
+import com.woniu.spring_ai_alibaba_graph_dome.outcome.OutcomeRecord;
+import com.woniu.spring_ai_alibaba_graph_dome.service.GraphBatchService;
+import org.springframework.aot.hint.ExecutableMode;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/**
+ * native image（mvn -Pnative native:compile）需要的反射 / 序列化提示。
+ * <p>
+ * Bean 和 @Value 注入由 Spring AOT 自己生成代码，这里只登记 AOT 看不到的部分：
+ * 图框架里的状态和节点、各图的 EdgeAction 调度器、用 Gson 按字段读写的快照类，
+ * 以及虚拟线程执行器的反射调用。新增 Gson 落盘的类型时要加到这里。
+ */
+public class GraphRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final MemberCategory[] ALL_MEMBERS = {
+            MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+            MemberCategory.INVOKE_DECLARED_METHODS,
+            MemberCategory.DECLARED_FIELDS
+    };
+
+    /* 调度器按路由选下一跳，工作流里的节点动作 */
+    private static final List<String> GRAPH_ACTIONS = List.of(
+            GraphAutoConfiguration.FeedbackQuestionDispatcher.class.getName(),
+            GraphAutoConfiguration.SpecificQuestionDispatcher.class.getName(),
+            CustomerServiceConfiguration.FeedbackQuestionDispatcher.class.getName(),
+            RecommendedPlacesConfiguration.IntentClassifier.class.getName(),
+            CountingEdgeAction.class.getName(),
+            RecordingNode.class.getName(),
+            QuestionClassifierNode.class.getName(),
+            QuestionClassifierNode.Builder.class.getName());
+
+    /* Gson 通过反射读写字段；私有的快照类只能按名字登记 */
+    private static final List<String> GSON_TYPES = List.of(
+            OutcomeRecord.class.getName(),
+            LabelLog.Entry.class.getName(),
+            GraphBatchService.BatchItemResult.class.getName(),
+            GraphBatchService.BatchSummary.class.getName(),
+            "com.woniu.spring_ai_alibaba_graph_dome.cache.ClassificationCache$SnapshotEntry",
+            "com.woniu.spring_ai_alibaba_graph_dome.checkpoint.NodeCheckpointStore$Record",
+            "com.woniu.spring_ai_alibaba_graph_dome.memory.BoundedChatMemory$SpilledSession",
+            "com.woniu.spring_ai_alibaba_graph_dome.memory.BoundedChatMemory$Turn");
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        /* 状态在图框架里会被拷贝、序列化（checkpoint saver 走 Java 序列化） */
+        hints.reflection().registerType(OverAllState.class, ALL_MEMBERS);
+        hints.serialization().registerType(OverAllState.class);
+        for (String type : GRAPH_ACTIONS) {
+            hints.reflection().registerType(TypeReference.of(type), ALL_MEMBERS);
+        }
+        for (String type : GSON_TYPES) {
+            hints.reflection().registerType(TypeReference.of(type), ALL_MEMBERS);
+        }
+        /* GraphExecutionConfiguration 按 Java 17 编译，通过反射拿虚拟线程执行器 */
+        hints.reflection().registerType(Executors.class,
+                type -> type.withMethod("newVirtualThreadPerTaskExecutor", List.of(), ExecutableMode.INVOKE));
+    }
+
+}
@@ -1,28 +1,41 @@
 package com.woniu.spring_ai_alibaba_graph_dome.config;
 
-import com.alibaba.cloud.ai.graph.GraphRepresentation;
 import com.alibaba.cloud.ai.graph.OverAllState;
 import com.alibaba.cloud.ai.graph.OverAllStateFactory;
 import com.alibaba.cloud.ai.graph.StateGraph;
 import com.alibaba.cloud.ai.graph.action.EdgeAction;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
 import com.alibaba.cloud.ai.graph.exception.GraphStateException;
 import com.alibaba.cloud.ai.graph.node.QuestionClassifierNode;
-import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
 import com.woniu.spring_ai_alibaba_graph_dome.Demo.RecordingNode;
+import com.woniu.spring_ai_alibaba_graph_dome.batch.ClassifierBatching;
+import com.woniu.spring_ai_alibaba_graph_dome.cache.ClassificationCache;
+import com.woniu.spring_ai_alibaba_graph_dome.checkpoint.NodeCheckpointStore;
+import com.woniu.spring_ai_alibaba_graph_dome.distill.DistilledClassifier;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.LabelRouter;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.ParallelBranches;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.StateSchema;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import com.woniu.spring_ai_alibaba_graph_dome.node.CompactClassifiers;
+import com.woniu.spring_ai_alibaba_graph_dome.node.ExtractionNode;
+import com.woniu.spring_ai_alibaba_graph_dome.outcome.OutcomeSink;
+import com.woniu.spring_ai_alibaba_graph_dome.resilience.ClassifierResilience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import static com.alibaba.cloud.ai.graph.StateGraph.END;
 import static com.alibaba.cloud.ai.graph.StateGraph.START;
 import static com.alibaba.cloud.ai.graph.action.AsyncEdgeAction.edge_async;
-import static com.alibaba.cloud.ai.graph.action.AsyncNodeAction.node_async;
+import static com.woniu.spring_ai_alibaba_graph_dome.graph.AsyncNodeActions.node_async;
 
 /**
  * @author zcnovice
@@ -33,79 +46,197 @@ public class RecommendedPlacesConfiguration {
 
     private static final Logger logger = LoggerFactory.getLogger(GraphAutoConfiguration.class);
 
-    @Bean
-    /* 接收一个ChatClient.Builder参数，用于构建AI聊天客户端 */
-    public StateGraph workflowGraphR(ChatClient.Builder builder) throws GraphStateException {
-        ChatClient chatClient = builder.defaultAdvisors(new SimpleLoggerAdvisor()).build();
+    /* 地点类别、地点解析两个分支各写其中一个字段，按字段合并 */
+    public static final String PLACE_QUERY_KEY = "place_query";
 
-        OverAllStateFactory stateFactory = () -> {
-            OverAllState state = new OverAllState();
+    private static final List<String> INTENT_CATEGORIES = List.of("with intent", "without intent");
 
-            state.registerKeyAndStrategy("input", new ReplaceStrategy());
-            state.registerKeyAndStrategy("classifier_output", new ReplaceStrategy());
-            state.registerKeyAndStrategy("solution", new ReplaceStrategy());
-            return state;
-        };
+    /* 精简说明：精简提示词和批量分类共用 */
+    private static final String INTENT_INSTRUCTION =
+            "Does the text name a category of place to visit (e.g. coffee shop, hospital)?";
+
+    private static final String PLACE_CATEGORY_INSTRUCTION = "Which kind of place does the user want to visit?";
+
+    static final List<String> PLACE_CATEGORIES = List.of("restaurant", "cafe", "hotel", "scenic spot", "shopping",
+            "hospital", "entertainment", "unspecified");
+
+    private static final StateSchema STATE_SCHEMA = StateSchema.builder()
+            .replace("input", "classifier_output", "solution")
+            .replace(NodeCheckpointStore.RUN_ID_KEY, ClassifierResilience.DEADLINE_KEY)
+            .merge(PLACE_QUERY_KEY)
+            .build();
+
+    @Bean
+    @Lazy
+    /* 接收共享的 ChatClient */
+    public StateGraph workflowGraphR(@Qualifier("graphChatClient") ChatClient chatClient, ClassificationCache classificationCache,
+                                    NodeCheckpointStore nodeCheckpointStore,
+                                    OutcomeSink outcomeSink,
+                                    ClassifierResilience classifierResilience,
+                                    CompactClassifiers compactClassifiers,
+                                    ClassifierBatching classifierBatching,
+                                    DistilledClassifier distilledClassifier,
+                                    @Qualifier("graphNodeExecutor") Executor graphNodeExecutor,
+                                    @Qualifier("graphTaskExecutor") Executor graphTaskExecutor,
+                                    GraphMetrics graphMetrics) throws GraphStateException {
+
+        OverAllStateFactory stateFactory = STATE_SCHEMA.factory();
 
 
         /*  定义一个问题分类节点，用于将用户输入分类为有意图与无意图 */
         QuestionClassifierNode intentClassifier  = QuestionClassifierNode.builder()
                 .chatClient(chatClient)
                 .inputTextKey("input")
-                .categories(List.of("with intent", "without intent"))
+                .categories(INTENT_CATEGORIES)
                 .classificationInstructions(
                         List.of("\"Determine if the user's input specifies a **category of place** to visit (e.g., 'coffee shop', 'hospital').\n" +
                                 "Inputs with a specific category are 'with intent'. General inquiries like 'where to go for fun?' are 'without intent'.\""))
                 .build();
 
 
+        NodeAction intentAction = compactClassifiers.select("workflowGraphR", intentClassifier, chatClient,
+                INTENT_CATEGORIES, INTENT_INSTRUCTION);
+        intentAction = classifierBatching.wrap("workflowGraphR", "intentClassifier", intentAction, chatClient,
+                INTENT_CATEGORIES, INTENT_INSTRUCTION);
+
+        /* 地点类别：和意图一样是分类问题，输出搬到 place_query.category */
+        QuestionClassifierNode categoryClassifier = QuestionClassifierNode.builder()
+                .chatClient(chatClient)
+                .inputTextKey("input")
+                .categories(PLACE_CATEGORIES)
+                .classificationInstructions(
+                        List.of("Which kind of place does the user want to visit? Use 'unspecified' if the input does not say."))
+                .build();
+        NodeAction categoryAction = compactClassifiers.select("workflowGraphR", categoryClassifier, chatClient,
+                PLACE_CATEGORIES, PLACE_CATEGORY_INSTRUCTION);
+        categoryAction = classifierBatching.wrap("workflowGraphR", "placeCategory", categoryAction, chatClient,
+                PLACE_CATEGORIES, PLACE_CATEGORY_INSTRUCTION);
+
+        /* 地点解析：抽取城市 / 区县 / 地标，输出搬到 place_query.location */
+        NodeAction locationAction = new ExtractionNode(chatClient, "input",
+                "the city, district or landmark the user wants to go to", 500, 16);
+
+        /* 三个分支互不依赖，同时执行，全部完成后汇合成一次状态更新；/stream 按分支名逐个推送完成事件 */
+        ParallelBranches queryAnalysis = ParallelBranches.builder(STATE_SCHEMA, graphTaskExecutor)
+                .branch("intentClassifier", graphMetrics.node("workflowGraphR", "intentClassifier",
+                        nodeCheckpointStore.wrap("workflowGraphR", "intentClassifier",
+                                classificationCache.wrap("workflowGraphR", "intentClassifier",
+                                        distilledClassifier.wrap("workflowGraphR", "intentClassifier",
+                                                classifierResilience.wrap("workflowGraphR", "intentClassifier", intentAction,
+                                                        "without intent"),
+                                                INTENT_CATEGORIES)))))
+                .branch("placeCategory", toPlaceQuery("category", graphMetrics.node("workflowGraphR", "placeCategory",
+                        nodeCheckpointStore.wrap("workflowGraphR", "placeCategory",
+                                classificationCache.wrap("workflowGraphR", "placeCategory",
+                                        distilledClassifier.wrap("workflowGraphR", "placeCategory",
+                                                classifierResilience.wrap("workflowGraphR", "placeCategory", categoryAction,
+                                                        "unspecified"),
+                                                PLACE_CATEGORIES))))))
+                /* 自由文本抽取：没有固定类别，不走蒸馏模型和批量分类，其余装饰和分类分支相同 */
+                .branch("locationParser", toPlaceQuery("location", graphMetrics.node("workflowGraphR", "locationParser",
+                        nodeCheckpointStore.wrap("workflowGraphR", "locationParser",
+                                classificationCache.wrap("workflowGraphR", "locationParser",
+                                        classifierResilience.wrap("workflowGraphR", "locationParser", locationAction,
+                                                ExtractionNode.NONE))))))
+                .build();
+
         StateGraph stateGraph = new StateGraph("Consumer Service Workflow Demo", stateFactory)
 
                 // 定义节点
-                .addNode("intentClassifier", node_async(intentClassifier ))
+                /* 并行分支 + 汇合：意图识别、地点类别、地点解析，耗时取最慢的一个 */
+                .addNode("queryAnalysis", node_async(graphMetrics.node("workflowGraphR", "queryAnalysis", queryAnalysis),
+                        graphNodeExecutor))
                 /* 注册“记录和输出方案”节点。 */
-                .addNode("recorder", node_async(new RecordingNode()))
+                .addNode("recorder", node_async(graphMetrics.node("workflowGraphR", "recorder",
+                        new RecordingNode(outcomeSink, "workflowGraphR", RecommendedPlacesConfiguration::describePlaceQuery)),
+                        graphNodeExecutor))
 
 
                 // 定义边（流程顺序）
-                /* 所有流程的起点（START）都必须连接到 intentClassifier 这个节点 */
+                /* 所有流程的起点（START）都必须连接到 queryAnalysis 这个节点 */
                 /* 定义起始结点 */
-                .addEdge(START, "intentClassifier")
+                .addEdge(START, "queryAnalysis")
 
 
-                .addConditionalEdges("intentClassifier",
-                        edge_async(new IntentClassifier()),
+                .addConditionalEdges("queryAnalysis",
+                        edge_async(graphMetrics.edge("workflowGraphR", "queryAnalysis", new IntentClassifier())),
                         Map.of("with intent", "recorder", "without intent", "recorder"))
 
                 // 图的结束节点
                 .addEdge("recorder", END);
 
 
-        GraphRepresentation graphRepresentation = stateGraph.getGraph(GraphRepresentation.Type.PLANTUML,
-                "workflow graph");
+        return stateGraph;
 
+    }
 
+    /**
+     * 分支的 classifier_output 搬到 place_query 的一个字段下，几个分支并行时互不覆盖。
+     */
+    static NodeAction toPlaceQuery(String field, NodeAction branch) {
+        return state -> {
+            Object value = branch.apply(state).get("classifier_output");
+            return Map.of(PLACE_QUERY_KEY, Map.of(field, value == null ? ExtractionNode.NONE : value));
+        };
+    }
 
-        System.out.println("\n\n");
-        System.out.println(graphRepresentation.content());
-        System.out.println("\n\n");
+    /**
+     * place_query 里识别出来的地点类别，没有识别出来（unspecified / 分支兜底）时返回 null。
+     */
+    static String placeCategory(OverAllState state) {
+        return placeQueryField(state, "category", "unspecified");
+    }
 
-        return stateGraph;
+    /**
+     * 给 solution 和 OutcomeRecord 用的地点描述，例如 "cafe @ 杭州西湖"；类别和位置都没识别出来时返回 null。
+     */
+    static String describePlaceQuery(OverAllState state) {
+        String category = placeCategory(state);
+        String location = placeQueryField(state, "location", ExtractionNode.NONE);
+        if (category == null || location == null) {
+            return category == null ? location : category;
+        }
+        return category + " @ " + location;
+    }
 
+    private static String placeQueryField(OverAllState state, String field, String unknown) {
+        Object value = state.value(PLACE_QUERY_KEY)
+                .filter(Map.class::isInstance)
+                .map(query -> ((Map<?, ?>) query).get(field))
+                .orElse(null);
+        if (value == null) {
+            return null;
+        }
+        String text = value.toString().trim();
+        if (text.isEmpty() || text.equalsIgnoreCase(unknown) || text.equalsIgnoreCase(ExtractionNode.NONE)) {
+            return null;
+        }
+        return text;
     }
 
     public static class IntentClassifier implements EdgeAction {
 
+        /* "without intent" 要先于 "with intent" 判断 */
+        static final LabelRouter ROUTER = LabelRouter.builder()
+                .route("without intent")
+                .route("with intent")
+                .otherwise("without intent")
+                .build();
+
         @Override
         public String apply(OverAllState state) {
             String classifierOutput = (String) state.value("classifier_output").orElse("");
             /* 打印日志信息（调用最上面的日志定义） */
             logger.info("classifierOutput: {}", classifierOutput);
 
-            if (classifierOutput.contains("with intent")) {
+            String route = ROUTER.route(classifierOutput);
+            /* 意图分支判成无意图（或熔断兜底），但类别分支识别出了具体类别时，以类别分支为准 */
+            String category = placeCategory(state);
+            if ("without intent".equals(route) && category != null && PLACE_CATEGORIES.contains(category)) {
+                logger.info("place category {} overrides intent output", category);
                 return "with intent";
             }
-            return "without intent";
+            return route;
         }
     }
 
@@ -0,0 +1,24 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.woniu.spring_ai_alibaba_graph_dome.admission.AdmissionRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * 模型调用被准入控制拒绝时返回 429 和 Retry-After（秒），而不是 500。
+ * 异常通常被图框架包了几层，Spring 按异常链匹配 @ExceptionHandler，包装过的也能进到这里。
+ */
+@RestControllerAdvice
+public class AdmissionRejectedHandler {
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<String> rejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.retryAfter().toSeconds()))
+                .body(e.getMessage());
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.woniu.spring_ai_alibaba_graph_dome.memory.BoundedChatMemory;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * helloworld 会话记忆的占用查看与按会话清除。
+ */
+@RestController
+@RequestMapping("/graph/memory")
+public class ChatMemoryController {
+
+    private final BoundedChatMemory chatMemory;
+
+    public ChatMemoryController(BoundedChatMemory chatMemory) {
+        this.chatMemory = chatMemory;
+    }
+
+    @GetMapping
+    public BoundedChatMemory.Stats stats() {
+        return chatMemory.stats();
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public BoundedChatMemory.Stats clear(@PathVariable String sessionId) {
+        chatMemory.clear(sessionId);
+        return chatMemory.stats();
+    }
+
+}
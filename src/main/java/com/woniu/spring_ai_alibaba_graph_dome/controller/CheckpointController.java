@@ -0,0 +1,33 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.woniu.spring_ai_alibaba_graph_dome.checkpoint.NodeCheckpointStore;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 节点 checkpoint 日志的统计与手动压缩。
+ */
+@RestController
+@RequestMapping("/graph/checkpoints")
+public class CheckpointController {
+
+    private final NodeCheckpointStore nodeCheckpointStore;
+
+    public CheckpointController(NodeCheckpointStore nodeCheckpointStore) {
+        this.nodeCheckpointStore = nodeCheckpointStore;
+    }
+
+    @GetMapping("/stats")
+    public NodeCheckpointStore.Stats stats() {
+        return nodeCheckpointStore.stats();
+    }
+
+    @PostMapping("/compact")
+    public NodeCheckpointStore.Stats compact() {
+        nodeCheckpointStore.compact();
+        return nodeCheckpointStore.stats();
+    }
+
+}
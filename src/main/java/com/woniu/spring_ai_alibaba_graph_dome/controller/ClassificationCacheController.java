@@ -0,0 +1,33 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.woniu.spring_ai_alibaba_graph_dome.cache.ClassificationCache;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 分类缓存的命中率查看与清空。
+ */
+@RestController
+@RequestMapping("/graph/cache")
+public class ClassificationCacheController {
+
+    private final ClassificationCache classificationCache;
+
+    public ClassificationCacheController(ClassificationCache classificationCache) {
+        this.classificationCache = classificationCache;
+    }
+
+    @GetMapping("/stats")
+    public ClassificationCache.Stats stats() {
+        return classificationCache.stats();
+    }
+
+    @DeleteMapping
+    public ClassificationCache.Stats clear() {
+        classificationCache.clear();
+        return classificationCache.stats();
+    }
+
+}
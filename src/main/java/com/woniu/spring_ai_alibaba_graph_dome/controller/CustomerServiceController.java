@@ -1,34 +1,59 @@
 package com.woniu.spring_ai_alibaba_graph_dome.controller;
 
 
-import com.alibaba.cloud.ai.graph.CompiledGraph;
-import com.alibaba.cloud.ai.graph.StateGraph;
-import com.alibaba.cloud.ai.graph.exception.GraphStateException;
-import org.springframework.beans.factory.annotation.Qualifier;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.GraphRegistry;
+import com.woniu.spring_ai_alibaba_graph_dome.service.AsyncGraphInvoker;
+import com.woniu.spring_ai_alibaba_graph_dome.service.GraphInvocationCoalescer;
+import com.woniu.spring_ai_alibaba_graph_dome.service.GraphStreamService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/graph/customerService")
 public class CustomerServiceController {
 
-    private final CompiledGraph compiledGraph;
+    private final GraphRegistry graphRegistry;
 
-    public CustomerServiceController(@Qualifier("CustomerGraph") StateGraph stateGraph) throws GraphStateException {
+    private final GraphStreamService graphStreamService;
 
-        this.compiledGraph = stateGraph.compile();
+    private final GraphInvocationCoalescer graphInvocationCoalescer;
+
+    private final AsyncGraphInvoker asyncGraphInvoker;
+
+    public CustomerServiceController(GraphRegistry graphRegistry, GraphStreamService graphStreamService,
+            GraphInvocationCoalescer graphInvocationCoalescer, AsyncGraphInvoker asyncGraphInvoker) {
+        this.graphRegistry = graphRegistry;
+        this.graphStreamService = graphStreamService;
+        this.graphInvocationCoalescer = graphInvocationCoalescer;
+        this.asyncGraphInvoker = asyncGraphInvoker;
     }
 
 
     @GetMapping("/chat")
-    public String simpleChat(@RequestParam("query") String query) {
+    public ResponseEntity<String> simpleChat(@RequestParam("query") String query,
+                                             @RequestParam(value = "runId", required = false) String runId) {
+
+        return AsyncGraphInvoker.toResponse(graphInvocationCoalescer.invoke(GraphRegistry.CUSTOMER_SERVICE,
+                graphRegistry.get(GraphRegistry.CUSTOMER_SERVICE), query, runId), null);
+    }
 
-        return compiledGraph.invoke(Map.of("input", query))
-                .flatMap(input -> input.value("solution"))
-                .get().toString();
+    @GetMapping("/chat/async")
+    public CompletableFuture<ResponseEntity<String>> simpleChatAsync(@RequestParam("query") String query,
+            @RequestParam(value = "runId", required = false) String runId,
+            @RequestParam(value = "timeoutMs", required = false) Long timeoutMs) {
+        return asyncGraphInvoker.solution(GraphRegistry.CUSTOMER_SERVICE, query, runId, timeoutMs, null);
     }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam("query") String query) {
+        return graphStreamService.stream(graphRegistry.get(GraphRegistry.CUSTOMER_SERVICE), query);
+    }
+
 }
@@ -0,0 +1,35 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.woniu.spring_ai_alibaba_graph_dome.distill.DistilledClassifier;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * 蒸馏分类器的状态（当前模型版本、各节点本地作答 / 影子对比的计数）与模型热加载。
+ */
+@RestController
+@RequestMapping("/graph/distilled")
+public class DistilledClassifierController {
+
+    private final DistilledClassifier distilledClassifier;
+
+    public DistilledClassifierController(DistilledClassifier distilledClassifier) {
+        this.distilledClassifier = distilledClassifier;
+    }
+
+    @GetMapping
+    public DistilledClassifier.Stats stats() {
+        return distilledClassifier.stats();
+    }
+
+    @PostMapping("/reload")
+    public DistilledClassifier.Stats reload() throws IOException {
+        distilledClassifier.reload();
+        return distilledClassifier.stats();
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.GraphRegistry;
+import com.woniu.spring_ai_alibaba_graph_dome.service.GraphBatchService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量分类接口：请求体是 JSON 数组或 JSON Lines（每行一个字符串，或带 input / query 字段的对象，也可以是纯文本），
+ * 响应是 NDJSON，每条输入一行结果，最后一行是 {"summary": {...}}。请求体边读边解析，不会整个读成一个字符串。
+ * <p>
+ * 例：curl -X POST 'localhost:8080/graph/demo/batch?concurrency=8&ordered=false' --data-binary @feedback.jsonl
+ */
+@RestController
+@RequestMapping("/graph")
+public class GraphBatchController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final Gson gson = new Gson();
+
+    private final GraphRegistry graphRegistry;
+
+    private final GraphBatchService graphBatchService;
+
+    public GraphBatchController(GraphRegistry graphRegistry, GraphBatchService graphBatchService) {
+        this.graphRegistry = graphRegistry;
+        this.graphBatchService = graphBatchService;
+    }
+
+    @PostMapping("/{graph}/batch")
+    public ResponseEntity<StreamingResponseBody> batch(@PathVariable("graph") String graph,
+                                                       InputStream body,
+                                                       @RequestParam(value = "concurrency", defaultValue = "8") int concurrency,
+                                                       @RequestParam(value = "ordered", defaultValue = "true") boolean ordered) {
+        if (!graphRegistry.contains(graph)) {
+            return ResponseEntity.notFound().build();
+        }
+        List<String> inputs;
+        try {
+            inputs = parseInputs(new InputStreamReader(body, StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody stream = outputStream -> {
+            Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            try {
+                GraphBatchService.BatchSummary summary = graphBatchService.run(graph, inputs, concurrency, ordered,
+                        result -> writeLine(writer, result));
+                writeLine(writer, Map.of("summary", summary));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(stream);
+    }
+
+    private void writeLine(Writer writer, Object value) {
+        try {
+            writer.write(gson.toJson(value));
+            writer.write('\n');
+            /* 逐行刷出，客户端边跑边拿到结果 */
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<String> parseInputs(Reader body) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(body);
+        if (firstNonWhitespace(reader) == '[') {
+            /* JSON 数组按元素流式读取 */
+            JsonReader json = new JsonReader(reader);
+            json.beginArray();
+            while (json.hasNext()) {
+                inputs.add(toInput(JsonParser.parseReader(json)));
+            }
+            json.endArray();
+            return inputs;
+        }
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String value = line.strip();
+            if (value.startsWith("{") || value.startsWith("\"")) {
+                inputs.add(toInput(JsonParser.parseString(value)));
+            } else {
+                inputs.add(value);
+            }
+        }
+        return inputs;
+    }
+
+    /* 跳过开头的空白，返回第一个非空白字符但不消费它；空输入返回 -1 */
+    private static int firstNonWhitespace(BufferedReader reader) throws IOException {
+        while (true) {
+            reader.mark(1);
+            int c = reader.read();
+            if (c < 0 || !Character.isWhitespace(c)) {
+                reader.reset();
+                return c;
+            }
+        }
+    }
+
+    private static String toInput(JsonElement element) {
+        if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            JsonElement input = object.has("input") ? object.get("input") : object.get("query");
+            if (input == null) {
+                throw new IllegalArgumentException("Missing input field: " + object);
+            }
+            return input.getAsString();
+        }
+        return element.getAsString();
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.woniu.spring_ai_alibaba_graph_dome.service.GraphInvocationCoalescer;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 相同请求合并的统计：真正执行了多少次、合并掉了多少次。
+ */
+@RestController
+@RequestMapping("/graph/coalescing")
+public class GraphCoalescingController {
+
+    private final GraphInvocationCoalescer graphInvocationCoalescer;
+
+    public GraphCoalescingController(GraphInvocationCoalescer graphInvocationCoalescer) {
+        this.graphInvocationCoalescer = graphInvocationCoalescer;
+    }
+
+    @GetMapping("/stats")
+    public GraphInvocationCoalescer.Stats stats() {
+        return graphInvocationCoalescer.stats();
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.alibaba.cloud.ai.graph.GraphRepresentation;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.GraphRegistry;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+
+/**
+ * 工作流流程图：原来启动时渲染 PlantUML 并打印到控制台，现在按需渲染。
+ * <p>
+ * 例：GET /graph/demo/diagram、GET /graph/customerService/diagram?type=mermaid
+ */
+@RestController
+@RequestMapping("/graph")
+public class GraphDiagramController {
+
+    private final GraphRegistry graphRegistry;
+
+    public GraphDiagramController(GraphRegistry graphRegistry) {
+        this.graphRegistry = graphRegistry;
+    }
+
+    @GetMapping("/graphs")
+    public Set<String> graphs() {
+        return graphRegistry.names();
+    }
+
+    @GetMapping(value = "/{graph}/diagram", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> diagram(@PathVariable("graph") String graph,
+                                          @RequestParam(value = "type", defaultValue = "plantuml") String type) {
+        if (!graphRegistry.contains(graph)) {
+            return ResponseEntity.notFound().build();
+        }
+        GraphRepresentation.Type representation = "mermaid".equalsIgnoreCase(type)
+                ? GraphRepresentation.Type.MERMAID
+                : GraphRepresentation.Type.PLANTUML;
+        return ResponseEntity.ok(graphRegistry.diagram(graph, representation));
+    }
+
+}
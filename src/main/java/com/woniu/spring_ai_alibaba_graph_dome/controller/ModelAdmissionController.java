@@ -0,0 +1,26 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.woniu.spring_ai_alibaba_graph_dome.admission.ModelAdmission;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 模型调用准入的当前状态：并发上限、在途调用数、各分道排队数。
+ */
+@RestController
+@RequestMapping("/graph/admission")
+public class ModelAdmissionController {
+
+    private final ModelAdmission modelAdmission;
+
+    public ModelAdmissionController(ModelAdmission modelAdmission) {
+        this.modelAdmission = modelAdmission;
+    }
+
+    @GetMapping
+    public ModelAdmission.Stats stats() {
+        return modelAdmission.stats();
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.woniu.spring_ai_alibaba_graph_dome.outcome.OutcomeRecord;
+import com.woniu.spring_ai_alibaba_graph_dome.outcome.OutcomeSink;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 最近的工作流结果（RecordingNode 写入）和落盘队列状态。
+ * <p>
+ * 例：GET /graph/outcomes?graph=workflowGraph&limit=20
+ */
+@RestController
+@RequestMapping("/graph/outcomes")
+public class OutcomeController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final OutcomeSink outcomeSink;
+
+    public OutcomeController(OutcomeSink outcomeSink) {
+        this.outcomeSink = outcomeSink;
+    }
+
+    @GetMapping
+    public List<OutcomeRecord> recent(@RequestParam(value = "graph", required = false) String graph,
+                                      @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        return outcomeSink.recent(graph, Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+
+    @GetMapping("/stats")
+    public OutcomeSink.Stats stats() {
+        return outcomeSink.stats();
+    }
+
+}
@@ -1,16 +1,19 @@
 package com.woniu.spring_ai_alibaba_graph_dome.controller;
 
-import com.alibaba.cloud.ai.graph.CompiledGraph;
-import com.alibaba.cloud.ai.graph.StateGraph;
 
-import com.alibaba.cloud.ai.graph.exception.GraphStateException;
-import org.springframework.beans.factory.annotation.Qualifier;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.GraphRegistry;
+import com.woniu.spring_ai_alibaba_graph_dome.service.AsyncGraphInvoker;
+import com.woniu.spring_ai_alibaba_graph_dome.service.GraphInvocationCoalescer;
+import com.woniu.spring_ai_alibaba_graph_dome.service.GraphStreamService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author zcnovice
@@ -20,18 +23,42 @@ import java.util.Map;
 @RequestMapping("/graph/recommendedPlaces")
 public class RecommendedPlacesController {
 
-    private final CompiledGraph compiledGraph;
+    private final GraphRegistry graphRegistry;
 
+    private final GraphStreamService graphStreamService;
 
-    public RecommendedPlacesController(@Qualifier("workflowGraphR") StateGraph stateGraph) throws GraphStateException {
-        this.compiledGraph  = stateGraph.compile();
+    private final GraphInvocationCoalescer graphInvocationCoalescer;
+
+    private final AsyncGraphInvoker asyncGraphInvoker;
+
+
+    public RecommendedPlacesController(GraphRegistry graphRegistry, GraphStreamService graphStreamService,
+            GraphInvocationCoalescer graphInvocationCoalescer, AsyncGraphInvoker asyncGraphInvoker) {
+        this.graphRegistry = graphRegistry;
+        this.graphStreamService = graphStreamService;
+        this.graphInvocationCoalescer = graphInvocationCoalescer;
+        this.asyncGraphInvoker = asyncGraphInvoker;
     }
 
     @GetMapping("/places")
-    public String recommendPlaces(@RequestParam("query") String query) {
-        return compiledGraph.invoke(Map.of("input", query))
+    public String recommendPlaces(@RequestParam("query") String query,
+                                  @RequestParam(value = "runId", required = false) String runId) {
+        return graphInvocationCoalescer.invoke(GraphRegistry.RECOMMENDED_PLACES,
+                        graphRegistry.get(GraphRegistry.RECOMMENDED_PLACES), query, runId)
                 .flatMap(state -> state.value("solution"))
                 .orElse("No places recommended").toString();
     }
 
+    @GetMapping("/places/async")
+    public CompletableFuture<ResponseEntity<String>> recommendPlacesAsync(@RequestParam("query") String query,
+            @RequestParam(value = "runId", required = false) String runId,
+            @RequestParam(value = "timeoutMs", required = false) Long timeoutMs) {
+        return asyncGraphInvoker.solution(GraphRegistry.RECOMMENDED_PLACES, query, runId, timeoutMs, "No places recommended");
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam("query") String query) {
+        return graphStreamService.stream(graphRegistry.get(GraphRegistry.RECOMMENDED_PLACES), query);
+    }
+
 }
@@ -0,0 +1,29 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.TokenUsage;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 各分类节点的模型 token 用量：同一个节点 standard / compact 两行对比，就是精简提示词前后的输入输出 token 数。
+ */
+@RestController
+@RequestMapping("/graph/tokens")
+public class TokenUsageController {
+
+    private final GraphMetrics graphMetrics;
+
+    public TokenUsageController(GraphMetrics graphMetrics) {
+        this.graphMetrics = graphMetrics;
+    }
+
+    @GetMapping
+    public List<TokenUsage.Row> usage() {
+        return graphMetrics.tokenUsage().rows();
+    }
+
+}
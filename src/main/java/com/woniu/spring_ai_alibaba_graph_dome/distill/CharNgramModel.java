@@ -0,0 +1,252 @@
+package com.woniu.spring_ai_alibaba_graph_dome.distill;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 字符 n-gram + 多分类逻辑回归（softmax），从大模型标注过的流量里蒸馏出来的本地分类器。
+ * <p>
+ * 特征：输入经 NFKC、转小写、标点换成空格后，取长度 minN~maxN 的所有字符片段，哈希到 2^bits 个桶里
+ * （feature hashing，不需要词表，中英文同样处理），每个片段的取值按 1/sqrt(片段总数) 归一。
+ * 预测一次只做一遍哈希和 labels × 片段数 次浮点加法，微秒级，不分配大对象。
+ * <p>
+ * 实例训练完成后不再修改，可以被多个线程共享。
+ */
+public final class CharNgramModel {
+
+    private final List<String> labels;
+
+    private final int minN;
+
+    private final int maxN;
+
+    private final int bits;
+
+    /* weights[label * buckets + bucket] */
+    private final float[] weights;
+
+    private final float[] bias;
+
+    CharNgramModel(List<String> labels, int minN, int maxN, int bits, float[] weights, float[] bias) {
+        this.labels = List.copyOf(labels);
+        this.minN = minN;
+        this.maxN = maxN;
+        this.bits = bits;
+        this.weights = weights;
+        this.bias = bias;
+    }
+
+    public List<String> labels() {
+        return labels;
+    }
+
+    /**
+     * @return 概率最高的类别及其概率
+     */
+    public Prediction predict(String input) {
+        int[] features = features(input, minN, maxN, bits);
+        double[] probabilities = probabilities(features);
+        int best = 0;
+        for (int i = 1; i < probabilities.length; i++) {
+            if (probabilities[i] > probabilities[best]) {
+                best = i;
+            }
+        }
+        return new Prediction(labels.get(best), probabilities[best]);
+    }
+
+    private double[] probabilities(int[] features) {
+        int buckets = 1 << bits;
+        double value = features.length == 0 ? 0 : 1.0 / Math.sqrt(features.length);
+        double[] scores = new double[labels.size()];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int label = 0; label < scores.length; label++) {
+            double score = bias[label];
+            int offset = label * buckets;
+            for (int feature : features) {
+                score += weights[offset + feature] * value;
+            }
+            scores[label] = score;
+            max = Math.max(max, score);
+        }
+        double sum = 0;
+        for (int label = 0; label < scores.length; label++) {
+            scores[label] = Math.exp(scores[label] - max);
+            sum += scores[label];
+        }
+        for (int label = 0; label < scores.length; label++) {
+            scores[label] /= sum;
+        }
+        return scores;
+    }
+
+    /**
+     * SGD 训练 softmax 回归。
+     *
+     * @param examples 已经去重的 (输入, 类别)，类别必须在 labels 里
+     */
+    static CharNgramModel train(List<Example> examples, List<String> labels, int minN, int maxN, int bits,
+                                int epochs, double learningRate, double l2, long seed) {
+        int buckets = 1 << bits;
+        CharNgramModel model = new CharNgramModel(labels, minN, maxN, bits,
+                new float[labels.size() * buckets], new float[labels.size()]);
+
+        List<int[]> features = new ArrayList<>(examples.size());
+        int[] targets = new int[examples.size()];
+        for (int i = 0; i < examples.size(); i++) {
+            features.add(features(examples.get(i).input(), minN, maxN, bits));
+            targets[i] = labels.indexOf(examples.get(i).label());
+            if (targets[i] < 0) {
+                throw new IllegalArgumentException("Unknown label " + examples.get(i).label());
+            }
+        }
+
+        Integer[] order = new Integer[examples.size()];
+        Arrays.setAll(order, i -> i);
+        Random random = new Random(seed);
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            shuffle(order, random);
+            double rate = learningRate / (1 + epoch);
+            for (int index : order) {
+                model.step(features.get(index), targets[index], rate, l2);
+            }
+        }
+        return model;
+    }
+
+    private void step(int[] features, int target, double rate, double l2) {
+        if (features.length == 0) {
+            return;
+        }
+        int buckets = 1 << bits;
+        double value = 1.0 / Math.sqrt(features.length);
+        double[] probabilities = probabilities(features);
+        for (int label = 0; label < probabilities.length; label++) {
+            double gradient = probabilities[label] - (label == target ? 1 : 0);
+            bias[label] -= (float) (rate * gradient);
+            int offset = label * buckets;
+            for (int feature : features) {
+                int i = offset + feature;
+                weights[i] -= (float) (rate * (gradient * value + l2 * weights[i]));
+            }
+        }
+    }
+
+    /**
+     * 输入 -> 桶下标（可能重复，重复即计数）。
+     */
+    static int[] features(String input, int minN, int maxN, int bits) {
+        String text = normalize(input);
+        int length = text.length();
+        int count = 0;
+        for (int n = minN; n <= maxN; n++) {
+            count += Math.max(0, length - n + 1);
+        }
+        int[] features = new int[count];
+        int mask = (1 << bits) - 1;
+        int next = 0;
+        for (int n = minN; n <= maxN; n++) {
+            for (int start = 0; start + n <= length; start++) {
+                int hash = n;
+                for (int i = start; i < start + n; i++) {
+                    hash = 31 * hash + text.charAt(i);
+                }
+                features[next++] = mix(hash) & mask;
+            }
+        }
+        return features;
+    }
+
+    /* NFKC、小写、标点和空白折成一个空格，首尾各留一个空格作为词边界 */
+    static String normalize(String input) {
+        if (input == null || input.isBlank()) {
+            return "";
+        }
+        String folded = Normalizer.normalize(input, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder text = new StringBuilder(folded.length() + 2).append(' ');
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            boolean separator = Character.isWhitespace(c) || !Character.isLetterOrDigit(c);
+            if (!separator) {
+                text.append(c);
+            } else if (text.charAt(text.length() - 1) != ' ') {
+                text.append(' ');
+            }
+        }
+        if (text.charAt(text.length() - 1) != ' ') {
+            text.append(' ');
+        }
+        return text.toString();
+    }
+
+    /* murmur3 的 finalizer，打散相近的 hashCode */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static void shuffle(Integer[] order, Random random) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(minN);
+        out.writeInt(maxN);
+        out.writeInt(bits);
+        out.writeInt(labels.size());
+        for (String label : labels) {
+            out.writeUTF(label);
+        }
+        for (float value : bias) {
+            out.writeFloat(value);
+        }
+        for (float value : weights) {
+            out.writeFloat(value);
+        }
+    }
+
+    static CharNgramModel read(DataInput in) throws IOException {
+        int minN = in.readInt();
+        int maxN = in.readInt();
+        int bits = in.readInt();
+        if (minN < 1 || maxN < minN || bits < 1 || bits > 24) {
+            throw new IOException("Corrupt model header: n=" + minN + ".." + maxN + ", bits=" + bits);
+        }
+        int labelCount = in.readInt();
+        List<String> labels = new ArrayList<>(labelCount);
+        for (int i = 0; i < labelCount; i++) {
+            labels.add(in.readUTF());
+        }
+        float[] bias = new float[labelCount];
+        for (int i = 0; i < labelCount; i++) {
+            bias[i] = in.readFloat();
+        }
+        float[] weights = new float[labelCount << bits];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = in.readFloat();
+        }
+        return new CharNgramModel(labels, minN, maxN, bits, weights, bias);
+    }
+
+    public record Prediction(String label, double probability) {
+    }
+
+    record Example(String input, String label) {
+    }
+
+}
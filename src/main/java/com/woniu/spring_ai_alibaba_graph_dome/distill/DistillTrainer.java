@@ -0,0 +1,124 @@
+package com.woniu.spring_ai_alibaba_graph_dome.distill;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * 离线训练命令：读 label log，按 图/节点 各训练一个 {@link CharNgramModel}，写成一个模型文件。
+ * <pre>
+ * mvn -Pdistill compile exec:exec -Ddistill.args="--labels ./data/labels.jsonl --out ./data/distilled-model.bin --version 2025-06-01"
+ * </pre>
+ * 同一输入多次出现时以最后一次的标注为准；每个节点留出 holdout 比例的样本做评估，
+ * 打印整体准确率和各个阈值下的覆盖率（本地可以直接作答的比例）与准确率，据此选择 graph.distilled.threshold。
+ * 样本少于 --min-examples 或只有一个类别的节点不生成模型，线上该节点继续全部走大模型。
+ */
+public final class DistillTrainer {
+
+    private static final double[] THRESHOLDS = {0.7, 0.8, 0.9, 0.95, 0.99};
+
+    private DistillTrainer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parse(args);
+        Path labels = Paths.get(options.getOrDefault("labels", "./data/labels.jsonl"));
+        Path out = Paths.get(options.getOrDefault("out", "./data/distilled-model.bin"));
+        String version = options.getOrDefault("version", Instant.now().toString());
+        int minN = Integer.parseInt(options.getOrDefault("min-n", "1"));
+        int maxN = Integer.parseInt(options.getOrDefault("max-n", "4"));
+        int bits = Integer.parseInt(options.getOrDefault("bits", "16"));
+        int epochs = Integer.parseInt(options.getOrDefault("epochs", "10"));
+        double learningRate = Double.parseDouble(options.getOrDefault("learning-rate", "0.5"));
+        double l2 = Double.parseDouble(options.getOrDefault("l2", "1e-6"));
+        double holdout = Double.parseDouble(options.getOrDefault("holdout", "0.1"));
+        int minExamples = Integer.parseInt(options.getOrDefault("min-examples", "50"));
+
+        Map<String, Map<String, String>> byNode = new LinkedHashMap<>();
+        for (LabelLog.Entry entry : LabelLog.read(labels)) {
+            byNode.computeIfAbsent(DistilledModels.key(entry.graph(), entry.node()), key -> new LinkedHashMap<>())
+                    .put(entry.input(), entry.label());
+        }
+
+        Map<String, CharNgramModel> models = new LinkedHashMap<>();
+        Random random = new Random(42);
+        for (Map.Entry<String, Map<String, String>> node : byNode.entrySet()) {
+            List<CharNgramModel.Example> examples = new ArrayList<>();
+            node.getValue().forEach((input, label) -> examples.add(new CharNgramModel.Example(input, label)));
+            List<String> nodeLabels = new ArrayList<>(new TreeSet<>(node.getValue().values()));
+            if (examples.size() < minExamples || nodeLabels.size() < 2) {
+                System.out.printf("%s: %d examples, %d labels, skipped%n", node.getKey(), examples.size(), nodeLabels.size());
+                continue;
+            }
+
+            Collections.shuffle(examples, random);
+            int testSize = (int) Math.round(examples.size() * holdout);
+            List<CharNgramModel.Example> test = examples.subList(0, testSize);
+            List<CharNgramModel.Example> train = examples.subList(testSize, examples.size());
+            CharNgramModel model = CharNgramModel.train(train, nodeLabels, minN, maxN, bits, epochs, learningRate, l2, 42);
+            System.out.printf("%s: %d train / %d test, labels %s%n", node.getKey(), train.size(), test.size(), nodeLabels);
+            if (!test.isEmpty()) {
+                report(model, test);
+            }
+
+            /* 评估完用全部样本重新训练一遍再保存 */
+            models.put(node.getKey(), CharNgramModel.train(examples, nodeLabels, minN, maxN, bits, epochs,
+                    learningRate, l2, 42));
+        }
+
+        if (models.isEmpty()) {
+            System.out.println("No node has enough labelled examples, model file not written");
+            return;
+        }
+        new DistilledModels(version, System.currentTimeMillis(), models).write(out);
+        System.out.printf("Wrote %d models (version %s) to %s%n", models.size(), version, out.toAbsolutePath());
+    }
+
+    private static void report(CharNgramModel model, List<CharNgramModel.Example> test) {
+        int correct = 0;
+        int[] covered = new int[THRESHOLDS.length];
+        int[] coveredCorrect = new int[THRESHOLDS.length];
+        for (CharNgramModel.Example example : test) {
+            CharNgramModel.Prediction prediction = model.predict(example.input());
+            boolean ok = prediction.label().equals(example.label());
+            if (ok) {
+                correct++;
+            }
+            for (int i = 0; i < THRESHOLDS.length; i++) {
+                if (prediction.probability() >= THRESHOLDS[i]) {
+                    covered[i]++;
+                    if (ok) {
+                        coveredCorrect[i]++;
+                    }
+                }
+            }
+        }
+        System.out.printf("  accuracy %.3f%n", (double) correct / test.size());
+        for (int i = 0; i < THRESHOLDS.length; i++) {
+            System.out.printf("  threshold %.2f: coverage %.3f, accuracy %.3f%n", THRESHOLDS[i],
+                    (double) covered[i] / test.size(), covered[i] == 0 ? 0 : (double) coveredCorrect[i] / covered[i]);
+        }
+    }
+
+    /* --key value 形式的参数 */
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+}
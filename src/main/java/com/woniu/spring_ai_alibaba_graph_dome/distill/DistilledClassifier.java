@@ -0,0 +1,220 @@
+package com.woniu.spring_ai_alibaba_graph_dome.distill;
+
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地蒸馏分类器：放在大模型分类节点前面，简单的输入在进程内直接给出类别，省掉一次模型调用。
+ * <p>
+ * 三种模式（graph.distilled.mode）：
+ * <ul>
+ *     <li>off：不做任何事；</li>
+ *     <li>shadow（默认）：每次都调用大模型，只把本地预测和大模型的结果做对比并计数，用来评估能不能上线；</li>
+ *     <li>active：本地预测的概率不低于 threshold 时直接作答，否则照常调用大模型。</li>
+ * </ul>
+ * 模型文件（graph.distilled.model-file）由 {@link DistillTrainer} 离线训练生成，启动时加载，
+ * POST /graph/distilled/reload 可以换新文件；没有模型文件时所有请求都走大模型。
+ * 大模型的回答按 graph.distilled.label-sample-rate 抽样写进 graph.distilled.label-log，作为下一轮训练数据
+ * （异步写入、按大小滚动，见 {@link LabelLog}）。
+ * <p>
+ * active 模式下本地预测的类别不在该节点的类别表里、或者输入归一化后为空（只有标点、空白）时，一律交给大模型。
+ */
+@Component
+public class DistilledClassifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistilledClassifier.class);
+
+    public enum Mode {
+        OFF, SHADOW, ACTIVE
+    }
+
+    private final Mode mode;
+
+    private final Path modelFile;
+
+    private final double threshold;
+
+    private final LabelLog labelLog;
+
+    private final double labelSampleRate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, NodeStats> stats = new ConcurrentHashMap<>();
+
+    private volatile DistilledModels models = DistilledModels.EMPTY;
+
+    public DistilledClassifier(@Value("${graph.distilled.mode:shadow}") String mode,
+                               @Value("${graph.distilled.model-file:./data/distilled-model.bin}") String modelFile,
+                               @Value("${graph.distilled.threshold:0.9}") double threshold,
+                               @Value("${graph.distilled.label-log:./data/labels.jsonl}") String labelLog,
+                               @Value("${graph.distilled.label-sample-rate:0.1}") double labelSampleRate,
+                               @Value("${graph.distilled.label-max-file-size:64MB}") DataSize labelMaxFileSize,
+                               @Value("${graph.distilled.label-max-files:5}") int labelMaxFiles,
+                               @Value("${graph.distilled.label-queue-capacity:10000}") int labelQueueCapacity,
+                               MeterRegistry meterRegistry) {
+        this(Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT)), modelFile.isBlank() ? null : Paths.get(modelFile),
+                threshold, labelLog.isBlank() || labelSampleRate <= 0 ? null
+                        : new LabelLog(Paths.get(labelLog), labelMaxFileSize.toBytes(), labelMaxFiles, labelQueueCapacity),
+                labelSampleRate, meterRegistry);
+    }
+
+    DistilledClassifier(Mode mode, Path modelFile, double threshold, LabelLog labelLog, double labelSampleRate,
+                        MeterRegistry meterRegistry) {
+        this.mode = mode;
+        this.modelFile = modelFile;
+        this.threshold = threshold;
+        this.labelLog = labelLog;
+        this.labelSampleRate = labelSampleRate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * off 模式的实例，wrap 原样返回节点（基准测试等场景）。
+     */
+    public static DistilledClassifier off() {
+        return new DistilledClassifier(Mode.OFF, null, 1, null, 0, new SimpleMeterRegistry());
+    }
+
+    /**
+     * 给一个大模型分类节点加上本地蒸馏模型；off 模式原样返回。
+     *
+     * @param categories 该节点的类别，大模型回答的自由文本按它归一成标签后再记录和比较
+     */
+    public NodeAction wrap(String graphName, String nodeId, NodeAction classifier, List<String> categories) {
+        if (mode == Mode.OFF) {
+            return classifier;
+        }
+        NodeStats nodeStats = stats.computeIfAbsent(DistilledModels.key(graphName, nodeId), key -> new NodeStats());
+        return new DistilledClassifierNode(this, graphName, nodeId, classifier, categories, nodeStats);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (labelLog != null && mode != Mode.OFF) {
+            labelLog.start();
+        }
+        if (mode == Mode.OFF || modelFile == null || !Files.isRegularFile(modelFile)) {
+            return;
+        }
+        try {
+            use(DistilledModels.read(modelFile));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load distilled model {}, all classifications go to the model", modelFile, e);
+        }
+    }
+
+    /**
+     * 重新读取模型文件；读取失败时保留当前模型。
+     */
+    public DistilledModels reload() throws IOException {
+        if (modelFile == null) {
+            throw new IOException("graph.distilled.model-file is not set");
+        }
+        use(DistilledModels.read(modelFile));
+        return models;
+    }
+
+    void use(DistilledModels models) {
+        this.models = models;
+        logger.info("Using distilled model version {} for {}", models.version(), models.models().keySet());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (labelLog != null) {
+            labelLog.close();
+        }
+    }
+
+    Mode mode() {
+        return mode;
+    }
+
+    double threshold() {
+        return threshold;
+    }
+
+    CharNgramModel model(String graphName, String nodeId) {
+        return models.get(graphName, nodeId);
+    }
+
+    /**
+     * 这次大模型的回答要不要记为训练数据；不记录时返回 null。
+     */
+    LabelLog sampledLabelLog() {
+        if (labelLog == null || (labelSampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= labelSampleRate)) {
+            return null;
+        }
+        return labelLog;
+    }
+
+    Counter counter(String name, String description, String... tags) {
+        return Counter.builder(name).description(description).tags(tags).register(meterRegistry);
+    }
+
+    public Stats stats() {
+        DistilledModels current = models;
+        List<NodeReport> nodes = new ArrayList<>();
+        stats.forEach((key, value) -> nodes.add(value.snapshot(key, current.models().containsKey(key))));
+        return new Stats(mode.name().toLowerCase(Locale.ROOT), current.version(), current.createdAt(), threshold, nodes,
+                labelLog == null ? 0 : labelLog.written(), labelLog == null ? 0 : labelLog.dropped());
+    }
+
+    /**
+     * 单个节点的计数：本地作答、交给大模型、影子对比（全部 / 高置信度部分）的一致数。
+     */
+    static final class NodeStats {
+        final LongAdder answered = new LongAdder();
+        final LongAdder delegated = new LongAdder();
+        final LongAdder compared = new LongAdder();
+        final LongAdder agreed = new LongAdder();
+        final LongAdder confidentCompared = new LongAdder();
+        final LongAdder confidentAgreed = new LongAdder();
+
+        NodeReport snapshot(String node, boolean hasModel) {
+            return new NodeReport(node, hasModel, answered.sum(), delegated.sum(), compared.sum(), agreed.sum(),
+                    confidentCompared.sum(), confidentAgreed.sum());
+        }
+    }
+
+    /**
+     * @param compared          有本地预测、又拿到大模型结果的次数
+     * @param agreed            其中两者一致的次数
+     * @param confidentCompared 其中本地概率不低于 threshold 的次数（active 模式下这部分会由本地直接作答）
+     * @param confidentAgreed   高置信度且一致的次数，confidentAgreed / confidentCompared 就是上线后的预期准确率
+     */
+    public record NodeReport(String node, boolean hasModel, long answered, long delegated, long compared, long agreed,
+                             long confidentCompared, long confidentAgreed) {
+    }
+
+    /**
+     * @param labelsWritten 写进 label-log 的训练数据条数
+     * @param labelsDropped 队列满或写失败丢掉的条数
+     */
+    public record Stats(String mode, String version, long createdAt, double threshold, List<NodeReport> nodes,
+                        long labelsWritten, long labelsDropped) {
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.woniu.spring_ai_alibaba_graph_dome.distill;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.woniu.spring_ai_alibaba_graph_dome.cache.ClassificationCache;
+import com.woniu.spring_ai_alibaba_graph_dome.resilience.FallbackOutput;
+import io.micrometer.core.instrument.Counter;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 分类节点的蒸馏装饰器（见 {@link DistilledClassifier}）：本地模型够自信时直接写 classifier_output，
+ * 否则调用原节点，并拿原节点的结果给本地预测打分、作为训练数据记下来。
+ */
+public class DistilledClassifierNode implements NodeAction {
+
+    private static final String INPUT_KEY = "input";
+
+    private static final String OUTPUT_KEY = "classifier_output";
+
+    private final DistilledClassifier distilled;
+
+    private final String graphName;
+
+    private final String nodeId;
+
+    private final NodeAction delegate;
+
+    private final List<String> categories;
+
+    private final DistilledClassifier.NodeStats stats;
+
+    private final Counter answered;
+
+    private final Counter delegated;
+
+    private final Counter agreed;
+
+    private final Counter disagreed;
+
+    DistilledClassifierNode(DistilledClassifier distilled, String graphName, String nodeId, NodeAction delegate,
+                            List<String> categories, DistilledClassifier.NodeStats stats) {
+        this.distilled = distilled;
+        this.graphName = graphName;
+        this.nodeId = nodeId;
+        this.delegate = delegate;
+        this.categories = List.copyOf(categories);
+        this.stats = stats;
+        this.answered = distilled.counter("graph.distilled.requests", "Classifications by source",
+                "graph", graphName, "node", nodeId, "source", "distilled");
+        this.delegated = distilled.counter("graph.distilled.requests", "Classifications by source",
+                "graph", graphName, "node", nodeId, "source", "model");
+        this.agreed = distilled.counter("graph.distilled.shadow", "Distilled prediction compared with the model",
+                "graph", graphName, "node", nodeId, "agree", "true");
+        this.disagreed = distilled.counter("graph.distilled.shadow", "Distilled prediction compared with the model",
+                "graph", graphName, "node", nodeId, "agree", "false");
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) throws Exception {
+        String input = (String) state.value(INPUT_KEY).orElse("");
+
+        /* 只有标点、空白的输入没有可学的特征，不预测也不记录 */
+        boolean usable = ClassificationCache.cacheable(input);
+        CharNgramModel model = distilled.model(graphName, nodeId);
+        CharNgramModel.Prediction prediction = model == null || !usable ? null : model.predict(input);
+        /* 模型文件和当前类别表对不上（例如改了类别还没重新训练）时，预测出的标签路由不了，不能直接作答 */
+        boolean confident = prediction != null && prediction.probability() >= distilled.threshold()
+                && categories.contains(prediction.label());
+        if (confident && distilled.mode() == DistilledClassifier.Mode.ACTIVE) {
+            stats.answered.increment();
+            answered.increment();
+            return Map.of(OUTPUT_KEY, prediction.label());
+        }
+
+        stats.delegated.increment();
+        delegated.increment();
+        Map<String, Object> result = delegate.apply(state);
+        if (result == null || FallbackOutput.isFallback(result)) {
+            return result;
+        }
+        String label = canonical(result.get(OUTPUT_KEY));
+        if (label == null || !usable) {
+            return result;
+        }
+        LabelLog labelLog = distilled.sampledLabelLog();
+        if (labelLog != null) {
+            labelLog.append(graphName, nodeId, input, label);
+        }
+        if (prediction != null) {
+            compare(prediction, label, confident);
+        }
+        return result;
+    }
+
+    private void compare(CharNgramModel.Prediction prediction, String label, boolean confident) {
+        boolean agree = prediction.label().equals(label);
+        stats.compared.increment();
+        (agree ? agreed : disagreed).increment();
+        if (agree) {
+            stats.agreed.increment();
+        }
+        if (confident) {
+            stats.confidentCompared.increment();
+            if (agree) {
+                stats.confidentAgreed.increment();
+            }
+        }
+    }
+
+    /**
+     * 大模型的自由文本 -> 类别：包含的最长类别（不区分大小写），都不包含返回 null。
+     */
+    String canonical(Object output) {
+        if (!(output instanceof String text) || text.isBlank()) {
+            return null;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        String matched = null;
+        for (String category : categories) {
+            if (lower.contains(category.toLowerCase(Locale.ROOT))
+                    && (matched == null || category.length() > matched.length())) {
+                matched = category;
+            }
+        }
+        return matched;
+    }
+
+}
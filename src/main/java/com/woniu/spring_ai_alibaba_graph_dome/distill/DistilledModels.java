@@ -0,0 +1,93 @@
+package com.woniu.spring_ai_alibaba_graph_dome.distill;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 模型文件：一个文件里放所有节点的蒸馏模型（key = 图名/节点 id），gzip 压缩的二进制。
+ * <p>
+ * 文件头是魔数、格式版本、训练时给的模型版本号和训练时间；格式版本对不上时拒绝加载，
+ * 线上继续用原来的模型（或者全部走大模型），不会读出一堆错位的权重。
+ *
+ * @param version   训练时指定的模型版本号，出现在 /graph/distilled 和日志里
+ * @param createdAt 训练完成时间（epoch 毫秒）
+ */
+public record DistilledModels(String version, long createdAt, Map<String, CharNgramModel> models) {
+
+    /* "DSTL" */
+    private static final int MAGIC = 0x4453544C;
+
+    static final int FORMAT_VERSION = 1;
+
+    public static final DistilledModels EMPTY = new DistilledModels("none", 0, Map.of());
+
+    public DistilledModels {
+        models = Map.copyOf(models);
+    }
+
+    public static String key(String graphName, String nodeId) {
+        return graphName + "/" + nodeId;
+    }
+
+    public CharNgramModel get(String graphName, String nodeId) {
+        return models.get(key(graphName, nodeId));
+    }
+
+    public static DistilledModels read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a distilled model file: " + file);
+            }
+            int format = in.readInt();
+            if (format != FORMAT_VERSION) {
+                throw new IOException("Unsupported distilled model format " + format + " in " + file
+                        + ", expected " + FORMAT_VERSION);
+            }
+            String version = in.readUTF();
+            long createdAt = in.readLong();
+            int count = in.readInt();
+            Map<String, CharNgramModel> models = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                models.put(key, CharNgramModel.read(in));
+            }
+            return new DistilledModels(version, createdAt, models);
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换，线上进程 reload 时不会读到写了一半的文件。
+     */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(version);
+            out.writeLong(createdAt);
+            out.writeInt(models.size());
+            for (Map.Entry<String, CharNgramModel> entry : models.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
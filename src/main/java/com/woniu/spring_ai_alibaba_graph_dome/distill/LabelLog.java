@@ -0,0 +1,189 @@
+package com.woniu.spring_ai_alibaba_graph_dome.distill;
+
+import com.google.gson.Gson;
+import com.woniu.spring_ai_alibaba_graph_dome.outcome.RollingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 训练数据：大模型对每个分类节点给出的 (输入, 类别)，一行一条 JSON。
+ * <p>
+ * 只记大模型的回答：蒸馏模型自己答的、缓存命中的、熔断兜底的都不记，避免模型拿自己的输出训练自己。
+ * 和 OutcomeSink 一样是 write-behind：请求线程只把记录放进有界队列，后台线程攒批写入，队列满时丢弃并计数；
+ * 写失败的那一批直接丢掉（少几条训练数据可以接受），下一批重新打开文件。
+ * 文件超过 maxBytes 时滚动为 labels.jsonl.1、.2 ...，最多保留 maxFiles 个，{@link #read(Path)} 会连同滚动出去的文件一起读。
+ */
+public class LabelLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(LabelLog.class);
+
+    private static final Gson GSON = new Gson();
+
+    private static final int BATCH_SIZE = 256;
+
+    private static final long FLUSH_INTERVAL_MS = 200;
+
+    /* 只有写线程使用 */
+    private final RollingFile file;
+
+    private final BlockingQueue<Entry> queue;
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean accepting = true;
+
+    private Thread writerThread;
+
+    public LabelLog(Path file, long maxBytes, int maxFiles, int queueCapacity) {
+        this.file = new RollingFile(file, maxBytes, maxFiles);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public synchronized void start() {
+        if (writerThread != null || !accepting) {
+            return;
+        }
+        writerThread = new Thread(this::writeLoop, "label-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 交给后台写入，不阻塞；队列已满或已关闭时丢弃。
+     */
+    public void append(String graphName, String nodeId, String input, String label) {
+        if (accepting && queue.offer(new Entry(System.currentTimeMillis(), graphName, nodeId, input, label))) {
+            return;
+        }
+        dropped.increment();
+        /* 只在第一次和之后每 1000 次打一条 */
+        if (accepting && dropped.sum() % 1000 == 1) {
+            logger.warn("Label log queue full, dropped {} training labels so far", dropped.sum());
+        }
+    }
+
+    /**
+     * 停止接收，把队列里剩下的写完。
+     */
+    public void close() {
+        Thread writer;
+        synchronized (this) {
+            accepting = false;
+            writer = writerThread;
+        }
+        if (writer == null) {
+            /* 没启动过写线程，在当前线程写完 */
+            writeLoop();
+            return;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10) + FLUSH_INTERVAL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            logger.warn("{} training labels not persisted at shutdown", queue.size());
+        }
+    }
+
+    public long written() {
+        return written.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                accepting = false;
+            }
+            queue.drainTo(batch, BATCH_SIZE - batch.size());
+            if (batch.isEmpty()) {
+                continue;
+            }
+            List<String> lines = new ArrayList<>(batch.size());
+            for (Entry entry : batch) {
+                lines.add(GSON.toJson(entry));
+            }
+            try {
+                file.append(lines, false);
+                written.add(batch.size());
+            } catch (IOException e) {
+                file.close();
+                dropped.add(batch.size());
+                logger.warn("Failed to write {} training labels to {}", batch.size(), file.file(), e);
+            }
+            batch.clear();
+        }
+        file.close();
+    }
+
+    /**
+     * 读出全部记录（先读滚动出去的旧文件，再读当前文件），解析失败的行跳过。
+     */
+    public static List<Entry> read(Path file) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 1; ; i++) {
+            Path rolled = file.resolveSibling(file.getFileName() + "." + i);
+            if (!Files.isRegularFile(rolled)) {
+                break;
+            }
+            files.add(rolled);
+        }
+        Collections.reverse(files);
+        files.add(file);
+
+        List<Entry> entries = new ArrayList<>();
+        for (Path path : files) {
+            if (Files.isRegularFile(path)) {
+                readInto(path, entries);
+            }
+        }
+        return entries;
+    }
+
+    private static void readInto(Path file, List<Entry> entries) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    Entry entry = GSON.fromJson(line, Entry.class);
+                    if (entry != null && entry.graph() != null && entry.node() != null
+                            && entry.input() != null && entry.label() != null) {
+                        entries.add(entry);
+                    }
+                } catch (RuntimeException e) {
+                    logger.debug("Skipping malformed label line: {}", line);
+                }
+            }
+        }
+    }
+
+    public record Entry(long timestamp, String graph, String node, String input, String label) {
+    }
+
+}
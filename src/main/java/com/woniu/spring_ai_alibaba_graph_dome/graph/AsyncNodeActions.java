@@ -0,0 +1,34 @@
+package com.woniu.spring_ai_alibaba_graph_dome.graph;
+
+import com.alibaba.cloud.ai.graph.action.AsyncNodeAction;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 可指定执行器的 node_async：框架自带的 AsyncNodeAction.node_async 总是在当前线程同步执行 NodeAction，
+ * 这里把它交给注入进来的执行器（见 GraphExecutionConfiguration）。
+ */
+public final class AsyncNodeActions {
+
+    private AsyncNodeActions() {
+    }
+
+    public static AsyncNodeAction node_async(NodeAction action, Executor executor) {
+        return state -> {
+            /* 调用方挂的分支进度回调（见 ParallelBranches#listen）跟着节点换线程 */
+            ParallelBranches.Listener listener = ParallelBranches.listener();
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return ParallelBranches.callWith(listener, () -> action.apply(state));
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        };
+    }
+
+}
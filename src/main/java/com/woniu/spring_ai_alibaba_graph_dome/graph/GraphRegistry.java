@@ -0,0 +1,118 @@
+package com.woniu.spring_ai_alibaba_graph_dome.graph;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.GraphRepresentation;
+import com.alibaba.cloud.ai.graph.StateGraph;
+import com.alibaba.cloud.ai.graph.exception.GraphStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已编译工作流的注册表：每个 StateGraph 只 compile 一次，控制器、批量接口、SSE 共用同一个 CompiledGraph。
+ * <p>
+ * StateGraph Bean 是 @Lazy 的，第一次 get() 时才创建并编译（或者打开 graph.registry.warm-up 在启动完成后预热）；
+ * 流程图（PlantUML / Mermaid）也是第一次请求时才渲染，渲染结果缓存起来。
+ * <p>
+ * 对外使用接口路径里的名字：demo -> workflowGraph，customerService -> CustomerGraph，
+ * recommendedPlaces -> workflowGraphR。
+ */
+@Component
+public class GraphRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphRegistry.class);
+
+    public static final String DEMO = "demo";
+
+    public static final String CUSTOMER_SERVICE = "customerService";
+
+    public static final String RECOMMENDED_PLACES = "recommendedPlaces";
+
+    private final Map<String, String> beanNames = new LinkedHashMap<>();
+
+    private final BeanFactory beanFactory;
+
+    private final boolean warmUp;
+
+    private final ConcurrentHashMap<String, CompiledGraph> compiledGraphs = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, String> diagrams = new ConcurrentHashMap<>();
+
+    public GraphRegistry(BeanFactory beanFactory, @Value("${graph.registry.warm-up:false}") boolean warmUp) {
+        this.beanFactory = beanFactory;
+        this.warmUp = warmUp;
+        register(DEMO, "workflowGraph");
+        register(CUSTOMER_SERVICE, "CustomerGraph");
+        register(RECOMMENDED_PLACES, "workflowGraphR");
+    }
+
+    private void register(String name, String beanName) {
+        if (beanFactory.containsBean(beanName)) {
+            beanNames.put(name, beanName);
+        }
+    }
+
+    /**
+     * 取已编译的图，第一次调用时编译。
+     *
+     * @throws IllegalArgumentException 名字不存在时
+     */
+    public CompiledGraph get(String name) {
+        CompiledGraph compiledGraph = compiledGraphs.get(name);
+        if (compiledGraph != null) {
+            return compiledGraph;
+        }
+        return compiledGraphs.computeIfAbsent(name, key -> {
+            try {
+                long start = System.nanoTime();
+                CompiledGraph compiled = stateGraph(key).compile();
+                logger.info("Compiled graph {} in {} ms", key, (System.nanoTime() - start) / 1_000_000);
+                return compiled;
+            } catch (GraphStateException e) {
+                throw new IllegalStateException("Failed to compile graph " + key, e);
+            }
+        });
+    }
+
+    /**
+     * 渲染流程图，结果按 名字 + 类型 缓存。
+     */
+    public String diagram(String name, GraphRepresentation.Type type) {
+        return diagrams.computeIfAbsent(name + ":" + type, key -> stateGraph(name)
+                .getGraph(type, name + " workflow graph")
+                .content());
+    }
+
+    public Set<String> names() {
+        return beanNames.keySet();
+    }
+
+    public boolean contains(String name) {
+        return beanNames.containsKey(name);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (warmUp) {
+            names().forEach(this::get);
+        }
+    }
+
+    private StateGraph stateGraph(String name) {
+        String beanName = beanNames.get(name);
+        if (beanName == null) {
+            throw new IllegalArgumentException("Unknown graph: " + name);
+        }
+        return beanFactory.getBean(beanName, StateGraph.class);
+    }
+
+}
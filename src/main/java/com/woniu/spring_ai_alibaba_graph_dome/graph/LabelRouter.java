@@ -0,0 +1,133 @@
+package com.woniu.spring_ai_alibaba_graph_dome.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 按分类标签路由：EdgeAction 调度器用它代替各自手写的 String.contains 判断链。
+ * <p>
+ * 标签和路由在构建时定好（数组），路由时按注册顺序逐个 indexOf，命中即返回，不分配任何对象；
+ * 多个标签同时出现时先注册的优先，都不出现时返回默认路由。
+ * 所以有包含关系的标签要把“长的、否定的”放在前面，例如 "without intent" 要先于 "with intent"，
+ * "not positive" 要先于 "positive"。
+ * <p>
+ * 没有用 Aho-Corasick 一类的多模式自动机：这里每个调度器只有 1~5 个标签、模型输出也很短，
+ * String.indexOf 是 JIT 内建的向量化实现，实测比逐字符查表的自动机快 2~4 倍（见 DispatcherBenchmark）。
+ * <pre>
+ * LabelRouter router = LabelRouter.builder()
+ *         .route("negative", "negative", "not positive")
+ *         .route("positive")
+ *         .otherwise("negative")
+ *         .build();
+ * router.route("not positive feedback"); // negative
+ * </pre>
+ * 实例不可变，可以被多个线程共享。
+ */
+public final class LabelRouter {
+
+    private final String[] labels;
+
+    /* 与 labels 同下标 */
+    private final String[] routes;
+
+    private final String defaultRoute;
+
+    private final Set<String> allRoutes;
+
+    private LabelRouter(String[] labels, String[] routes, String defaultRoute, Set<String> allRoutes) {
+        this.labels = labels;
+        this.routes = routes;
+        this.defaultRoute = defaultRoute;
+        this.allRoutes = allRoutes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 返回 text 中优先级最高的标签对应的路由；text 为 null 或不含任何标签时返回默认路由。
+     */
+    public String route(String text) {
+        if (text == null || text.isEmpty()) {
+            return defaultRoute;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (text.indexOf(labels[i]) >= 0) {
+                return routes[i];
+            }
+        }
+        return defaultRoute;
+    }
+
+    /**
+     * 所有可能的返回值（含默认路由），按注册顺序。
+     */
+    public Set<String> routes() {
+        return allRoutes;
+    }
+
+    public static final class Builder {
+
+        private final List<String> labels = new ArrayList<>();
+
+        private final List<String> labelRoutes = new ArrayList<>();
+
+        private String defaultRoute;
+
+        private Builder() {
+        }
+
+        /**
+         * 标签本身就是路由。
+         */
+        public Builder route(String label) {
+            return route(label, label);
+        }
+
+        /**
+         * 任一 label 出现在文本中时返回 route；先注册的优先。
+         */
+        public Builder route(String route, String... labels) {
+            Objects.requireNonNull(route, "route");
+            if (labels.length == 0) {
+                throw new IllegalArgumentException("No labels for route " + route);
+            }
+            for (String label : labels) {
+                if (label == null || label.isEmpty()) {
+                    throw new IllegalArgumentException("Empty label for route " + route);
+                }
+                /* 重复的标签只有第一次有效 */
+                if (!this.labels.contains(label)) {
+                    this.labels.add(label);
+                    this.labelRoutes.add(route);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 没有任何标签命中时的路由。
+         */
+        public Builder otherwise(String route) {
+            this.defaultRoute = Objects.requireNonNull(route, "route");
+            return this;
+        }
+
+        public LabelRouter build() {
+            if (defaultRoute == null) {
+                throw new IllegalStateException("Default route is required");
+            }
+            Set<String> allRoutes = new LinkedHashSet<>(labelRoutes);
+            allRoutes.add(defaultRoute);
+            return new LabelRouter(labels.toArray(new String[0]), labelRoutes.toArray(new String[0]), defaultRoute,
+                    Collections.unmodifiableSet(allRoutes));
+        }
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.woniu.spring_ai_alibaba_graph_dome.graph;
+
+import com.alibaba.cloud.ai.graph.KeyStrategy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 值是 Map 的 key：新写入的字段并进旧值，同名字段以新值为准；写入的不是 Map 时按替换处理。
+ * 不修改旧值，每次返回新的 Map。
+ */
+final class MapMergeStrategy implements KeyStrategy {
+
+    @Override
+    public Object apply(Object oldValue, Object newValue) {
+        if (!(newValue instanceof Map<?, ?> update)) {
+            return newValue == null ? oldValue : newValue;
+        }
+        Map<Object, Object> merged = new LinkedHashMap<>();
+        if (oldValue instanceof Map<?, ?> previous) {
+            merged.putAll(previous);
+        }
+        merged.putAll(update);
+        return merged;
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.woniu.spring_ai_alibaba_graph_dome.graph;
+
+import com.alibaba.cloud.ai.graph.KeyStrategy;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 并行分支加汇合：几个互不依赖的节点同时读同一份状态，全部完成后把各自的输出合并成一次状态更新，
+ * 耗时取决于最慢的分支而不是各分支之和。
+ * <p>
+ * 除最后一个分支外都提交到 executor（必须是真正的线程池，不能是在当前线程直接执行的执行器），
+ * 最后一个在当前线程执行，省一次线程切换。
+ * 输出按分支声明的顺序合并：只被一个分支写的 key 原样返回；多个分支写同一个 key 时按 schema 里该 key 的策略
+ * （如 {@link StateSchema.Builder#merge}）合并，该 key 是替换策略或没有注册时直接报错，避免结果取决于谁先返回。
+ * 合并后的结果还会再按同样的策略写进状态，所以这里得到的是增量。
+ * <p>
+ * 任一分支失败时等所有分支结束后抛出声明顺序上第一个失败分支的异常。
+ * <p>
+ * 对图来说整组分支只是一个节点，CompiledGraph.stream() 只在汇合后产出一次。需要逐个分支进度的调用方
+ * （如 SSE 推送）用 {@link #listen} 在当前线程上挂一个 {@link Listener}，每个分支成功完成时在分支线程上回调；
+ * node_async（见 {@link AsyncNodeActions}）把它带到节点执行器的线程上。
+ */
+public final class ParallelBranches implements NodeAction {
+
+    private static final Executor CALLER = Runnable::run;
+
+    private static final ThreadLocal<Listener> LISTENER = new ThreadLocal<>();
+
+    private final StateSchema schema;
+
+    private final Executor executor;
+
+    private final String[] names;
+
+    /* 与 names 同下标 */
+    private final NodeAction[] branches;
+
+    private ParallelBranches(StateSchema schema, Executor executor, String[] names, NodeAction[] branches) {
+        this.schema = schema;
+        this.executor = executor;
+        this.names = names;
+        this.branches = branches;
+    }
+
+    /**
+     * @param schema   图的状态 schema，多个分支写同一个 key 时用其中的策略合并
+     * @param executor 分支执行器
+     */
+    public static Builder builder(StateSchema schema, Executor executor) {
+        return new Builder(schema, executor);
+    }
+
+    /**
+     * 当前线程上之后执行的 ParallelBranches 把分支完成报告给 listener；返回之前的 listener，用完交给 {@link #restore}。
+     */
+    public static Listener listen(Listener listener) {
+        Listener previous = LISTENER.get();
+        LISTENER.set(listener);
+        return previous;
+    }
+
+    public static void restore(Listener previous) {
+        if (previous == null) {
+            LISTENER.remove();
+        } else {
+            LISTENER.set(previous);
+        }
+    }
+
+    /**
+     * @return 当前线程上的 listener，没有时为 null
+     */
+    public static Listener listener() {
+        return LISTENER.get();
+    }
+
+    /**
+     * 挂着 listener 执行 call：节点换线程执行时，用它把调用方的 listener 带过去。
+     */
+    public static <T> T callWith(Listener listener, Callable<T> call) throws Exception {
+        Listener previous = listen(listener);
+        try {
+            return call.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) throws Exception {
+        Listener listener = LISTENER.get();
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>(branches.length);
+        for (int i = 0; i < branches.length; i++) {
+            String name = names[i];
+            NodeAction branch = branches[i];
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    long start = System.nanoTime();
+                    Map<String, Object> output = branch.apply(state);
+                    if (listener != null) {
+                        listener.onBranch(name, output == null ? Map.of() : output, System.nanoTime() - start);
+                    }
+                    return output;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, i == branches.length - 1 ? CALLER : executor));
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(error -> null).join();
+
+        Map<String, Object> merged = new HashMap<>();
+        Map<String, String> writers = new HashMap<>();
+        for (int i = 0; i < branches.length; i++) {
+            Map<String, Object> output;
+            try {
+                output = futures.get(i).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+            if (output == null) {
+                continue;
+            }
+            for (Map.Entry<String, Object> entry : output.entrySet()) {
+                String key = entry.getKey();
+                String previousWriter = writers.putIfAbsent(key, names[i]);
+                if (previousWriter == null) {
+                    merged.put(key, entry.getValue());
+                    continue;
+                }
+                KeyStrategy strategy = schema.strategy(key);
+                if (strategy == null || strategy == StateSchema.REPLACE) {
+                    throw new IllegalStateException("Parallel branches " + previousWriter + " and " + names[i]
+                            + " both write '" + key + "', register it with a merge strategy");
+                }
+                merged.put(key, strategy.apply(merged.get(key), entry.getValue()));
+            }
+        }
+        return merged;
+    }
+
+    public List<String> names() {
+        return List.of(names);
+    }
+
+    /**
+     * 分支完成的回调，在分支所在的线程上调用，几个分支可能同时回调。
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * @param output        分支自己的输出（汇合前）
+         * @param durationNanos 分支耗时
+         */
+        void onBranch(String name, Map<String, Object> output, long durationNanos);
+
+    }
+
+    public static final class Builder {
+
+        private final StateSchema schema;
+
+        private final Executor executor;
+
+        private final List<String> names = new ArrayList<>();
+
+        private final List<NodeAction> branches = new ArrayList<>();
+
+        private Builder(StateSchema schema, Executor executor) {
+            this.schema = schema;
+            this.executor = executor;
+        }
+
+        public Builder branch(String name, NodeAction action) {
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate branch: " + name);
+            }
+            names.add(name);
+            branches.add(action);
+            return this;
+        }
+
+        public ParallelBranches build() {
+            if (branches.isEmpty()) {
+                throw new IllegalStateException("At least one branch is required");
+            }
+            return new ParallelBranches(schema, executor, names.toArray(String[]::new),
+                    branches.toArray(NodeAction[]::new));
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.woniu.spring_ai_alibaba_graph_dome.graph;
+
+import com.alibaba.cloud.ai.graph.KeyStrategy;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.OverAllStateFactory;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工作流状态的 key 和更新策略，构建一次、所有 run 共用。
+ * <p>
+ * 原来每个 OverAllStateFactory 在每次 run 时都 new 一遍 ReplaceStrategy，一个 key 一个。
+ * ReplaceStrategy 没有状态，这里整个进程只用一个实例；key 和策略在构建时排成两个数组，
+ * 每次 run 只剩 new OverAllState 和按数组注册，不再有别的分配。
+ * OverAllState 内部的存储由框架决定，这里改不了。创建初始状态的开销和改动前的对比见 StateSchemaBenchmark，
+ * 单次 invoke 的实际分配量见 GraphInvokeBenchmark（都用 -prof gc）和线上的 graph.run.allocated 指标。
+ * <pre>
+ * StateSchema schema = StateSchema.builder()
+ *         .replace("input", "classifier_output", "solution")
+ *         .build();
+ * new StateGraph("demo", schema.factory());
+ * </pre>
+ * 实例不可变，可以被多个线程共享。
+ */
+public final class StateSchema {
+
+    /* 所有 replace key 共用的策略实例 */
+    static final KeyStrategy REPLACE = new ReplaceStrategy();
+
+    /* 所有 merge key 共用的策略实例 */
+    static final KeyStrategy MERGE = new MapMergeStrategy();
+
+    private final String[] keys;
+
+    /* 与 keys 同下标 */
+    private final KeyStrategy[] strategies;
+
+    private StateSchema(String[] keys, KeyStrategy[] strategies) {
+        this.keys = keys;
+        this.strategies = strategies;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 每次 run 调用的状态工厂。
+     */
+    public OverAllStateFactory factory() {
+        return this::newState;
+    }
+
+    public OverAllState newState() {
+        OverAllState state = new OverAllState();
+        for (int i = 0; i < keys.length; i++) {
+            state.registerKeyAndStrategy(keys[i], strategies[i]);
+        }
+        return state;
+    }
+
+    public List<String> keys() {
+        return List.of(keys);
+    }
+
+    /**
+     * @return key 的更新策略，没有注册时为 null
+     */
+    KeyStrategy strategy(String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return strategies[i];
+            }
+        }
+        return null;
+    }
+
+    public static final class Builder {
+
+        /* key 重复时后注册的覆盖前面的，顺序保持第一次出现的位置 */
+        private final Map<String, KeyStrategy> strategies = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * 每次写入替换旧值的 key。
+         */
+        public Builder replace(String... keys) {
+            for (String key : keys) {
+                strategies.put(key, REPLACE);
+            }
+            return this;
+        }
+
+        /**
+         * 值是 Map、多处写入时按字段合并的 key（见 {@link MapMergeStrategy}），并行分支各写一部分字段时用它。
+         */
+        public Builder merge(String... keys) {
+            for (String key : keys) {
+                strategies.put(key, MERGE);
+            }
+            return this;
+        }
+
+        public StateSchema build() {
+            List<String> keys = new ArrayList<>(strategies.keySet());
+            return new StateSchema(keys.toArray(String[]::new), strategies.values().toArray(KeyStrategy[]::new));
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return "StateSchema" + Arrays.toString(keys);
+    }
+
+}
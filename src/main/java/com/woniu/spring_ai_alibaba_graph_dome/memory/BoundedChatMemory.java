@@ -0,0 +1,751 @@
+package com.woniu.spring_ai_alibaba_graph_dome.memory;
+
+import com.google.gson.Gson;
+import com.woniu.spring_ai_alibaba_graph_dome.admission.ModelAdmission;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * helloworld 对话的会话记忆（Spring AI {@link ChatMemory}），每轮带进提示词的历史有硬上限。
+ * <p>
+ * 每个会话只原样保留最近 window-tokens 以内的消息（滑动窗口），滑出窗口的旧消息交给后台线程用模型压缩进一段
+ * 不超过 summary-tokens 的摘要，作为一条系统消息放在窗口前面；摘要还没生成好、或模型调用失败时先用截断的原文代替。
+ * 所以不管对话进行多少轮，每轮的历史都不超过 window-tokens + summary-tokens（见 graph.memory.prompt.tokens）。
+ * <p>
+ * 会话按最近访问排序放在内存里，会话数超过 max-sessions 或估算占用超过 max-bytes 时，把最久没访问的会话写到
+ * spill-dir 下的文件里（留空则直接丢弃），下次访问时再读回来；超过 idle-timeout 没访问的会话连同文件一起删除。
+ * 锁里只做内存操作：写 spill 文件、删文件和定期清理空闲会话都在单独的 chat-memory-io 线程上按提交顺序执行，
+ * 读回 spill 文件在锁外的请求线程上做。还没写完的会话留在内存里，这期间被访问直接拿回来，不用等磁盘。
+ * <p>
+ * 摘要作为一条系统消息返回；和 ChatClient 自己的系统提示词一起用时配合 {@link SingleSystemPromptAdvisor}
+ * 合成开头的一条系统消息。
+ * token 数按 DashScope 的经验值估算：中日韩文字一字一 token，其它四个字符一 token。
+ */
+@Component
+public class BoundedChatMemory implements ChatMemory {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedChatMemory.class);
+
+    private static final Gson GSON = new Gson();
+
+    /* 每条消息的角色标记等固定开销 */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    /* 估算内存占用用：对象头、引用、集合节点等，按 Java 字符串一字符两字节 */
+    private static final long SESSION_OVERHEAD_BYTES = 256;
+
+    private static final long TURN_OVERHEAD_BYTES = 64;
+
+    /* 读不出来的 spill 文件：和正常快照一样交给 session()，文件照常删除，id 对不上所以不会恢复成会话 */
+    private static final SpilledSession UNREADABLE = new SpilledSession(null, null, null, 0);
+
+    static final String SUMMARY_PREFIX = "此前对话的摘要：\n";
+
+    private final boolean enabled;
+
+    private final int windowTokens;
+
+    private final int summaryTokens;
+
+    /* 摘要正文的上限：summary-tokens 减去前缀和消息开销，整条摘要消息不超过 summary-tokens */
+    private final int summaryTextTokens;
+
+    private final int maxSessions;
+
+    private final long maxBytes;
+
+    private final Duration idleTimeout;
+
+    private final Path spillDir;
+
+    /* 为 null 时不调用模型，滑出窗口的消息直接截断进摘要 */
+    private final ChatClient summarizer;
+
+    private final Executor executor;
+
+    /* spill 文件的读写以外的磁盘操作都提交到这里，单线程、按提交顺序执行；提交都在 sessions 锁内，顺序和锁内的状态变化一致 */
+    private final Executor io;
+
+    private final Clock clock;
+
+    /* accessOrder = true，第一个就是最久没访问的会话；以下可变字段都由 sessions 保护 */
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    /* 已经换出、spill 文件还没写完的会话 */
+    private final Map<String, SpilledSession> spilling = new HashMap<>();
+
+    private long bytes;
+
+    private final DistributionSummary promptTokens;
+
+    private final Counter spilled;
+
+    private final Counter loaded;
+
+    private final Counter evictedIdle;
+
+    private final Counter evictedCapacity;
+
+    private final Counter modelSummaries;
+
+    private final Counter fallbackSummaries;
+
+    public BoundedChatMemory(@Value("${graph.memory.enabled:true}") boolean enabled,
+                             @Value("${graph.memory.window-tokens:1500}") int windowTokens,
+                             @Value("${graph.memory.summary-tokens:300}") int summaryTokens,
+                             @Value("${graph.memory.summarize:true}") boolean summarize,
+                             @Value("${graph.memory.max-sessions:1000}") int maxSessions,
+                             @Value("${graph.memory.max-bytes:32MB}") DataSize maxBytes,
+                             @Value("${graph.memory.idle-timeout:30m}") Duration idleTimeout,
+                             @Value("${graph.memory.spill-dir:./data/chat-memory}") String spillDir,
+                             ChatClient.Builder chatClientBuilder, GraphMetrics graphMetrics,
+                             ModelAdmission modelAdmission,
+                             @Qualifier("graphTaskExecutor") ExecutorService graphTaskExecutor,
+                             MeterRegistry meterRegistry) {
+        this(enabled, windowTokens, summaryTokens, maxSessions, maxBytes.toBytes(), idleTimeout,
+                spillDir.isBlank() ? null : Paths.get(spillDir),
+                summarize ? summarizer(chatClientBuilder, graphMetrics, modelAdmission, summaryTokens) : null,
+                graphTaskExecutor, Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "chat-memory-io");
+                    thread.setDaemon(true);
+                    return thread;
+                }), Clock.systemUTC(), meterRegistry);
+    }
+
+    BoundedChatMemory(boolean enabled, int windowTokens, int summaryTokens, int maxSessions, long maxBytes,
+                      Duration idleTimeout, Path spillDir, ChatClient summarizer, Executor executor, Executor io,
+                      Clock clock, MeterRegistry registry) {
+        this.enabled = enabled;
+        this.windowTokens = windowTokens;
+        this.summaryTokens = summaryTokens;
+        this.summaryTextTokens = Math.max(0, summaryTokens - tokens(SUMMARY_PREFIX) - MESSAGE_OVERHEAD_TOKENS);
+        this.maxSessions = maxSessions;
+        this.maxBytes = maxBytes;
+        this.idleTimeout = idleTimeout;
+        this.spillDir = spillDir;
+        this.summarizer = summarizer;
+        this.executor = executor;
+        this.io = io;
+        this.clock = clock;
+        this.promptTokens = DistributionSummary.builder("graph.memory.prompt.tokens")
+                .description("Estimated tokens of conversation history added to one prompt")
+                .register(registry);
+        this.spilled = Counter.builder("graph.memory.spilled")
+                .description("Sessions written to the spill directory").register(registry);
+        this.loaded = Counter.builder("graph.memory.loaded")
+                .description("Sessions read back from the spill directory").register(registry);
+        this.evictedIdle = evicted(registry, "idle");
+        this.evictedCapacity = evicted(registry, "capacity");
+        this.modelSummaries = summaries(registry, "model");
+        this.fallbackSummaries = summaries(registry, "fallback");
+        Gauge.builder("graph.memory.sessions", this, memory -> memory.stats().sessions())
+                .description("Conversation sessions held in memory").register(registry);
+        Gauge.builder("graph.memory.bytes", this, memory -> memory.stats().bytes())
+                .description("Estimated heap used by in-memory conversation sessions").baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static ChatClient summarizer(ChatClient.Builder builder, GraphMetrics graphMetrics,
+                                         ModelAdmission modelAdmission, int summaryTokens) {
+        /* 后台任务，走单独的 memory 分道，没有配置优先级时排在所有前台请求后面 */
+        return builder.defaultAdvisors(graphMetrics.advisor("memory"), modelAdmission.advisor("memory"))
+                .defaultOptions(ChatOptions.builder().maxTokens(summaryTokens).temperature(0.0).build())
+                .build();
+    }
+
+    private static Counter evicted(MeterRegistry registry, String reason) {
+        return Counter.builder("graph.memory.evicted")
+                .description("Sessions dropped from memory and disk")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static Counter summaries(MeterRegistry registry, String source) {
+        return Counter.builder("graph.memory.summaries")
+                .description("Times older turns were folded into a session summary")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    /**
+     * 每 idle-timeout 的四分之一（至少一秒）在 io 线程上清理一次空闲会话。
+     */
+    @PostConstruct
+    public void start() {
+        if (io instanceof ScheduledExecutorService scheduler) {
+            long period = Math.max(1000, idleTimeout.toMillis() / 4);
+            scheduler.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 停止定期清理，等已经提交的 spill 文件写完。
+     */
+    @PreDestroy
+    public void close() {
+        if (!(io instanceof ExecutorService service)) {
+            return;
+        }
+        service.shutdown();
+        try {
+            if (!service.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Chat memory spill writes did not finish at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        List<Runnable> summaries = new ArrayList<>();
+        SpilledSession spilledFile = readSpillFile(conversationId);
+        synchronized (sessions) {
+            long now = clock.millis();
+            Session session = session(conversationId, now, spilledFile, true);
+            for (Message message : messages) {
+                MessageType type = message.getMessageType();
+                if (type == MessageType.USER || type == MessageType.ASSISTANT) {
+                    session.append(new Turn(type, clip(message.getText(), windowTokens - MESSAGE_OVERHEAD_TOKENS)));
+                }
+            }
+            session.slide(windowTokens);
+            Runnable summary = summarize(session);
+            if (summary != null) {
+                summaries.add(summary);
+            }
+            resize(session);
+            shrink(session);
+        }
+        /* 模型调用不能占着锁，也不能拖慢当前这一轮的回答 */
+        summaries.forEach(executor::execute);
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        List<Message> messages = new ArrayList<>();
+        int tokens = 0;
+        SpilledSession spilledFile = readSpillFile(conversationId);
+        synchronized (sessions) {
+            Session session = session(conversationId, clock.millis(), spilledFile, false);
+            if (session != null) {
+                String summary = session.effectiveSummary(summaryTextTokens);
+                if (!summary.isEmpty()) {
+                    messages.add(new SystemMessage(SUMMARY_PREFIX + summary));
+                    tokens += tokens(SUMMARY_PREFIX + summary) + MESSAGE_OVERHEAD_TOKENS;
+                }
+                for (Turn turn : session.window) {
+                    messages.add(turn.role() == MessageType.USER ? new UserMessage(turn.text()) : new AssistantMessage(turn.text()));
+                    tokens += turn.tokens();
+                }
+            }
+        }
+        promptTokens.record(tokens);
+        return messages;
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        synchronized (sessions) {
+            Session session = sessions.remove(conversationId);
+            if (session != null) {
+                bytes -= session.bytes;
+            }
+            spilling.remove(conversationId);
+            if (spillDir != null) {
+                io.execute(() -> deleteSpillFile(conversationId));
+            }
+        }
+    }
+
+    public Stats stats() {
+        synchronized (sessions) {
+            return new Stats(sessions.size(), maxSessions, bytes, maxBytes, windowTokens + summaryTokens,
+                    (long) spilled.count(), (long) loaded.count(), (long) (evictedIdle.count() + evictedCapacity.count()),
+                    (long) modelSummaries.count(), (long) fallbackSummaries.count());
+        }
+    }
+
+    /**
+     * 在内存里找，找不到再用还没写完的换出会话、最后用锁外读到的 spill 文件；create 为 true 时都没有就新建。
+     * 从换出状态拿回来的会话，它的 spill 文件交给 io 线程删除（排在还没执行的写入后面）。
+     */
+    private Session session(String conversationId, long now, SpilledSession spilledFile, boolean create) {
+        Session session = sessions.get(conversationId);
+        if (session == null) {
+            SpilledSession snapshot = spilling.remove(conversationId);
+            if (snapshot == null) {
+                snapshot = spilledFile;
+            }
+            if (snapshot != null) {
+                io.execute(() -> deleteSpillFile(conversationId));
+                session = restore(conversationId, snapshot, now);
+            }
+            if (session == null && !create) {
+                return null;
+            }
+            if (session == null) {
+                session = new Session(conversationId);
+            }
+            sessions.put(conversationId, session);
+            resize(session);
+            shrink(session);
+        }
+        session.lastAccess = now;
+        return session;
+    }
+
+    /**
+     * 有滑出窗口的消息时：配置了模型就返回一个后台压缩任务（同一会话同时只有一个），否则直接截断进摘要。
+     */
+    private Runnable summarize(Session session) {
+        if (session.pending.isEmpty() || session.summarizing) {
+            return null;
+        }
+        if (summarizer == null) {
+            session.fold(summaryTextTokens);
+            fallbackSummaries.increment();
+            return null;
+        }
+        session.summarizing = true;
+        String previous = session.summary;
+        List<Turn> turns = List.copyOf(session.pending);
+        return () -> {
+            String summary = null;
+            try {
+                summary = summarizer.prompt()
+                        .system(summaryPrompt())
+                        .user(transcript(previous, turns))
+                        .call()
+                        .content();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to summarize conversation {}, keeping truncated turns", session.id, e);
+            }
+            Runnable next;
+            synchronized (sessions) {
+                session.summarizing = false;
+                /* 压缩期间会话被删除或换出过，这份结果已经没有对应的会话 */
+                if (sessions.get(session.id) != session) {
+                    return;
+                }
+                if (summary == null || summary.isBlank()) {
+                    session.fold(summaryTextTokens);
+                    fallbackSummaries.increment();
+                } else {
+                    session.summary = clip(summary.strip(), summaryTextTokens);
+                    session.pending.subList(0, turns.size()).clear();
+                    modelSummaries.increment();
+                }
+                resize(session);
+                /* 压缩期间又有消息滑出窗口 */
+                next = summarize(session);
+            }
+            if (next != null) {
+                executor.execute(next);
+            }
+        };
+    }
+
+    private String summaryPrompt() {
+        return "把已有摘要和新增对话合并成一段新的摘要，保留用户的身份、偏好、提到的事实和还没解决的问题，"
+                + "不要寒暄，不超过 " + summaryTextTokens + " 个字。只输出摘要本身。";
+    }
+
+    static String transcript(String summary, List<Turn> turns) {
+        StringBuilder text = new StringBuilder();
+        if (!summary.isEmpty()) {
+            text.append("已有摘要：\n").append(summary).append("\n\n");
+        }
+        text.append("新增对话：\n");
+        for (Turn turn : turns) {
+            text.append(turn.role() == MessageType.USER ? "用户：" : "助手：").append(turn.text()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private void resize(Session session) {
+        long size = session.bytes();
+        bytes += size - session.bytes;
+        session.bytes = size;
+    }
+
+    /**
+     * 超过会话数或内存上限时从最久没访问的会话开始换出，当前会话不动。
+     */
+    private void shrink(Session current) {
+        Iterator<Session> eldest = sessions.values().iterator();
+        while ((sessions.size() > maxSessions || bytes > maxBytes) && eldest.hasNext()) {
+            Session session = eldest.next();
+            if (session == current) {
+                continue;
+            }
+            eldest.remove();
+            bytes -= session.bytes;
+            if (spillDir == null) {
+                evictedCapacity.increment();
+                continue;
+            }
+            /* 正在压缩的内容先截断进摘要，压缩结果回来时会发现会话已经换出 */
+            session.fold(summaryTextTokens);
+            SpilledSession snapshot = new SpilledSession(session.id, session.summary, new ArrayList<>(session.window),
+                    session.lastAccess);
+            spilling.put(session.id, snapshot);
+            io.execute(() -> writeSpillFile(snapshot));
+        }
+    }
+
+    /**
+     * 删除空闲会话，由 io 线程定期执行；访问顺序就是 lastAccess 的顺序，碰到第一个没超时的就可以停。
+     * spill 目录里的文件按修改时间判断，扫目录时不占锁。
+     */
+    void sweep() {
+        long now = clock.millis();
+        long idleMillis = idleTimeout.toMillis();
+        synchronized (sessions) {
+            Iterator<Session> eldest = sessions.values().iterator();
+            while (eldest.hasNext()) {
+                Session session = eldest.next();
+                if (now - session.lastAccess < idleMillis) {
+                    break;
+                }
+                eldest.remove();
+                bytes -= session.bytes;
+                evictedIdle.increment();
+            }
+        }
+        if (spillDir == null || !Files.isDirectory(spillDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDir, "*.json")) {
+            for (Path file : files) {
+                if (now - Files.getLastModifiedTime(file).toMillis() >= idleMillis && Files.deleteIfExists(file)) {
+                    evictedIdle.increment();
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to sweep chat memory spill directory {}", spillDir, e);
+        }
+    }
+
+    /**
+     * 在 io 线程上写 spill 文件；写之前会话已经被拿回内存（或又换出了一次）就不写，写完才发现被拿回的删掉文件。
+     */
+    private void writeSpillFile(SpilledSession snapshot) {
+        synchronized (sessions) {
+            if (spilling.get(snapshot.id) != snapshot) {
+                return;
+            }
+        }
+        Path file = spillFile(snapshot.id);
+        boolean written;
+        try {
+            Files.createDirectories(spillDir);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                GSON.toJson(snapshot, writer);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written = true;
+        } catch (IOException e) {
+            logger.warn("Failed to spill conversation {} to {}, dropping it", snapshot.id, file, e);
+            written = false;
+        }
+        boolean current;
+        synchronized (sessions) {
+            current = spilling.remove(snapshot.id, snapshot);
+            if (current) {
+                (written ? spilled : evictedCapacity).increment();
+            }
+        }
+        if (written && !current) {
+            /* 同一个会话更新的写入排在后面，这里删掉不会误删 */
+            deleteSpillFile(snapshot.id);
+        }
+    }
+
+    /**
+     * 在锁外读 spill 文件，内存里已经有这个会话（或它还没写完）时不读；读到的快照由 {@link #session} 在锁内装回去。
+     */
+    private SpilledSession readSpillFile(String conversationId) {
+        if (spillDir == null) {
+            return null;
+        }
+        synchronized (sessions) {
+            if (sessions.containsKey(conversationId) || spilling.containsKey(conversationId)) {
+                return null;
+            }
+        }
+        Path file = spillFile(conversationId);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            SpilledSession snapshot = GSON.fromJson(reader, SpilledSession.class);
+            return snapshot == null ? UNREADABLE : snapshot;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to read spilled conversation {}, starting over", file, e);
+            return UNREADABLE;
+        }
+    }
+
+    private Session restore(String conversationId, SpilledSession snapshot, long now) {
+        /* 文件名是 id 的哈希，顺带核对一下 id */
+        if (!conversationId.equals(snapshot.id)) {
+            return null;
+        }
+        if (now - snapshot.lastAccess >= idleTimeout.toMillis()) {
+            evictedIdle.increment();
+            return null;
+        }
+        Session session = new Session(conversationId);
+        session.summary = snapshot.summary == null ? "" : snapshot.summary;
+        if (snapshot.window != null) {
+            snapshot.window.forEach(session::append);
+        }
+        loaded.increment();
+        return session;
+    }
+
+    private void deleteSpillFile(String conversationId) {
+        if (spillDir == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(spillFile(conversationId));
+        } catch (IOException e) {
+            logger.warn("Failed to delete spilled conversation {}", conversationId, e);
+        }
+    }
+
+    /* 会话 id 来自请求参数，不能直接当文件名 */
+    private Path spillFile(String conversationId) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(conversationId.getBytes(StandardCharsets.UTF_8));
+            return spillDir.resolve(HexFormat.of().formatHex(hash) + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 估算 token 数：中日韩文字一字一 token，其它字符四个一 token，向上取整。
+     */
+    static int tokens(String text) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                cjk++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * 从开头截取不超过 maxTokens 的部分。
+     */
+    static String clip(String text, int maxTokens) {
+        if (text == null) {
+            return "";
+        }
+        if (tokens(text) <= maxTokens) {
+            return text;
+        }
+        int quarters = Math.max(0, maxTokens) * 4;
+        int end = 0;
+        while (end < text.length()) {
+            int codePoint = text.codePointAt(end);
+            quarters -= isCjk(codePoint) ? 4 : 1;
+            if (quarters < 0) {
+                break;
+            }
+            end += Character.charCount(codePoint);
+        }
+        return text.substring(0, end);
+    }
+
+    /**
+     * 从末尾截取不超过 maxTokens 的部分，截断式摘要只保留最近的内容。
+     */
+    static String clipTail(String text, int maxTokens) {
+        if (tokens(text) <= maxTokens) {
+            return text;
+        }
+        int quarters = Math.max(0, maxTokens) * 4;
+        int start = text.length();
+        while (start > 0) {
+            int codePoint = text.codePointBefore(start);
+            quarters -= isCjk(codePoint) ? 4 : 1;
+            if (quarters < 0) {
+                break;
+            }
+            start -= Character.charCount(codePoint);
+        }
+        return text.substring(start);
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    record Turn(MessageType role, String text, int tokens) {
+
+        Turn(MessageType role, String text) {
+            this(role, text, BoundedChatMemory.tokens(text) + MESSAGE_OVERHEAD_TOKENS);
+        }
+
+    }
+
+    private static final class Session {
+
+        final String id;
+
+        final ArrayDeque<Turn> window = new ArrayDeque<>();
+
+        int windowTokens;
+
+        /* 已经压缩好的摘要 */
+        String summary = "";
+
+        /* 滑出窗口、还没压缩进摘要的消息 */
+        final List<Turn> pending = new ArrayList<>();
+
+        boolean summarizing;
+
+        long lastAccess;
+
+        /* 上次计入总量的估算大小 */
+        long bytes;
+
+        Session(String id) {
+            this.id = id;
+        }
+
+        void append(Turn turn) {
+            window.addLast(turn);
+            windowTokens += turn.tokens();
+        }
+
+        /**
+         * 从最旧的消息开始移出窗口直到不超过预算；移出一条用户消息时连同紧跟着的回答一起移出，窗口总是从用户消息开始。
+         */
+        void slide(int budget) {
+            while (windowTokens > budget && !window.isEmpty()) {
+                evictOldest();
+                while (!window.isEmpty() && window.peekFirst().role() == MessageType.ASSISTANT) {
+                    evictOldest();
+                }
+            }
+        }
+
+        private void evictOldest() {
+            Turn turn = window.removeFirst();
+            windowTokens -= turn.tokens();
+            pending.add(turn);
+        }
+
+        /* 把还没压缩的消息直接截断进摘要 */
+        void fold(int summaryTokens) {
+            summary = effectiveSummary(summaryTokens);
+            pending.clear();
+        }
+
+        String effectiveSummary(int summaryTokens) {
+            if (pending.isEmpty()) {
+                return summary;
+            }
+            return clipTail(transcript(summary, pending), summaryTokens);
+        }
+
+        long bytes() {
+            long size = SESSION_OVERHEAD_BYTES + 2L * (id.length() + summary.length());
+            for (Turn turn : window) {
+                size += TURN_OVERHEAD_BYTES + 2L * turn.text().length();
+            }
+            for (Turn turn : pending) {
+                size += TURN_OVERHEAD_BYTES + 2L * turn.text().length();
+            }
+            return size;
+        }
+
+    }
+
+    private static final class SpilledSession {
+        String id;
+        String summary;
+        List<Turn> window;
+        long lastAccess;
+
+        SpilledSession(String id, String summary, List<Turn> window, long lastAccess) {
+            this.id = id;
+            this.summary = summary;
+            this.window = window;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * @param maxPromptTokens 每轮带进提示词的历史上限（窗口 + 摘要）
+     * @param evicted         因空闲或换出失败（没有 spill 目录）而丢弃的会话数
+     */
+    public record Stats(int sessions, int maxSessions, long bytes, long maxBytes, int maxPromptTokens,
+                        long spilled, long loaded, long evicted, long modelSummaries, long fallbackSummaries) {
+    }
+
+}
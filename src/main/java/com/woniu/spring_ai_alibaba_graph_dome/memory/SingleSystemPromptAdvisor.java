@@ -0,0 +1,84 @@
+package com.woniu.spring_ai_alibaba_graph_dome.memory;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把提示词里的系统消息合成开头的一条。MessageChatMemoryAdvisor 把记忆（含 {@link BoundedChatMemory} 的摘要系统消息）
+ * 插在请求消息前面，ChatClient 的 defaultSystem 反而排到了历史后面，一次请求带两条系统消息，DashScope 对第二条的处理不可靠。
+ * 合并后 ChatClient 自己的系统提示词在前、会话摘要在后，其余消息顺序不变。
+ * <p>
+ * 排在 MessageChatMemoryAdvisor 之后，看到的是已经拼好记忆的请求。
+ */
+public class SingleSystemPromptAdvisor implements CallAdvisor, StreamAdvisor {
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        return callAdvisorChain.nextCall(merge(chatClientRequest));
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        return streamAdvisorChain.nextStream(merge(chatClientRequest));
+    }
+
+    private static ChatClientRequest merge(ChatClientRequest request) {
+        List<Message> messages = request.prompt().getInstructions();
+        List<Message> merged = mergeSystemMessages(messages);
+        if (merged == messages) {
+            return request;
+        }
+        return request.mutate().prompt(new Prompt(merged, request.prompt().getOptions())).build();
+    }
+
+    /**
+     * @return 系统消息不超过一条且已经在开头时原样返回
+     */
+    static List<Message> mergeSystemMessages(List<Message> messages) {
+        List<String> instructions = new ArrayList<>();
+        List<String> summaries = new ArrayList<>();
+        List<Message> rest = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (message.getMessageType() != MessageType.SYSTEM) {
+                rest.add(message);
+            } else if (message.getText().startsWith(BoundedChatMemory.SUMMARY_PREFIX)) {
+                summaries.add(message.getText());
+            } else {
+                instructions.add(message.getText());
+            }
+        }
+        int systemMessages = instructions.size() + summaries.size();
+        if (systemMessages == 0 || (systemMessages == 1 && messages.get(0).getMessageType() == MessageType.SYSTEM)) {
+            return messages;
+        }
+        instructions.addAll(summaries);
+        List<Message> merged = new ArrayList<>(rest.size() + 1);
+        merged.add(new SystemMessage(String.join("\n\n", instructions)));
+        merged.addAll(rest);
+        return merged;
+    }
+
+    @Override
+    public String getName() {
+        return "SingleSystemPromptAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        return Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER + 1;
+    }
+
+}
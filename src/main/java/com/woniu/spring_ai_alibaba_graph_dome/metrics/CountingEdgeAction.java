@@ -0,0 +1,50 @@
+package com.woniu.spring_ai_alibaba_graph_dome.metrics;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.EdgeAction;
+import io.micrometer.core.instrument.Counter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 统计调度器选中分支的 EdgeAction 装饰器，指标名 graph.route，同时提交 JFR 事件 {@link GraphEdgeEvent}。
+ */
+public class CountingEdgeAction implements EdgeAction {
+
+    private final GraphMetrics metrics;
+
+    private final String graph;
+
+    private final String node;
+
+    private final EdgeAction delegate;
+
+    /* 分支名是有限的几个，每个分支的 Counter 取一次后留在这里 */
+    private final ConcurrentHashMap<String, Counter> routes = new ConcurrentHashMap<>();
+
+    CountingEdgeAction(GraphMetrics metrics, String graph, String node, EdgeAction delegate) {
+        this.metrics = metrics;
+        this.graph = graph;
+        this.node = node;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String apply(OverAllState state) throws Exception {
+        GraphEdgeEvent event = new GraphEdgeEvent();
+        event.begin();
+        String route = delegate.apply(state);
+        routes.computeIfAbsent(route, key -> metrics.counter("graph.route", "Routes chosen by graph dispatchers",
+                "graph", graph, "node", node, "route", key)).increment();
+        event.end();
+        if (event.shouldCommit()) {
+            event.graph = graph;
+            event.node = node;
+            event.route = route;
+            event.classifierOutputChars = GraphMetrics.chars(state.value("classifier_output").orElse(null));
+            event.commit();
+        }
+        return route;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.woniu.spring_ai_alibaba_graph_dome.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 调度器的一次分支选择（JFR 事件）。
+ */
+@Name("com.woniu.graph.Edge")
+@Label("Graph Edge")
+@Category({"Graph"})
+@Description("Route chosen by a graph dispatcher")
+@StackTrace(false)
+final class GraphEdgeEvent extends jdk.jfr.Event {
+
+    @Label("Graph")
+    String graph;
+
+    @Label("Node")
+    @Description("Node the conditional edge starts from")
+    String node;
+
+    @Label("Route")
+    String route;
+
+    @Label("Classifier Output Length")
+    int classifierOutputChars;
+
+}
@@ -0,0 +1,222 @@
+package com.woniu.spring_ai_alibaba_graph_dome.metrics;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.EdgeAction;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 工作流相关的 Micrometer 指标，统一在这里定义名字和 tag，通过 Actuator 暴露（/actuator/prometheus）。
+ * 整图、节点、调度器和模型调用同时提交 JFR 事件（com.woniu.graph.Run / Node / Edge / ModelCall），
+ * 没有开启录制时只多一次对象分配和一次判断。
+ * <ul>
+ *     <li>graph.run：整图执行耗时，tag graph / outcome</li>
+ *     <li>graph.run.allocated：整图执行期间调用线程分配的字节数，tag graph。只统计调用线程：跑在其它线程上的部分
+ *     （虚拟线程模式下的节点，以及并行分支、分类节点的容错 / 对冲调用等交给 graphTaskExecutor 的任务）不计入，
+ *     这些图的值偏小，只适合同一配置下前后对比</li>
+ *     <li>graph.node：单个节点耗时，tag graph / node / outcome</li>
+ *     <li>graph.route：调度器选中的分支次数，tag graph / node / route</li>
+ *     <li>graph.model.call、graph.model.tokens、graph.model.errors：ChatClient 的模型调用，tag graph / node / prompt，见 {@link ModelCallMetricsAdvisor}</li>
+ * </ul>
+ */
+@Component
+public class GraphMetrics {
+
+    /* 当前线程正在执行的 图 / 节点，模型调用指标据此打 tag（共享 ChatClient 时区分是哪个图调用的） */
+    private static final ThreadLocal<String[]> CURRENT_NODE = new ThreadLocal<>();
+
+    /* HotSpot 的线程分配计数，不支持时为 null（不记录 graph.run.allocated） */
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final MeterRegistry registry;
+
+    private final TokenUsage tokenUsage = new TokenUsage();
+
+    /* 请求路径上按 名字 + tag 取已注册的 meter，不再每次走一遍 builder 和 registry 的查找 */
+    private final ConcurrentHashMap<MeterKey, Timer> timers = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<MeterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, DistributionSummary> allocated = new ConcurrentHashMap<>();
+
+    public GraphMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 节点装饰器：记录节点耗时，节点逻辑和写入 state 的内容不变。
+     */
+    public NodeAction node(String graph, String node, NodeAction action) {
+        return new TimedNodeAction(this, graph, node, action);
+    }
+
+    /**
+     * 调度器装饰器：按选中的分支计数。
+     */
+    public EdgeAction edge(String graph, String node, EdgeAction action) {
+        return new CountingEdgeAction(this, graph, node, action);
+    }
+
+    /**
+     * 挂到 ChatClient 上的模型调用指标；在节点里调用时 graph / node 取当前节点，否则用 defaultGraph。
+     */
+    public ModelCallMetricsAdvisor advisor(String defaultGraph) {
+        return new ModelCallMetricsAdvisor(this, defaultGraph);
+    }
+
+    /**
+     * 各节点的模型 token 用量汇总（按提示词模式区分）。
+     */
+    public TokenUsage tokenUsage() {
+        return tokenUsage;
+    }
+
+    /**
+     * 记录一次整图执行。
+     */
+    public Optional<OverAllState> recordRun(String graph, Supplier<Optional<OverAllState>> run) {
+        GraphRunEvent event = new GraphRunEvent();
+        event.begin();
+        Timer.Sample sample = Timer.start(registry);
+        long allocatedBefore = THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+        String outcome = "error";
+        Optional<OverAllState> result = Optional.empty();
+        try {
+            result = run.get();
+            outcome = result.flatMap(state -> state.value("solution")).isPresent() ? "success" : "empty";
+            return result;
+        } finally {
+            sample.stop(timer("graph.run", "Graph invocation latency", "graph", graph, "outcome", outcome));
+            long allocated = -1;
+            if (allocatedBefore >= 0) {
+                allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                this.allocated.computeIfAbsent(graph, key -> DistributionSummary.builder("graph.run.allocated")
+                                .description("Bytes allocated by the invoking thread during a graph invocation")
+                                .baseUnit("bytes")
+                                .tag("graph", key)
+                                .register(registry))
+                        .record(allocated);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.graph = graph;
+                event.outcome = outcome;
+                event.allocated = allocated;
+                result.ifPresent(state -> {
+                    event.runId = runId(state);
+                    event.inputChars = chars(state.value("input").orElse(null));
+                    event.solutionChars = chars(state.value("solution").orElse(null));
+                });
+                event.commit();
+            }
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean hotspot
+                && hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+            return hotspot;
+        }
+        return null;
+    }
+
+    /* JFR 事件里的载荷大小：字符串按字符数，其它按 toString 的长度 */
+    static int chars(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return value instanceof CharSequence text ? text.length() : String.valueOf(value).length();
+    }
+
+    static String runId(OverAllState state) {
+        return state.value("run_id").map(Object::toString).orElse(null);
+    }
+
+    static String[] enter(String graph, String node) {
+        String[] previous = CURRENT_NODE.get();
+        CURRENT_NODE.set(new String[]{graph, node});
+        return previous;
+    }
+
+    static void exit(String[] previous) {
+        if (previous == null) {
+            CURRENT_NODE.remove();
+        } else {
+            CURRENT_NODE.set(previous);
+        }
+    }
+
+    /**
+     * @return 当前线程上正在执行的 {graph, node}，不在节点内时为 null
+     */
+    static String[] currentNode() {
+        return CURRENT_NODE.get();
+    }
+
+    /**
+     * @return 当前线程上正在执行的图，不在节点内时为 null
+     */
+    public static String currentGraph() {
+        String[] current = CURRENT_NODE.get();
+        return current == null ? null : current[0];
+    }
+
+    /**
+     * 以 graph / node 的身份执行 call：节点把模型调用挪到其它线程上执行时，用它把当前节点带过去。
+     */
+    public static <T> T callAs(String graph, String node, Callable<T> call) throws Exception {
+        String[] previous = enter(graph, node);
+        try {
+            return call.call();
+        } finally {
+            exit(previous);
+        }
+    }
+
+    Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    Timer timer(String name, String description, String... tags) {
+        MeterKey key = new MeterKey(name, Arrays.asList(tags));
+        Timer timer = timers.get(key);
+        if (timer != null) {
+            return timer;
+        }
+        return timers.computeIfAbsent(key, k -> Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    Counter counter(String name, String description, String... tags) {
+        MeterKey key = new MeterKey(name, Arrays.asList(tags));
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        return counters.computeIfAbsent(key, k -> Counter.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(registry));
+    }
+
+    private record MeterKey(String name, List<String> tags) {
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.woniu.spring_ai_alibaba_graph_dome.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一个节点的执行（JFR 事件），和 graph.node 指标一一对应。
+ */
+@Name("com.woniu.graph.Node")
+@Label("Graph Node")
+@Category({"Graph"})
+@Description("One node execution inside a graph run")
+@StackTrace(false)
+final class GraphNodeEvent extends jdk.jfr.Event {
+
+    @Label("Graph")
+    String graph;
+
+    @Label("Node")
+    String node;
+
+    @Label("Run Id")
+    String runId;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Input Length")
+    @Description("Characters in the input key")
+    int inputChars;
+
+    @Label("Output Keys")
+    int outputKeys;
+
+    @Label("Output Length")
+    @Description("Characters in the string values written by the node")
+    int outputChars;
+
+}
@@ -0,0 +1,42 @@
+package com.woniu.spring_ai_alibaba_graph_dome.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一次整图执行（JFR 事件，开始时间和耗时即 run 的起止）。
+ */
+@Name("com.woniu.graph.Run")
+@Label("Graph Run")
+@Category({"Graph"})
+@Description("One graph invocation")
+@StackTrace(false)
+final class GraphRunEvent extends jdk.jfr.Event {
+
+    @Label("Graph")
+    String graph;
+
+    @Label("Run Id")
+    String runId;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Input Length")
+    @Description("Characters in the input key")
+    int inputChars;
+
+    @Label("Solution Length")
+    @Description("Characters in the solution key")
+    int solutionChars;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the invoking thread only, -1 when not supported")
+    @DataAmount
+    long allocated;
+
+}
@@ -0,0 +1,53 @@
+package com.woniu.spring_ai_alibaba_graph_dome.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一次 ChatClient 模型调用（JFR 事件），和 graph.model.call 指标一一对应；
+ * 流式调用从订阅开始到最后一个分片，提交在收到结束信号的线程上。
+ */
+@Name("com.woniu.graph.ModelCall")
+@Label("Model Call")
+@Category({"Graph"})
+@Description("One ChatClient model call")
+@StackTrace(false)
+final class ModelCallEvent extends jdk.jfr.Event {
+
+    @Label("Graph")
+    String graph;
+
+    @Label("Node")
+    String node;
+
+    @Label("Prompt Mode")
+    String prompt;
+
+    @Label("Streaming")
+    boolean streaming;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Exception")
+    String exception;
+
+    @Label("Prompt Length")
+    @Description("Characters in all prompt messages")
+    int promptChars;
+
+    @Label("Completion Length")
+    int completionChars;
+
+    @Label("Prompt Tokens")
+    @Description("-1 when the model did not report usage")
+    int promptTokens;
+
+    @Label("Completion Tokens")
+    @Description("-1 when the model did not report usage")
+    int completionTokens;
+
+}
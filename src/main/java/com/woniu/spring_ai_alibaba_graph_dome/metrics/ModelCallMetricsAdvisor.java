@@ -0,0 +1,187 @@
+package com.woniu.spring_ai_alibaba_graph_dome.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ChatClient 的模型调用指标：
+ * graph.model.call（耗时，tag graph / node / prompt / outcome）、graph.model.tokens（tag graph / node / prompt / type=prompt|completion）、
+ * graph.model.errors（tag graph / node / exception），流式调用另有首字延迟 graph.model.first-token（tag graph / node / prompt）。
+ * graph / node 取调用线程上正在执行的节点（见 {@link TimedNodeAction}），不在节点里调用时 graph 为 defaultGraph、node 为 none；
+ * prompt 是调用方通过 advisor 参数 {@link #PROMPT_MODE} 声明的提示词模式，没有声明时为 standard。
+ * 成功的调用同时汇总到 {@link TokenUsage}。每次调用提交一个 JFR 事件 {@link ModelCallEvent}。
+ */
+public class ModelCallMetricsAdvisor implements CallAdvisor, StreamAdvisor {
+
+    /* advisor 参数名：.advisors(a -> a.param(PROMPT_MODE, "compact")) */
+    public static final String PROMPT_MODE = "graph.prompt-mode";
+
+    static final String STANDARD_PROMPT = "standard";
+
+    private final GraphMetrics metrics;
+
+    private final String defaultGraph;
+
+    ModelCallMetricsAdvisor(GraphMetrics metrics, String defaultGraph) {
+        this.metrics = metrics;
+        this.defaultGraph = defaultGraph;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+        String[] tags = tags(chatClientRequest);
+        ModelCallEvent event = new ModelCallEvent();
+        event.begin();
+        Timer.Sample sample = metrics.start();
+        long start = System.nanoTime();
+        String outcome = "error";
+        ChatResponse chatResponse = null;
+        Throwable error = null;
+        try {
+            ChatClientResponse response = callAdvisorChain.nextCall(chatClientRequest);
+            chatResponse = response.chatResponse();
+            recordUsage(tags, chatResponse, System.nanoTime() - start);
+            outcome = "success";
+            return response;
+        } catch (RuntimeException e) {
+            error = e;
+            recordError(tags, e);
+            throw e;
+        } finally {
+            sample.stop(callTimer(tags, outcome));
+            commit(event, tags, chatClientRequest, false, outcome, error, chatResponse, text(chatResponse).length());
+        }
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest, StreamAdvisorChain streamAdvisorChain) {
+        String[] tags = tags(chatClientRequest);
+        return Flux.defer(() -> {
+            ModelCallEvent event = new ModelCallEvent();
+            event.begin();
+            Timer.Sample sample = metrics.start();
+            long start = System.nanoTime();
+            AtomicReference<ChatResponse> last = new AtomicReference<>();
+            AtomicInteger completionChars = new AtomicInteger();
+            return streamAdvisorChain.nextStream(chatClientRequest)
+                    .doOnNext(response -> {
+                        if (completionChars.get() == 0 && !text(response.chatResponse()).isEmpty()) {
+                            /* 首字延迟：流式调用里用户感知到的是它，而不是整段耗时 */
+                            metrics.timer("graph.model.first-token", "Time to the first streamed model token",
+                                            "graph", tags[0], "node", tags[1], "prompt", tags[2])
+                                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                        if (response.chatResponse() != null) {
+                            last.set(response.chatResponse());
+                            completionChars.addAndGet(text(response.chatResponse()).length());
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        /* 流式返回时用量通常只在最后一个分片里 */
+                        recordUsage(tags, last.get(), System.nanoTime() - start);
+                        sample.stop(callTimer(tags, "success"));
+                        commit(event, tags, chatClientRequest, true, "success", null, last.get(), completionChars.get());
+                    })
+                    .doOnError(e -> {
+                        recordError(tags, e);
+                        sample.stop(callTimer(tags, "error"));
+                        commit(event, tags, chatClientRequest, true, "error", e, last.get(), completionChars.get());
+                    })
+                    .doOnCancel(() -> {
+                        sample.stop(callTimer(tags, "cancelled"));
+                        commit(event, tags, chatClientRequest, true, "cancelled", null, last.get(), completionChars.get());
+                    });
+        });
+    }
+
+    /* 在调用线程上取 tag，流式调用的回调可能跑在别的线程上；返回 {graph, node, prompt} */
+    private String[] tags(ChatClientRequest chatClientRequest) {
+        String[] current = GraphMetrics.currentNode();
+        Object prompt = chatClientRequest.context().get(PROMPT_MODE);
+        return new String[]{current != null ? current[0] : defaultGraph, current != null ? current[1] : "none",
+                prompt != null ? prompt.toString() : STANDARD_PROMPT};
+    }
+
+    private Timer callTimer(String[] tags, String outcome) {
+        return metrics.timer("graph.model.call", "Model call latency",
+                "graph", tags[0], "node", tags[1], "prompt", tags[2], "outcome", outcome);
+    }
+
+    private void recordUsage(String[] tags, ChatResponse chatResponse, long nanos) {
+        Usage usage = chatResponse == null || chatResponse.getMetadata() == null
+                ? null : chatResponse.getMetadata().getUsage();
+        Integer promptTokens = usage == null ? null : usage.getPromptTokens();
+        Integer completionTokens = usage == null ? null : usage.getCompletionTokens();
+        metrics.tokenUsage().record(tags[0], tags[1], tags[2], promptTokens, completionTokens, nanos);
+        if (promptTokens != null) {
+            metrics.counter("graph.model.tokens", "Model token usage",
+                            "graph", tags[0], "node", tags[1], "prompt", tags[2], "type", "prompt")
+                    .increment(promptTokens);
+        }
+        if (completionTokens != null) {
+            metrics.counter("graph.model.tokens", "Model token usage",
+                            "graph", tags[0], "node", tags[1], "prompt", tags[2], "type", "completion")
+                    .increment(completionTokens);
+        }
+    }
+
+    /* 只有录制开着并且达到阈值时才计算提示词长度 */
+    private static void commit(ModelCallEvent event, String[] tags, ChatClientRequest request, boolean streaming,
+                               String outcome, Throwable error, ChatResponse chatResponse, int completionChars) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        Usage usage = chatResponse == null || chatResponse.getMetadata() == null
+                ? null : chatResponse.getMetadata().getUsage();
+        event.graph = tags[0];
+        event.node = tags[1];
+        event.prompt = tags[2];
+        event.streaming = streaming;
+        event.outcome = outcome;
+        event.exception = error == null ? null : error.getClass().getName();
+        event.promptChars = request.prompt().getContents().length();
+        event.completionChars = completionChars;
+        event.promptTokens = usage == null || usage.getPromptTokens() == null ? -1 : usage.getPromptTokens();
+        event.completionTokens = usage == null || usage.getCompletionTokens() == null ? -1 : usage.getCompletionTokens();
+        event.commit();
+    }
+
+    private static String text(ChatResponse chatResponse) {
+        if (chatResponse == null || chatResponse.getResult() == null || chatResponse.getResult().getOutput() == null) {
+            return "";
+        }
+        String text = chatResponse.getResult().getOutput().getText();
+        return text == null ? "" : text;
+    }
+
+    private void recordError(String[] tags, Throwable e) {
+        metrics.counter("graph.model.errors", "Model call errors",
+                "graph", tags[0], "node", tags[1], "exception", e.getClass().getSimpleName()).increment();
+    }
+
+    @Override
+    public String getName() {
+        return "ModelCallMetricsAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        /* 排在最外层，统计的耗时包含其它 advisor */
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.woniu.spring_ai_alibaba_graph_dome.metrics;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+
+/**
+ * 记录节点耗时的 NodeAction 装饰器，指标名 graph.node，同时提交 JFR 事件 {@link GraphNodeEvent}。
+ */
+public class TimedNodeAction implements NodeAction {
+
+    private final GraphMetrics metrics;
+
+    private final String graph;
+
+    private final String node;
+
+    private final NodeAction delegate;
+
+    /* 节点的 graph / node 是固定的，两个 outcome 的 Timer 在包装时就取好 */
+    private final Timer success;
+
+    private final Timer error;
+
+    TimedNodeAction(GraphMetrics metrics, String graph, String node, NodeAction delegate) {
+        this.metrics = metrics;
+        this.graph = graph;
+        this.node = node;
+        this.delegate = delegate;
+        this.success = metrics.timer("graph.node", "Graph node latency", "graph", graph, "node", node, "outcome", "success");
+        this.error = metrics.timer("graph.node", "Graph node latency", "graph", graph, "node", node, "outcome", "error");
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) throws Exception {
+        GraphNodeEvent event = new GraphNodeEvent();
+        event.begin();
+        Timer.Sample sample = metrics.start();
+        String[] previous = GraphMetrics.enter(graph, node);
+        String outcome = "error";
+        Map<String, Object> result = null;
+        try {
+            result = delegate.apply(state);
+            outcome = "success";
+            return result;
+        } finally {
+            GraphMetrics.exit(previous);
+            sample.stop("success".equals(outcome) ? success : error);
+            event.end();
+            /* 只有录制开着并且达到阈值时才计算载荷大小 */
+            if (event.shouldCommit()) {
+                event.graph = graph;
+                event.node = node;
+                event.runId = GraphMetrics.runId(state);
+                event.outcome = outcome;
+                event.inputChars = GraphMetrics.chars(state.value("input").orElse(null));
+                if (result != null) {
+                    event.outputKeys = result.size();
+                    for (Object value : result.values()) {
+                        event.outputChars += GraphMetrics.chars(value);
+                    }
+                }
+                event.commit();
+            }
+        }
+    }
+
+}
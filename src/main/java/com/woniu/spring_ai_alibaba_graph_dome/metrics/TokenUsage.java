@@ -0,0 +1,70 @@
+package com.woniu.spring_ai_alibaba_graph_dome.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 图 / 节点 / 提示词模式 汇总的模型调用量：次数、输入输出 token、耗时。
+ * <p>
+ * Prometheus 里的 graph.model.tokens 也有同样的数据，这里多存一份是为了不接监控也能直接对比
+ * 同一个节点在 standard 和 compact 两种提示词下的平均 token 数（GET /graph/tokens）。
+ */
+public class TokenUsage {
+
+    private final Map<Key, Totals> totals = new ConcurrentHashMap<>();
+
+    void record(String graph, String node, String prompt, Integer promptTokens, Integer completionTokens,
+                long nanos) {
+        Totals total = totals.computeIfAbsent(new Key(graph, node, prompt), key -> new Totals());
+        total.calls.increment();
+        total.nanos.add(nanos);
+        if (promptTokens != null) {
+            total.promptTokens.add(promptTokens);
+        }
+        if (completionTokens != null) {
+            total.completionTokens.add(completionTokens);
+        }
+    }
+
+    public List<Row> rows() {
+        List<Row> rows = new ArrayList<>();
+        totals.forEach((key, total) -> {
+            long calls = total.calls.sum();
+            rows.add(new Row(key.graph(), key.node(), key.prompt(), calls,
+                    total.promptTokens.sum(), total.completionTokens.sum(),
+                    average(total.promptTokens.sum(), calls), average(total.completionTokens.sum(), calls),
+                    average(total.nanos.sum(), calls) / 1_000_000));
+        });
+        rows.sort(Comparator.comparing(Row::graph).thenComparing(Row::node).thenComparing(Row::prompt));
+        return rows;
+    }
+
+    private static double average(long sum, long count) {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    private record Key(String graph, String node, String prompt) {
+    }
+
+    private static final class Totals {
+        final LongAdder calls = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+    }
+
+    /**
+     * @param prompt              提示词模式：standard（QuestionClassifierNode 原始提示词）或 compact
+     * @param avgPromptTokens     平均每次输入 token
+     * @param avgCompletionTokens 平均每次输出 token
+     * @param avgLatencyMs        平均模型调用耗时
+     */
+    public record Row(String graph, String node, String prompt, long calls, long promptTokens, long completionTokens,
+                      double avgPromptTokens, double avgCompletionTokens, double avgLatencyMs) {
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.woniu.spring_ai_alibaba_graph_dome.node;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.ModelCallMetricsAdvisor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.ChatOptions;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 低 token 的分类节点，可以替换 QuestionClassifierNode（见 {@link CompactClassifiers}）。
+ * <p>
+ * 提示词只有一句说明和带编号的类别表，要求模型只回答编号，并把输出限制在 max-output-tokens 以内；
+ * 输入先折叠空白，超过 max-input-chars 的部分截掉。编号直接换成类别原文写进 classifier_output，
+ * 也就是调度器里 LabelRouter 注册的标签，不再依赖模型自由发挥的措辞。
+ * 回答里没有合法编号时退回按类别原文匹配，还不行就把原回复交给调度器的默认路由。
+ */
+public class CompactClassifierNode implements NodeAction {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompactClassifierNode.class);
+
+    /* 写进 advisor 参数，token 统计据此区分两种提示词 */
+    public static final String PROMPT_MODE = "compact";
+
+    private static final String CLASSIFIER_OUTPUT_KEY = "classifier_output";
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ChatClient chatClient;
+
+    private final String inputTextKey;
+
+    private final List<String> categories;
+
+    private final int maxInputChars;
+
+    private final ChatOptions options;
+
+    private final String systemPrompt;
+
+    public CompactClassifierNode(ChatClient chatClient, String inputTextKey, List<String> categories,
+                                 String instruction, int maxInputChars, int maxOutputTokens) {
+        this.chatClient = chatClient;
+        this.inputTextKey = inputTextKey;
+        this.categories = List.copyOf(categories);
+        this.maxInputChars = maxInputChars;
+        this.options = ChatOptions.builder().maxTokens(maxOutputTokens).temperature(0.0).build();
+        this.systemPrompt = systemPrompt(instruction, categories);
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) {
+        String input = normalize((String) state.value(inputTextKey).orElse(""), maxInputChars);
+
+        String reply = chatClient.prompt()
+                .system(systemPrompt)
+                .user(input)
+                .options(options)
+                .advisors(advisor -> advisor.param(ModelCallMetricsAdvisor.PROMPT_MODE, PROMPT_MODE))
+                .call()
+                .content();
+
+        return Map.of(CLASSIFIER_OUTPUT_KEY, parse(reply));
+    }
+
+    /**
+     * 编号 -> 类别；没有合法编号时按类别原文匹配（长的优先），都不命中原样返回。
+     */
+    String parse(String reply) {
+        String text = reply == null ? "" : reply.strip();
+        Matcher matcher = NUMBER.matcher(text);
+        if (matcher.find() && matcher.end() - matcher.start() <= 3) {
+            int index = Integer.parseInt(matcher.group());
+            if (index >= 1 && index <= categories.size()) {
+                return categories.get(index - 1);
+            }
+        }
+        String matched = null;
+        for (String category : categories) {
+            if (text.toLowerCase().contains(category.toLowerCase())
+                    && (matched == null || category.length() > matched.length())) {
+                matched = category;
+            }
+        }
+        if (matched != null) {
+            return matched;
+        }
+        logger.warn("Unparseable compact classifier reply: {}", text);
+        return text;
+    }
+
+    /**
+     * 折叠连续空白并截断到 maxChars 个字符（不拆开代理对）。
+     */
+    public static String normalize(String input, int maxChars) {
+        String text = WHITESPACE.matcher(input).replaceAll(" ").strip();
+        if (maxChars <= 0 || text.length() <= maxChars) {
+            return text;
+        }
+        int end = maxChars;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    private static String systemPrompt(String instruction, List<String> categories) {
+        StringBuilder prompt = new StringBuilder("Classify the text. ").append(instruction).append('\n');
+        for (int i = 0; i < categories.size(); i++) {
+            prompt.append(i + 1).append(". ").append(categories.get(i)).append('\n');
+        }
+        return prompt.append("Reply with the category number only.").toString();
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.woniu.spring_ai_alibaba_graph_dome.node;
+
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按图决定分类节点用原来的 QuestionClassifierNode 还是 {@link CompactClassifierNode}。
+ * <p>
+ * graph.compact-classifier.graphs 里列出的图（StateGraph Bean 名）使用精简提示词，其余不变；
+ * 两种模式下各节点的平均 token 数可以在 GET /graph/tokens 对比。
+ */
+@Component
+public class CompactClassifiers {
+
+    private final Set<String> graphs;
+
+    private final int maxInputChars;
+
+    private final int maxOutputTokens;
+
+    public CompactClassifiers(@Value("${graph.compact-classifier.graphs:}") Set<String> graphs,
+                              @Value("${graph.compact-classifier.max-input-chars:500}") int maxInputChars,
+                              @Value("${graph.compact-classifier.max-output-tokens:4}") int maxOutputTokens) {
+        this.graphs = Set.copyOf(graphs);
+        this.maxInputChars = maxInputChars;
+        this.maxOutputTokens = maxOutputTokens;
+    }
+
+    /**
+     * 所有图都用原来的分类节点。
+     */
+    public static CompactClassifiers none() {
+        return new CompactClassifiers(Set.of(), 0, 0);
+    }
+
+    /**
+     * @param standard    原来的分类节点
+     * @param categories  类别，顺序即编号；应当和该节点后面调度器的标签一致
+     * @param instruction 一句话的分类说明
+     */
+    public NodeAction select(String graphName, NodeAction standard, ChatClient chatClient, List<String> categories,
+                             String instruction) {
+        if (!graphs.contains(graphName)) {
+            return standard;
+        }
+        return new CompactClassifierNode(chatClient, "input", categories, instruction, maxInputChars, maxOutputTokens);
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.woniu.spring_ai_alibaba_graph_dome.node;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.prompt.ChatOptions;
+
+import java.util.Map;
+
+/**
+ * 从输入里抽取一段短文本（例如地点），没有时回答 none。
+ * <p>
+ * 结果和分类节点一样写进 classifier_output，这样分类缓存、容错等装饰器可以直接套上；
+ * 在并行分支里使用时由图的配置把它搬到自己的 key 下。
+ */
+public class ExtractionNode implements NodeAction {
+
+    public static final String NONE = "none";
+
+    private static final String CLASSIFIER_OUTPUT_KEY = "classifier_output";
+
+    private final ChatClient chatClient;
+
+    private final String inputTextKey;
+
+    private final int maxInputChars;
+
+    private final ChatOptions options;
+
+    private final String systemPrompt;
+
+    /**
+     * @param instruction 一句话说明要抽取什么
+     */
+    public ExtractionNode(ChatClient chatClient, String inputTextKey, String instruction, int maxInputChars,
+                          int maxOutputTokens) {
+        this.chatClient = chatClient;
+        this.inputTextKey = inputTextKey;
+        this.maxInputChars = maxInputChars;
+        this.options = ChatOptions.builder().maxTokens(maxOutputTokens).temperature(0.0).build();
+        this.systemPrompt = "Extract from the text: " + instruction + "\n"
+                + "Reply with the extracted words only, or " + NONE + " if the text does not mention it.";
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) {
+        String input = CompactClassifierNode.normalize((String) state.value(inputTextKey).orElse(""), maxInputChars);
+
+        String reply = chatClient.prompt()
+                .system(systemPrompt)
+                .user(input)
+                .options(options)
+                .call()
+                .content();
+
+        return Map.of(CLASSIFIER_OUTPUT_KEY, clean(reply));
+    }
+
+    /* 去掉首尾空白、引号和句号；空回复当作 none */
+    static String clean(String reply) {
+        String text = reply == null ? "" : reply.strip();
+        text = text.replaceAll("^[\"'“”「」]+|[\"'“”「」。.]+$", "").strip();
+        return text.isEmpty() ? NONE : text;
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.woniu.spring_ai_alibaba_graph_dome.node;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.LabelRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 合并分类节点：一次模型调用同时给出“评价正负”和“负面问题类别”。
+ * <p>
+ * 结果写入三个 key：
+ * classifier_output：正负标签（"positive feedback" / "negative feedback"），FeedbackQuestionDispatcher 照旧使用；
+ * sentiment：同上，结构化保存；
+ * problem_category：负面问题类别，由 {@link PrecomputedCategoryNode} 在下一步交给 SpecificQuestionDispatcher。
+ * 模型返回无法解析时不写 problem_category，下一步会退回到原来的二级分类节点。
+ */
+public class FusedFeedbackClassifierNode implements NodeAction {
+
+    private static final Logger logger = LoggerFactory.getLogger(FusedFeedbackClassifierNode.class);
+
+    public static final String SENTIMENT_KEY = "sentiment";
+
+    public static final String CATEGORY_KEY = "problem_category";
+
+    private static final String CLASSIFIER_OUTPUT_KEY = "classifier_output";
+
+    private static final String SYSTEM_PROMPT_TEMPLATE = """
+            You are a customer feedback classifier.
+            Step 1: decide the sentiment of the feedback, one of: %s.
+            Step 2: if the sentiment is negative, decide what kind of service or help the customer is trying to get from us, one of: %s. \
+            If the sentiment is positive, use "none".
+            Try to understand the user's feeling when he/she is giving the feedback.
+            Reply with a single JSON object with the string fields "sentiment" and "category", and nothing else.
+            """;
+
+    private final ChatClient chatClient;
+
+    private final String inputTextKey;
+
+    private final List<String> sentiments;
+
+    private final List<String> categories;
+
+    private final String systemPrompt;
+
+    /* JSON 不合法时的兜底，和 FeedbackQuestionDispatcher 的优先级一致：先看 negative / not positive，再看 positive */
+    private final LabelRouter sentimentFallback;
+
+    public FusedFeedbackClassifierNode(ChatClient chatClient, String inputTextKey, List<String> sentiments,
+                                       List<String> categories) {
+        this.chatClient = chatClient;
+        this.inputTextKey = inputTextKey;
+        this.sentiments = sentiments;
+        this.categories = categories;
+        this.systemPrompt = SYSTEM_PROMPT_TEMPLATE.formatted(String.join(", ", sentiments), String.join(", ", categories));
+        String positive = sentiments.get(0);
+        String negative = sentiments.get(sentiments.size() - 1);
+        this.sentimentFallback = LabelRouter.builder()
+                .route(negative, "negative", "not positive")
+                .route(positive, "positive")
+                .otherwise(negative)
+                .build();
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) {
+        String input = (String) state.value(inputTextKey).orElse("");
+
+        String reply = chatClient.prompt()
+                .system(systemPrompt)
+                .user(input)
+                .call()
+                .content();
+
+        return parse(reply);
+    }
+
+    /**
+     * 解析模型回复；JSON 不合法时退化为子串匹配，只保证 sentiment 可用。
+     */
+    Map<String, Object> parse(String reply) {
+        Map<String, Object> updatedState = new HashMap<>();
+        String text = reply == null ? "" : reply;
+
+        String sentiment = null;
+        String category = null;
+        int start = text.indexOf('{');
+        int end = text.lastIndexOf('}');
+        if (start >= 0 && end > start) {
+            try {
+                JsonObject json = JsonParser.parseString(text.substring(start, end + 1)).getAsJsonObject();
+                sentiment = match(json.has("sentiment") ? json.get("sentiment").getAsString() : null, sentiments);
+                category = match(json.has("category") ? json.get("category").getAsString() : null, categories);
+            } catch (RuntimeException e) {
+                logger.warn("Unparseable fused classifier reply: {}", text);
+            }
+        }
+        if (sentiment == null) {
+            sentiment = sentimentFallback.route(text.toLowerCase());
+        }
+
+        updatedState.put(CLASSIFIER_OUTPUT_KEY, sentiment);
+        updatedState.put(SENTIMENT_KEY, sentiment);
+        if (category != null) {
+            updatedState.put(CATEGORY_KEY, category);
+        }
+        return updatedState;
+    }
+
+    private static String match(String value, List<String> labels) {
+        if (value == null) {
+            return null;
+        }
+        for (String label : labels) {
+            if (value.trim().equalsIgnoreCase(label)) {
+                return label;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.woniu.spring_ai_alibaba_graph_dome.node;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+
+import java.util.Map;
+
+/**
+ * 合并分类模式下替代 specific_question_classifier 的节点：
+ * 合并节点已经算出 problem_category 时直接把它放进 classifier_output（不再调用模型），
+ * 否则退回到原来的二级分类节点。
+ */
+public class PrecomputedCategoryNode implements NodeAction {
+
+    private static final String CLASSIFIER_OUTPUT_KEY = "classifier_output";
+
+    private final NodeAction fallback;
+
+    public PrecomputedCategoryNode(NodeAction fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) throws Exception {
+        Object category = state.value(FusedFeedbackClassifierNode.CATEGORY_KEY).orElse(null);
+        if (category instanceof String value && !value.isBlank()) {
+            return Map.of(CLASSIFIER_OUTPUT_KEY, value);
+        }
+        return fallback.apply(state);
+    }
+
+}
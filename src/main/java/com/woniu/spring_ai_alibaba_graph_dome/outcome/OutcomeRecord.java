@@ -0,0 +1,16 @@
+package com.woniu.spring_ai_alibaba_graph_dome.outcome;
+
+/**
+ * 一次工作流的最终结果，由 RecordingNode 产生。
+ *
+ * @param timestamp      记录时间（毫秒）
+ * @param graph          图名
+ * @param runId          客户端传入的 run id，没有为 null
+ * @param input          用户输入
+ * @param classification 最后一个分类节点的输出（classifier_output）
+ * @param solution       写回 state 的 solution
+ * @param detail         分类之外的补充信息（例如推荐地点的类别和位置），没有为 null
+ */
+public record OutcomeRecord(long timestamp, String graph, String runId, String input, String classification,
+                            String solution, String detail) {
+}
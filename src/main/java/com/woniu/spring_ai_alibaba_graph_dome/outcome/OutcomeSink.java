@@ -0,0 +1,264 @@
+package com.woniu.spring_ai_alibaba_graph_dome.outcome;
+
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RecordingNode 结果的异步落盘（write-behind）：节点只把记录放进有界队列就返回，请求线程从不等磁盘。
+ * <p>
+ * 后台单线程批量取出（group commit）：攒够 batch-size 条或等了 flush-interval 就一次写入追加日志（JSON Lines），
+ * 一批只 flush（可选 fsync）一次。队列满时不阻塞请求，直接丢弃这条记录并计数（graph.outcomes.dropped）。
+ * 写文件失败时关闭文件、退避后重新打开再写同一批，写线程不会因此退出；连续失败 MAX_ATTEMPTS 次才放弃这一批
+ * （graph.outcomes.write.errors 记失败次数，graph.outcomes.failed 记放弃的条数）。
+ * 文件超过 max-file-size 时滚动为 outcomes.jsonl.1、.2 ...，最多保留 max-files 个。
+ * 关闭时先停止接收，再把队列里剩下的写完。
+ * <p>
+ * 最近写入的记录在内存里保留 recent-size 条，供 GET /graph/outcomes 查询。
+ */
+@Component
+public class OutcomeSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutcomeSink.class);
+
+    private static final Gson GSON = new Gson();
+
+    /* 同一批连续写失败这么多次就放弃 */
+    static final int MAX_ATTEMPTS = 3;
+
+    private final boolean enabled;
+
+    /* 只有写线程使用 */
+    private final RollingFile file;
+
+    private final BlockingQueue<OutcomeRecord> queue;
+
+    private final int batchSize;
+
+    private final Duration flushInterval;
+
+    private final boolean fsync;
+
+    private final int recentSize;
+
+    /* 只有写线程修改，查询时加锁拷贝 */
+    private final ArrayDeque<OutcomeRecord> recent = new ArrayDeque<>();
+
+    private final Counter written;
+
+    private final Counter dropped;
+
+    private final Counter batches;
+
+    private final Counter writeErrors;
+
+    private final Counter failed;
+
+    private volatile boolean accepting = true;
+
+    private Thread writerThread;
+
+    public OutcomeSink(@Value("${graph.outcomes.enabled:true}") boolean enabled,
+                       @Value("${graph.outcomes.file:./data/outcomes.jsonl}") String file,
+                       @Value("${graph.outcomes.queue-capacity:10000}") int queueCapacity,
+                       @Value("${graph.outcomes.batch-size:256}") int batchSize,
+                       @Value("${graph.outcomes.flush-interval:200ms}") Duration flushInterval,
+                       @Value("${graph.outcomes.fsync:false}") boolean fsync,
+                       @Value("${graph.outcomes.recent-size:1000}") int recentSize,
+                       @Value("${graph.outcomes.max-file-size:64MB}") DataSize maxFileSize,
+                       @Value("${graph.outcomes.max-files:5}") int maxFiles,
+                       MeterRegistry meterRegistry) {
+        this.enabled = enabled && !file.isBlank();
+        this.file = file.isBlank() ? null : new RollingFile(Paths.get(file), maxFileSize.toBytes(), maxFiles);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.fsync = fsync;
+        this.recentSize = recentSize;
+        this.written = Counter.builder("graph.outcomes.written")
+                .description("Outcome records persisted").register(meterRegistry);
+        this.dropped = Counter.builder("graph.outcomes.dropped")
+                .description("Outcome records dropped because the queue was full").register(meterRegistry);
+        this.batches = Counter.builder("graph.outcomes.batches")
+                .description("Group-commit batches written").register(meterRegistry);
+        this.writeErrors = Counter.builder("graph.outcomes.write.errors")
+                .description("Failed attempts to write a batch of outcome records").register(meterRegistry);
+        this.failed = Counter.builder("graph.outcomes.failed")
+                .description("Outcome records given up after repeated write failures").register(meterRegistry);
+        Gauge.builder("graph.outcomes.queue", queue, BlockingQueue::size)
+                .description("Outcome records waiting to be persisted").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        writerThread = new Thread(this::writeLoop, "outcome-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 交给后台写入，不阻塞；队列已满或已关闭时返回 false，这条记录被丢弃。
+     */
+    public boolean submit(OutcomeRecord record) {
+        if (!enabled) {
+            return false;
+        }
+        if (!accepting) {
+            /* 正在关闭 */
+            dropped.increment();
+            return false;
+        }
+        if (queue.offer(record)) {
+            return true;
+        }
+        dropped.increment();
+        /* 只在第一次和之后每 1000 次打一条，避免满队列时刷屏 */
+        if (((long) dropped.count()) % 1000 == 1) {
+            logger.warn("Outcome queue full, dropped {} records so far", (long) dropped.count());
+        }
+        return false;
+    }
+
+    /**
+     * 最近写入的记录，新的在前；graph 为 null 表示不过滤。
+     */
+    public List<OutcomeRecord> recent(String graph, int limit) {
+        List<OutcomeRecord> result = new ArrayList<>();
+        synchronized (recent) {
+            Iterator<OutcomeRecord> iterator = recent.descendingIterator();
+            while (iterator.hasNext() && result.size() < limit) {
+                OutcomeRecord record = iterator.next();
+                if (graph == null || graph.equals(record.graph())) {
+                    result.add(record);
+                }
+            }
+        }
+        return result;
+    }
+
+    public Stats stats() {
+        return new Stats(queue.size(), queue.remainingCapacity(), (long) written.count(), (long) dropped.count(),
+                (long) batches.count(), (long) writeErrors.count(), (long) failed.count());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        accepting = false;
+        if (writerThread == null) {
+            return;
+        }
+        /* 不用 interrupt：FileChannel 在写的过程中被中断会直接关闭。写线程最多再等一个 flush-interval 就会发现并退出 */
+        writerThread.join(TimeUnit.SECONDS.toMillis(10) + flushInterval.toMillis());
+        if (!queue.isEmpty()) {
+            logger.warn("{} outcome records not persisted at shutdown", queue.size());
+        }
+    }
+
+    private void writeLoop() {
+        List<OutcomeRecord> batch = new ArrayList<>(batchSize);
+        int attempts = 0;
+        while (accepting || !queue.isEmpty() || !batch.isEmpty()) {
+            if (batch.isEmpty()) {
+                try {
+                    OutcomeRecord first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                } catch (InterruptedException e) {
+                    /* 不再等待新记录，把剩下的写完后退出 */
+                    accepting = false;
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                if (batch.isEmpty()) {
+                    continue;
+                }
+            }
+            try {
+                write(batch);
+                batch.clear();
+                attempts = 0;
+            } catch (IOException e) {
+                /* 关掉文件，下一轮重新打开（磁盘满、文件被删或被移走之后都能恢复） */
+                file.close();
+                writeErrors.increment();
+                attempts++;
+                if (attempts >= MAX_ATTEMPTS) {
+                    failed.increment(batch.size());
+                    logger.error("Giving up on {} outcome records after {} failed writes to {}",
+                            batch.size(), attempts, file.file(), e);
+                    batch.clear();
+                    attempts = 0;
+                } else {
+                    logger.warn("Failed to write {} outcome records to {}, reopening and retrying",
+                            batch.size(), file.file(), e);
+                    backOff(attempts);
+                }
+            }
+        }
+        file.close();
+    }
+
+    private void backOff(int attempts) {
+        try {
+            Thread.sleep(flushInterval.toMillis() * attempts);
+        } catch (InterruptedException e) {
+            accepting = false;
+        }
+    }
+
+    private void write(List<OutcomeRecord> batch) throws IOException {
+        List<String> lines = new ArrayList<>(batch.size());
+        for (OutcomeRecord record : batch) {
+            lines.add(GSON.toJson(record));
+        }
+        /* 一批只写一次、flush / fsync 一次 */
+        file.append(lines, fsync);
+        written.increment(batch.size());
+        batches.increment();
+        synchronized (recent) {
+            for (OutcomeRecord record : batch) {
+                recent.addLast(record);
+                if (recent.size() > recentSize) {
+                    recent.removeFirst();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param queued      等待写入的条数
+     * @param remaining   队列剩余容量
+     * @param written     已写入条数
+     * @param dropped     队列满（或正在关闭）被丢弃的条数
+     * @param batches     写入批次数
+     * @param writeErrors 写文件失败的次数（之后会重新打开重试）
+     * @param failed      连续写失败后放弃的条数
+     */
+    public record Stats(int queued, int remaining, long written, long dropped, long batches, long writeErrors,
+                        long failed) {
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.woniu.spring_ai_alibaba_graph_dome.outcome;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 按大小滚动的追加写文件：超过 maxBytes 后 file 改名为 file.1（原来的 .1 变成 .2，依此类推），
+ * 最多保留 maxFiles 个旧文件，更早的删除；maxBytes &lt;= 0 表示不滚动。
+ * <p>
+ * 不是线程安全的，只在一个写线程上使用。写入失败时调用方 {@link #close()} 后重试即可，下一次写入会重新打开文件。
+ */
+public class RollingFile implements Closeable {
+
+    private final Path file;
+
+    private final long maxBytes;
+
+    private final int maxFiles;
+
+    private FileChannel channel;
+
+    private long size;
+
+    public RollingFile(Path file, long maxBytes, int maxFiles) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * 追加若干行（每行末尾补换行），一次写入；fsync 为 true 时写完强制落盘。
+     */
+    public void append(List<String> lines, boolean fsync) throws IOException {
+        if (channel == null) {
+            open();
+        }
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        if (maxBytes > 0 && size >= maxBytes) {
+            roll();
+        }
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            /* 关闭失败没有可以补救的，下次写入重新打开 */
+        }
+        channel = null;
+    }
+
+    private void open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    private void roll() throws IOException {
+        close();
+        if (maxFiles <= 0) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Files.deleteIfExists(rolled(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            if (Files.exists(rolled(i))) {
+                Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rolled(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.woniu.spring_ai_alibaba_graph_dome.resilience;
+
+import java.time.Clock;
+
+/**
+ * 按调用次数滑动窗口统计的熔断器，一个分类节点一个。
+ * <p>
+ * CLOSED：正常放行，最近 window-size 次调用里失败（超时或异常）占比达到 failure-rate（且至少有 min-calls 次）就打开；
+ * OPEN：open-duration 内直接拒绝；
+ * HALF_OPEN：时间到了只放一个探测请求，成功则关闭并清空窗口，失败则重新打开。
+ * <p>
+ * 每次状态切换都换一个代号（generation），放行时把当时的代号作为许可返回。结果回来时代号已经变了的调用
+ * （例如打开之前放行、打开之后才超时的慢调用）不再计入：否则它们会在 HALF_OPEN 时冒充探测结果把熔断关上或重新打开。
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int minCalls;
+
+    private final double failureRate;
+
+    private final long openMillis;
+
+    private final Clock clock;
+
+    /* 环形窗口，true 表示失败 */
+    private final boolean[] outcomes;
+
+    private int next;
+
+    private int calls;
+
+    private int failures;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private boolean probeInFlight;
+
+    /* 每次状态切换加一 */
+    private long generation;
+
+    public CircuitBreaker(int windowSize, int minCalls, double failureRate, long openMillis, Clock clock) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        this.outcomes = new boolean[windowSize];
+        this.minCalls = Math.max(1, Math.min(minCalls, windowSize));
+        this.failureRate = failureRate;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * 是否放行这次调用；放行时返回许可（&gt;= 0），之后必须拿着它调用 onSuccess / onFailure / release 之一；拒绝时返回 -1。
+     */
+    public synchronized long tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return generation;
+            case OPEN:
+                if (clock.millis() - openedAt < openMillis) {
+                    return -1;
+                }
+                transition(State.HALF_OPEN);
+                probeInFlight = true;
+                return generation;
+            default:
+                if (probeInFlight) {
+                    return -1;
+                }
+                probeInFlight = true;
+                return generation;
+        }
+    }
+
+    public synchronized void onSuccess(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            close();
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && calls >= minCalls && failures >= failureRate * calls) {
+            open();
+        }
+    }
+
+    /**
+     * 放行了但没有结果（例如线程被中断），不计入窗口。
+     */
+    public synchronized void release(long permit) {
+        if (permit == generation) {
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (calls == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        transition(State.OPEN);
+        openedAt = clock.millis();
+        probeInFlight = false;
+    }
+
+    private void close() {
+        transition(State.CLOSED);
+        probeInFlight = false;
+        next = 0;
+        calls = 0;
+        failures = 0;
+    }
+
+    private void transition(State to) {
+        state = to;
+        generation++;
+    }
+
+}
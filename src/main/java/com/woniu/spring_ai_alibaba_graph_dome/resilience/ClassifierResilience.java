@@ -0,0 +1,136 @@
+package com.woniu.spring_ai_alibaba_graph_dome.resilience;
+
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 分类节点调用大模型时的容错层：截止时间、对冲请求、熔断。
+ * <p>
+ * 用法和分类缓存一样，在配置类里把 QuestionClassifierNode 包一层，并给出该节点的兜底类别：
+ * <pre>
+ * classifierResilience.wrap("CustomerGraph", "Level1Node", Level1Node, "Other")
+ * </pre>
+ * 模型不可用（熔断打开）、调用超过截止时间或抛异常时，节点输出兜底类别，调度器照常把流程送到 recorder，
+ * 用户拿到的是兜底结果而不是 500。截止时间取 graph.resilience.call-timeout 和
+ * state 里 {@link #DEADLINE_KEY}（异步接口按请求超时写入）中较早的一个。
+ */
+@Component
+public class ClassifierResilience {
+
+    /* 请求的截止时间（epoch 毫秒），由调用方写入 state */
+    public static final String DEADLINE_KEY = "deadline_ms";
+
+    private final Policy policy;
+
+    private final Executor executor;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Clock clock;
+
+    public ClassifierResilience(@Value("${graph.resilience.enabled:true}") boolean enabled,
+                                @Value("${graph.resilience.call-timeout:20s}") Duration callTimeout,
+                                @Value("${graph.resilience.hedge.enabled:true}") boolean hedgeEnabled,
+                                @Value("${graph.resilience.hedge.percentile:0.95}") double hedgePercentile,
+                                @Value("${graph.resilience.hedge.min-delay:300ms}") Duration hedgeMinDelay,
+                                @Value("${graph.resilience.hedge.min-samples:20}") int hedgeMinSamples,
+                                @Value("${graph.resilience.hedge.max-ratio:0.1}") double hedgeMaxRatio,
+                                @Value("${graph.resilience.breaker.window-size:20}") int breakerWindowSize,
+                                @Value("${graph.resilience.breaker.min-calls:10}") int breakerMinCalls,
+                                @Value("${graph.resilience.breaker.failure-rate:0.5}") double breakerFailureRate,
+                                @Value("${graph.resilience.breaker.open-duration:30s}") Duration breakerOpenDuration,
+                                ExecutorService graphTaskExecutor,
+                                MeterRegistry meterRegistry) {
+        this(new Policy(enabled, callTimeout, hedgeEnabled, hedgePercentile, hedgeMinDelay, hedgeMinSamples,
+                        hedgeMaxRatio, breakerWindowSize, breakerMinCalls, breakerFailureRate, breakerOpenDuration),
+                graphTaskExecutor, meterRegistry, Clock.systemUTC());
+    }
+
+    ClassifierResilience(Policy policy, Executor executor, MeterRegistry meterRegistry, Clock clock) {
+        this.policy = policy;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+    }
+
+    /**
+     * 关闭状态的实例，wrap 原样返回节点（基准测试等不需要容错的场景）。
+     */
+    public static ClassifierResilience disabled() {
+        return new ClassifierResilience(new Policy(false, Duration.ZERO, false, 0, Duration.ZERO, 0, 0, 1, 1, 1,
+                Duration.ZERO), Runnable::run, new SimpleMeterRegistry(), Clock.systemUTC());
+    }
+
+    /**
+     * @param fallbackCategory 模型不可用时写入 classifier_output 的类别，应当能被该节点后面的调度器路由到 recorder
+     */
+    public NodeAction wrap(String graphName, String nodeId, NodeAction classifier, String fallbackCategory) {
+        if (!policy.enabled()) {
+            return classifier;
+        }
+        CircuitBreaker breaker = new CircuitBreaker(policy.breakerWindowSize(), policy.breakerMinCalls(),
+                policy.breakerFailureRate(), policy.breakerOpenDuration().toMillis(), clock);
+        Gauge.builder("graph.resilience.breaker.open", breaker, b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 when the classifier circuit breaker is open or half-open")
+                .tag("graph", graphName)
+                .tag("node", nodeId)
+                .register(meterRegistry);
+        return new ResilientClassifierNode(this, graphName, nodeId, classifier, fallbackCategory, breaker);
+    }
+
+    Policy policy() {
+        return policy;
+    }
+
+    Executor executor() {
+        return executor;
+    }
+
+    Clock clock() {
+        return clock;
+    }
+
+    Counter hedges(String graphName, String nodeId) {
+        return Counter.builder("graph.resilience.hedges")
+                .description("Duplicate classifier calls sent after the hedge delay")
+                .tag("graph", graphName)
+                .tag("node", nodeId)
+                .register(meterRegistry);
+    }
+
+    Counter fallbacks(String graphName, String nodeId, String reason) {
+        return Counter.builder("graph.resilience.fallbacks")
+                .description("Classifier calls answered with the fallback category")
+                .tag("graph", graphName)
+                .tag("node", nodeId)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param callTimeout         单个分类节点最多等多久（state 里的截止时间更早时以它为准）
+     * @param hedgePercentile     主请求超过最近耗时的这个分位数还没返回时，再发一个相同的请求，谁先回来用谁
+     * @param hedgeMinDelay       对冲延迟的下限
+     * @param hedgeMinSamples     耗时样本不足时不对冲
+     * @param hedgeMaxRatio       对冲请求最多占调用次数的比例，模型整体变慢时不会把流量翻倍
+     * @param breakerWindowSize   熔断统计窗口（最近多少次调用）
+     * @param breakerMinCalls     窗口里至少多少次调用才判断失败率
+     * @param breakerFailureRate  失败率达到多少打开熔断
+     * @param breakerOpenDuration 打开多久后放一个探测请求
+     */
+    public record Policy(boolean enabled, Duration callTimeout, boolean hedgeEnabled, double hedgePercentile,
+                         Duration hedgeMinDelay, int hedgeMinSamples, double hedgeMaxRatio, int breakerWindowSize,
+                         int breakerMinCalls, double breakerFailureRate, Duration breakerOpenDuration) {
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.woniu.spring_ai_alibaba_graph_dome.resilience;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 熔断 / 超时时分类节点返回的兜底输出。
+ * <p>
+ * 写进 state 的内容和普通分类结果一样（只有 classifier_output），调度器照常路由；
+ * 单独一个类型只是为了让外层的分类缓存和 checkpoint 认出它，不把兜底结果当成真实分类保存下来。
+ */
+public final class FallbackOutput extends HashMap<String, Object> {
+
+    FallbackOutput(Map<String, Object> output) {
+        super(output);
+    }
+
+    public static boolean isFallback(Map<String, Object> output) {
+        return output instanceof FallbackOutput;
+    }
+
+}
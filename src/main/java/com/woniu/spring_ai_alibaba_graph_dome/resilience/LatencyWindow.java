@@ -0,0 +1,45 @@
+package com.woniu.spring_ai_alibaba_graph_dome.resilience;
+
+import java.util.Arrays;
+
+/**
+ * 最近 N 次成功调用的耗时，用来算对冲（hedge）的触发延迟。
+ * 模型调用本身是百毫秒到秒级，每次取分位数时拷贝排序几百个 long 的开销可以忽略。
+ */
+final class LatencyWindow {
+
+    private final long[] samples;
+
+    private int next;
+
+    private int size;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+    }
+
+    /**
+     * @return 第 percentile（0~1）分位的耗时；样本少于 minSamples 时返回 -1
+     */
+    long percentile(double percentile, int minSamples) {
+        long[] sorted;
+        synchronized (this) {
+            if (size == 0 || size < minSamples) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+}
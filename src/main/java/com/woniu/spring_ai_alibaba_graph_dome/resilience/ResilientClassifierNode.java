@@ -0,0 +1,200 @@
+package com.woniu.spring_ai_alibaba_graph_dome.resilience;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.woniu.spring_ai_alibaba_graph_dome.admission.AdmissionRejectedException;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分类节点的容错装饰器（见 {@link ClassifierResilience}）。
+ * <p>
+ * 模型调用放到 graphTaskExecutor 上执行，当前线程最多等到截止时间；
+ * 主请求超过对冲延迟还没回来就再发一次，两个请求谁先成功用谁，落后的那个跑完只记录耗时。
+ * 超时的调用不会被中断（ChatClient 的 HTTP 读超时最终会结束它），只是结果不再被使用。
+ */
+public class ResilientClassifierNode implements NodeAction {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientClassifierNode.class);
+
+    private static final String OUTPUT_KEY = "classifier_output";
+
+    private final ClassifierResilience resilience;
+
+    private final String graphName;
+
+    private final String nodeId;
+
+    private final NodeAction delegate;
+
+    private final String fallbackCategory;
+
+    private final CircuitBreaker breaker;
+
+    private final LatencyWindow latencies = new LatencyWindow(256);
+
+    private final AtomicLong calls = new AtomicLong();
+
+    private final AtomicLong hedged = new AtomicLong();
+
+    private final Counter hedges;
+
+    /* 兜底次数按原因分开，构造时注册好，兜底路径上不再查找 meter */
+    private final Counter deadlineFallbacks;
+
+    private final Counter openFallbacks;
+
+    private final Counter timeoutFallbacks;
+
+    private final Counter errorFallbacks;
+
+    ResilientClassifierNode(ClassifierResilience resilience, String graphName, String nodeId, NodeAction delegate,
+                            String fallbackCategory, CircuitBreaker breaker) {
+        this.resilience = resilience;
+        this.graphName = graphName;
+        this.nodeId = nodeId;
+        this.delegate = delegate;
+        this.fallbackCategory = fallbackCategory;
+        this.breaker = breaker;
+        this.hedges = resilience.hedges(graphName, nodeId);
+        this.deadlineFallbacks = resilience.fallbacks(graphName, nodeId, "deadline");
+        this.openFallbacks = resilience.fallbacks(graphName, nodeId, "open");
+        this.timeoutFallbacks = resilience.fallbacks(graphName, nodeId, "timeout");
+        this.errorFallbacks = resilience.fallbacks(graphName, nodeId, "error");
+    }
+
+    @Override
+    public Map<String, Object> apply(OverAllState state) throws Exception {
+        long now = resilience.clock().millis();
+        long deadline = now + resilience.policy().callTimeout().toMillis();
+        if (state.value(ClassifierResilience.DEADLINE_KEY).orElse(null) instanceof Number requested) {
+            deadline = Math.min(deadline, requested.longValue());
+        }
+        if (deadline <= now) {
+            /* 调用方已经不等了，不再浪费一次模型调用 */
+            return fallback(deadlineFallbacks);
+        }
+        long permit = breaker.tryAcquire();
+        if (permit < 0) {
+            return fallback(openFallbacks);
+        }
+
+        calls.incrementAndGet();
+        CompletableFuture<Map<String, Object>> primary = attempt(state);
+        try {
+            Map<String, Object> result;
+            long hedgeDelay = hedgeDelay();
+            if (hedgeDelay > 0 && now + hedgeDelay < deadline) {
+                try {
+                    result = primary.get(hedgeDelay, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException slow) {
+                    CompletableFuture<Map<String, Object>> winner = primary;
+                    if (hedgeAllowed()) {
+                        hedges.increment();
+                        winner = firstSuccess(primary, attempt(state));
+                    }
+                    result = winner.get(deadline - resilience.clock().millis(), TimeUnit.MILLISECONDS);
+                }
+            } else {
+                result = primary.get(deadline - now, TimeUnit.MILLISECONDS);
+            }
+            breaker.onSuccess(permit);
+            return result;
+        } catch (TimeoutException e) {
+            breaker.onFailure(permit);
+            logger.warn("Classifier {}/{} did not answer before the deadline, using fallback {}", graphName, nodeId,
+                    fallbackCategory);
+            return fallback(timeoutFallbacks);
+        } catch (ExecutionException e) {
+            AdmissionRejectedException rejected = AdmissionRejectedException.find(e);
+            if (rejected != null) {
+                /* 本地排队满了，不是模型的问题：不计入熔断，也不兜底，让接口返回 429 */
+                breaker.release(permit);
+                throw rejected;
+            }
+            breaker.onFailure(permit);
+            logger.warn("Classifier {}/{} failed, using fallback {}", graphName, nodeId, fallbackCategory, e.getCause());
+            return fallback(errorFallbacks);
+        } catch (InterruptedException e) {
+            breaker.release(permit);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Map<String, Object>> attempt(OverAllState state) {
+        long start = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                /* 换了线程，把当前节点带过去，模型调用指标和准入分道才认得出是哪个图 */
+                return GraphMetrics.callAs(graphName, nodeId, () -> delegate.apply(state));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, resilience.executor()).whenComplete((result, error) -> {
+            if (error == null) {
+                latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+    }
+
+    /**
+     * 对冲延迟：最近耗时的分位数，不低于 min-delay；关闭或样本不足时返回 -1（不对冲）。
+     */
+    private long hedgeDelay() {
+        ClassifierResilience.Policy policy = resilience.policy();
+        if (!policy.hedgeEnabled()) {
+            return -1;
+        }
+        long percentile = latencies.percentile(policy.hedgePercentile(), policy.hedgeMinSamples());
+        if (percentile < 0) {
+            return -1;
+        }
+        return Math.max(percentile, policy.hedgeMinDelay().toMillis());
+    }
+
+    private boolean hedgeAllowed() {
+        /* +1 让调用量很少时也能对冲一次 */
+        if (hedged.get() >= resilience.policy().hedgeMaxRatio() * calls.get() + 1) {
+            return false;
+        }
+        hedged.incrementAndGet();
+        return true;
+    }
+
+    private Map<String, Object> fallback(Counter reason) {
+        reason.increment();
+        return new FallbackOutput(Map.of(OUTPUT_KEY, fallbackCategory));
+    }
+
+    /**
+     * 两个请求中先成功的那个；都失败时以后失败的异常结束。
+     */
+    private static <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> future : List.of(first, second)) {
+            future.whenComplete((result, error) -> {
+                if (error == null) {
+                    winner.complete(result);
+                } else if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        return winner;
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.woniu.spring_ai_alibaba_graph_dome.service;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.GraphRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 控制器的异步调用：图在 graphTaskExecutor 上执行，Servlet 线程立即归还，结果通过 CompletableFuture 回写。
+ * <p>
+ * 每个请求都有超时（默认 graph.async.timeout，可用 timeoutMs 参数调小或调大，不超过 graph.async.max-timeout）：
+ * 超时返回 504，但不会中断已经在跑的图，它的结果照样进入分类缓存 / checkpoint，带同一个 runId 重试可以直接用上。
+ * 截止时间同时写进 state（见 ClassifierResilience）：过了截止时间才开始的分类节点直接输出兜底类别，不再调用模型。
+ * 图没有产出 solution 时返回 204，而不是抛 NoSuchElementException。
+ * <p>
+ * graphTaskExecutor 在平台线程模式下是不限大小的 cached pool，而超时的图还会继续占着线程跑完，
+ * 所以同时在执行的图最多 graph.async.max-in-flight 个（合并到别人结果上的请求不占名额），
+ * 超出时直接返回 503 + Retry-After，不再开新线程。SSE 推送（GraphStreamService）通过 {@link #submit} 占用同一批名额。
+ */
+@Service
+public class AsyncGraphInvoker {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncGraphInvoker.class);
+
+    private final GraphRegistry graphRegistry;
+
+    private final GraphInvocationCoalescer graphInvocationCoalescer;
+
+    private final ExecutorService executor;
+
+    private final Duration defaultTimeout;
+
+    private final Duration maxTimeout;
+
+    /* 正在执行的图（含已经超时、还没跑完的） */
+    private final Semaphore inFlight;
+
+    private final Executor boundedExecutor = this::execute;
+
+    public AsyncGraphInvoker(GraphRegistry graphRegistry, GraphInvocationCoalescer graphInvocationCoalescer,
+                             ExecutorService graphTaskExecutor,
+                             @Value("${graph.async.timeout:60s}") Duration defaultTimeout,
+                             @Value("${graph.async.max-timeout:5m}") Duration maxTimeout,
+                             @Value("${graph.async.max-in-flight:256}") int maxInFlight) {
+        this.graphRegistry = graphRegistry;
+        this.graphInvocationCoalescer = graphInvocationCoalescer;
+        this.executor = graphTaskExecutor;
+        this.defaultTimeout = defaultTimeout;
+        this.maxTimeout = maxTimeout;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * 异步执行图并取出 solution。
+     *
+     * @param timeoutMs 本次请求的超时，null 用默认值
+     * @param fallback  没有 solution 时的响应体；null 则返回 204
+     */
+    public CompletableFuture<ResponseEntity<String>> solution(String graph, String query, String runId,
+                                                              Long timeoutMs, String fallback) {
+        Duration timeout = timeout(timeoutMs);
+        CompletableFuture<Optional<OverAllState>> invocation;
+        try {
+            invocation = graphInvocationCoalescer.invokeAsync(graph, graphRegistry.get(graph), query, runId,
+                    System.currentTimeMillis() + timeout.toMillis(), boundedExecutor);
+        } catch (RejectedExecutionException e) {
+            invocation = CompletableFuture.failedFuture(e);
+        }
+        return invocation
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((result, error) -> {
+                    if (error == null) {
+                        return toResponse(result, fallback);
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    if (cause instanceof TimeoutException) {
+                        logger.warn("Graph {} did not finish within {} ms", graph, timeout.toMillis());
+                        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                                .body("Graph " + graph + " did not finish within " + timeout.toMillis() + " ms");
+                    }
+                    if (cause instanceof RejectedExecutionException) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header(HttpHeaders.RETRY_AFTER, "1")
+                                .body("Too many graph invocations in flight");
+                    }
+                    throw new CompletionException(cause);
+                });
+    }
+
+    /**
+     * state 里的 solution 转成响应：有值 200，没有时返回 fallback，fallback 也为 null 则 204。
+     */
+    public static ResponseEntity<String> toResponse(Optional<OverAllState> result, String fallback) {
+        Optional<String> solution = result.flatMap(state -> state.value("solution")).map(Object::toString);
+        if (solution.isPresent()) {
+            return ResponseEntity.ok(solution.get());
+        }
+        return fallback == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(fallback);
+    }
+
+    /* 剩余名额 */
+    int available() {
+        return inFlight.availablePermits();
+    }
+
+    /**
+     * 占一个名额再交给 graphTaskExecutor，图跑完（不管调用方是否已经超时）才归还。
+     */
+    private void execute(Runnable task) {
+        if (!inFlight.tryAcquire()) {
+            throw new RejectedExecutionException("Too many graph invocations in flight");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 和 {@link #solution} 共用名额，在 graphTaskExecutor 上执行 task，返回的 Future 可以中断它。
+     * task 跑完时归还名额；被取消时在 done() 里立即归还（还没开始的 task 不会再执行，正在跑的已被中断），两处只生效一次。
+     *
+     * @throws RejectedExecutionException 名额已满
+     */
+    public Future<?> submit(Runnable task) {
+        if (!inFlight.tryAcquire()) {
+            throw new RejectedExecutionException("Too many graph invocations in flight");
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                inFlight.release();
+            }
+        };
+        FutureTask<Void> future = new FutureTask<>(() -> {
+            try {
+                task.run();
+            } finally {
+                release.run();
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    release.run();
+                }
+            }
+        };
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            release.run();
+            throw e;
+        }
+        return future;
+    }
+
+    private Duration timeout(Long timeoutMs) {
+        if (timeoutMs == null || timeoutMs <= 0) {
+            return defaultTimeout;
+        }
+        Duration requested = Duration.ofMillis(timeoutMs);
+        return requested.compareTo(maxTimeout) > 0 ? maxTimeout : requested;
+    }
+
+}
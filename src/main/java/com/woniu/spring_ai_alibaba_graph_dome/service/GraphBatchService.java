@@ -0,0 +1,187 @@
+package com.woniu.spring_ai_alibaba_graph_dome.service;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.GraphRegistry;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * 批量分类：把一批输入逐条跑过已编译的工作流，同一时刻最多 concurrency 条在执行。
+ * <p>
+ * 每条结果单独捕获异常（一次模型调用失败不影响整批），结果通过 sink 逐条交出：
+ * ordered = true 时按输入顺序输出，否则谁先完成先输出。最后输出一条汇总。
+ * <p>
+ * sink 抛异常（客户端断开，写响应失败）或线程被中断时，已提交还没输出的条目会被取消（正在执行的会被中断），
+ * 不再为没人接收的结果调用模型。
+ */
+@Service
+public class GraphBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphBatchService.class);
+
+    private final GraphRegistry graphRegistry;
+
+    private final int maxConcurrency;
+
+    private final ExecutorService executor;
+
+    private final GraphMetrics graphMetrics;
+
+    public GraphBatchService(GraphRegistry graphRegistry,
+                             @Value("${graph.batch.max-concurrency:16}") int maxConcurrency,
+                             ExecutorService graphTaskExecutor,
+                             GraphMetrics graphMetrics) {
+        this.graphRegistry = graphRegistry;
+        this.maxConcurrency = maxConcurrency;
+        this.executor = graphTaskExecutor;
+        this.graphMetrics = graphMetrics;
+    }
+
+    /**
+     * @param concurrency 期望并发数，超过 graph.batch.max-concurrency 时按上限处理
+     */
+    public BatchSummary run(String graph, List<String> inputs, int concurrency, boolean ordered,
+                            Consumer<BatchItemResult> sink) throws InterruptedException {
+        CompiledGraph compiledGraph = graphRegistry.get(graph);
+        int window = Math.max(1, Math.min(concurrency, maxConcurrency));
+
+        long start = System.nanoTime();
+        int[] failed = new int[1];
+        Consumer<BatchItemResult> counting = result -> {
+            if (result.error() != null) {
+                failed[0]++;
+            }
+            sink.accept(result);
+        };
+
+        if (ordered) {
+            runOrdered(graph, compiledGraph, inputs, window, counting);
+        } else {
+            runUnordered(graph, compiledGraph, inputs, window, counting);
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        double throughput = elapsedMs == 0 ? inputs.size() : inputs.size() * 1000.0 / elapsedMs;
+        BatchSummary summary = new BatchSummary(graph, inputs.size(), inputs.size() - failed[0], failed[0],
+                window, elapsedMs, throughput);
+        logger.info("Batch finished: {}", summary);
+        return summary;
+    }
+
+    /* 滑动窗口：窗口满了就等队头完成并输出，既限制了并发，也保证了顺序 */
+    private void runOrdered(String graph, CompiledGraph compiledGraph, List<String> inputs, int window,
+                            Consumer<BatchItemResult> sink) throws InterruptedException {
+        Deque<Future<BatchItemResult>> pending = new ArrayDeque<>(window);
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                if (pending.size() >= window) {
+                    sink.accept(result(pending.poll()));
+                }
+                int index = i;
+                String input = inputs.get(i);
+                pending.add(executor.submit(() -> invoke(graph, compiledGraph, index, input)));
+            }
+            while (!pending.isEmpty()) {
+                sink.accept(result(pending.poll()));
+            }
+        } finally {
+            cancel(pending);
+        }
+    }
+
+    private void runUnordered(String graph, CompiledGraph compiledGraph, List<String> inputs, int window,
+                              Consumer<BatchItemResult> sink) throws InterruptedException {
+        CompletionService<BatchItemResult> completionService = new ExecutorCompletionService<>(executor);
+        /* 只留还没输出的，输出过的结果不再被引用，内存不随批大小增长 */
+        Set<Future<BatchItemResult>> inFlight = new HashSet<>(window * 2);
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                if (inFlight.size() >= window) {
+                    sink.accept(result(take(completionService, inFlight)));
+                }
+                int index = i;
+                String input = inputs.get(i);
+                inFlight.add(completionService.submit(() -> invoke(graph, compiledGraph, index, input)));
+            }
+            while (!inFlight.isEmpty()) {
+                sink.accept(result(take(completionService, inFlight)));
+            }
+        } finally {
+            cancel(inFlight);
+        }
+    }
+
+    /* take() 返回的就是 submit() 返回的那个 Future */
+    private static Future<BatchItemResult> take(CompletionService<BatchItemResult> completionService,
+                                                Set<Future<BatchItemResult>> inFlight) throws InterruptedException {
+        Future<BatchItemResult> done = completionService.take();
+        inFlight.remove(done);
+        return done;
+    }
+
+    private static BatchItemResult result(Future<BatchItemResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            /* invoke 自己兜住了异常，走到这里说明是框架层面的问题 */
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /* 正常结束时这里的 future 都已完成，cancel 不起作用；提前退出时取消剩下的 */
+    private static void cancel(Collection<Future<BatchItemResult>> futures) {
+        int cancelled = 0;
+        for (Future<BatchItemResult> future : futures) {
+            if (future.cancel(true)) {
+                cancelled++;
+            }
+        }
+        if (cancelled > 0) {
+            logger.info("Batch aborted, cancelled {} outstanding items", cancelled);
+        }
+    }
+
+    private BatchItemResult invoke(String graph, CompiledGraph compiledGraph, int index, String input) {
+        long start = System.nanoTime();
+        try {
+            String solution = graphMetrics.recordRun(graph, () -> compiledGraph.invoke(Map.of("input", input)))
+                    .flatMap(state -> state.value("solution"))
+                    .map(Object::toString)
+                    .orElse(null);
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            if (solution == null) {
+                return new BatchItemResult(index, input, null, "no solution", durationMs);
+            }
+            return new BatchItemResult(index, input, solution, null, durationMs);
+        } catch (RuntimeException e) {
+            logger.warn("Batch item {} failed", index, e);
+            return new BatchItemResult(index, input, null, String.valueOf(e.getMessage()),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    public record BatchItemResult(int index, String input, String solution, String error, long durationMs) {
+    }
+
+    public record BatchSummary(String graph, int total, int succeeded, int failed, int concurrency,
+                               long elapsedMs, double itemsPerSecond) {
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.woniu.spring_ai_alibaba_graph_dome.service;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.woniu.spring_ai_alibaba_graph_dome.cache.ClassificationCache;
+import com.woniu.spring_ai_alibaba_graph_dome.checkpoint.NodeCheckpointStore;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import com.woniu.spring_ai_alibaba_graph_dome.resilience.ClassifierResilience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 相同请求合并（single-flight）：同一个图、归一化后相同的输入，同一时刻只真正执行一次 invoke，
+ * 其余并发请求等待这一次的结果。
+ * <p>
+ * 和分类缓存不同，这里不保存任何结果，执行结束立即从表中移除；它保护的是突发流量下缓存还没热起来的那一段。
+ * 等待最多 graph.coalescing.max-wait，超时的请求自己再执行一次。
+ * <p>
+ * 异步版本 {@link #invokeAsync} 不占用等待线程：跟随者直接拿到领头请求的 future（的副本）。
+ * <p>
+ * 归一化后为空的输入（只有表情、标点或空白）不合并，各自执行。
+ * <p>
+ * 带 run id 的请求只和同一个 run id 的请求合并（不同 run 的 checkpoint 互不影响）。
+ * 截止时间会写进 state、决定分类节点还等不等模型，所以领头请求的截止时间比自己早超过 graph.coalescing.deadline-slack
+ * 时不跟随（否则可能拿到领头请求按更早的截止时间给出的兜底结果），自己执行一次，不进入合并表；
+ * 同样超时设置、先后脚到达的请求截止时间只差几百毫秒，仍然合并。
+ */
+@Service
+public class GraphInvocationCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphInvocationCoalescer.class);
+
+    private final boolean enabled;
+
+    private final Duration maxWait;
+
+    private final long deadlineSlackMs;
+
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executions = new LongAdder();
+
+    private final LongAdder collapsed = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final GraphMetrics graphMetrics;
+
+    public GraphInvocationCoalescer(@Value("${graph.coalescing.enabled:true}") boolean enabled,
+                                    @Value("${graph.coalescing.max-wait:30s}") Duration maxWait,
+                                    @Value("${graph.coalescing.deadline-slack:1s}") Duration deadlineSlack,
+                                    GraphMetrics graphMetrics) {
+        this.enabled = enabled;
+        this.maxWait = maxWait;
+        this.deadlineSlackMs = deadlineSlack.toMillis();
+        this.graphMetrics = graphMetrics;
+    }
+
+    public Optional<OverAllState> invoke(String graph, CompiledGraph compiledGraph, String input) {
+        return invoke(graph, compiledGraph, input, null);
+    }
+
+    /**
+     * @param runId 客户端的 run id，可以为 null；重试时带上同一个 id，已完成的节点不再调用模型（见 NodeCheckpointStore）。
+     *              带 run id 时只和同一个 run id 的请求合并
+     */
+    public Optional<OverAllState> invoke(String graph, CompiledGraph compiledGraph, String input, String runId) {
+        if (!enabled || !ClassificationCache.cacheable(input)) {
+            return execute(graph, compiledGraph, input, runId, null);
+        }
+        String key = key(graph, input, runId);
+
+        Flight mine = new Flight(new CompletableFuture<>(), null);
+        Flight running = inFlight.putIfAbsent(key, mine);
+        if (running == null) {
+            /* 第一个到达的请求负责真正执行 */
+            try {
+                Optional<OverAllState> result = execute(graph, compiledGraph, input, runId, null);
+                mine.result().complete(result);
+                return result;
+            } catch (RuntimeException e) {
+                mine.result().completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+        if (!running.covers(null, deadlineSlackMs)) {
+            return execute(graph, compiledGraph, input, runId, null);
+        }
+
+        collapsed.increment();
+        try {
+            return running.result().get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            logger.warn("Coalesced invocation of {} did not finish within {}, running on its own", graph, maxWait);
+            return execute(graph, compiledGraph, input, runId, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for coalesced invocation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public CompletableFuture<Optional<OverAllState>> invokeAsync(String graph, CompiledGraph compiledGraph, String input,
+                                                                 String runId, Executor executor) {
+        return invokeAsync(graph, compiledGraph, input, runId, null, executor);
+    }
+
+    /**
+     * 异步执行：在 executor 上跑 invoke，相同输入的并发请求共享同一次执行。
+     * 返回的是共享 future 的副本，调用方对它 orTimeout / cancel 不会影响其他等待者和正在执行的图。
+     *
+     * @param deadlineMs 请求截止时间（epoch 毫秒），写入 state 供分类节点判断还等不等模型，可以为 null；
+     *                   领头请求的截止时间比它早时不合并
+     */
+    public CompletableFuture<Optional<OverAllState>> invokeAsync(String graph, CompiledGraph compiledGraph, String input,
+                                                                 String runId, Long deadlineMs, Executor executor) {
+        if (!enabled || !ClassificationCache.cacheable(input)) {
+            return CompletableFuture.supplyAsync(() -> execute(graph, compiledGraph, input, runId, deadlineMs), executor);
+        }
+        String key = key(graph, input, runId);
+
+        Flight mine = new Flight(new CompletableFuture<>(), deadlineMs);
+        Flight running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            if (!running.covers(deadlineMs, deadlineSlackMs)) {
+                return CompletableFuture.supplyAsync(() -> execute(graph, compiledGraph, input, runId, deadlineMs), executor);
+            }
+            collapsed.increment();
+            return running.result().copy();
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    mine.result().complete(execute(graph, compiledGraph, input, runId, deadlineMs));
+                } catch (RuntimeException e) {
+                    mine.result().completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, mine);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, mine);
+            mine.result().completeExceptionally(e);
+        }
+        return mine.result().copy();
+    }
+
+    private Optional<OverAllState> execute(String graph, CompiledGraph compiledGraph, String input, String runId,
+                                           Long deadlineMs) {
+        executions.increment();
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("input", input);
+        if (runId != null && !runId.isBlank()) {
+            inputs.put(NodeCheckpointStore.RUN_ID_KEY, runId);
+        }
+        if (deadlineMs != null) {
+            inputs.put(ClassifierResilience.DEADLINE_KEY, deadlineMs);
+        }
+        return graphMetrics.recordRun(graph, () -> compiledGraph.invoke(inputs));
+    }
+
+    private static String key(String graph, String input, String runId) {
+        String key = graph + "\u0001" + ClassificationCache.normalize(input);
+        return runId == null || runId.isBlank() ? key : key + "\u0001" + runId;
+    }
+
+    public Stats stats() {
+        return new Stats(executions.sum(), collapsed.sum(), timeouts.sum(), inFlight.size());
+    }
+
+    /**
+     * 一次正在执行的调用和它用的截止时间（null 表示没有截止时间）。
+     */
+    private record Flight(CompletableFuture<Optional<OverAllState>> result, Long deadlineMs) {
+
+        /**
+         * 截止时间为 deadlineMs 的请求能不能跟随这次执行：这次执行最多比它早 slackMs 放弃模型调用。
+         */
+        boolean covers(Long deadlineMs, long slackMs) {
+            return this.deadlineMs == null || (deadlineMs != null && this.deadlineMs + slackMs >= deadlineMs);
+        }
+
+    }
+
+    /**
+     * @param executions 真正执行 invoke 的次数
+     * @param collapsed  合并到别人结果上的请求数
+     * @param timeouts   等待超时后自己执行的请求数
+     * @param inFlight   当前正在执行的不同请求数
+     */
+    public record Stats(long executions, long collapsed, long timeouts, int inFlight) {
+    }
+
+}
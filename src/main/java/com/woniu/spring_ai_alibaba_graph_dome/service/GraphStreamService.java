@@ -0,0 +1,157 @@
+package com.woniu.spring_ai_alibaba_graph_dome.service;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.NodeOutput;
+import com.alibaba.cloud.ai.graph.StateGraph;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.ParallelBranches;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 基于 CompiledGraph.stream() 的 SSE 推送：每个节点执行完就推一条 node 事件，
+ * 内容是这个节点对 state 的改动（delta）和耗时，最后推一条 done 事件带上 solution。
+ * <p>
+ * 事件格式：
+ * event: node  data: {"node":"feedback_classifier","durationMs":812,"elapsedMs":813,"delta":{"classifier_output":"negative feedback"}}
+ * event: done  data: {"solution":"transportation","elapsedMs":1620}
+ * event: error data: {"message":"..."}
+ * <p>
+ * 并行分支节点（{@link ParallelBranches}，如推荐地点图的 queryAnalysis）里的每个分支完成时也推一条 node 事件，
+ * node 是分支名、delta 是分支自己的输出、durationMs 是分支耗时；汇合节点自己的 node 事件排在所有分支之后。
+ * <p>
+ * 图和异步接口共用 graph.async.max-in-flight 名额（见 {@link AsyncGraphInvoker#submit}），名额满时只推一条 error 事件。
+ * 客户端断开、超时或推送出错时中断正在跑的图，不再为没人接收的结果调用模型。
+ */
+@Service
+public class GraphStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphStreamService.class);
+
+    private final long timeoutMs;
+
+    private final AsyncGraphInvoker asyncGraphInvoker;
+
+    public GraphStreamService(@Value("${graph.stream.timeout-ms:120000}") long timeoutMs,
+                              AsyncGraphInvoker asyncGraphInvoker) {
+        this.timeoutMs = timeoutMs;
+        this.asyncGraphInvoker = asyncGraphInvoker;
+    }
+
+    public SseEmitter stream(CompiledGraph compiledGraph, String query) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Future<?> run;
+        try {
+            run = asyncGraphInvoker.submit(() -> run(compiledGraph, query, emitter));
+        } catch (RejectedExecutionException e) {
+            sendError(emitter, e);
+            return emitter;
+        }
+        /* 正常结束时 run 已经跑完，cancel 什么也不做 */
+        emitter.onTimeout(() -> run.cancel(true));
+        emitter.onError(error -> run.cancel(true));
+        emitter.onCompletion(() -> run.cancel(true));
+        return emitter;
+    }
+
+    void run(CompiledGraph compiledGraph, String query, SseEmitter emitter) {
+        long start = System.nanoTime();
+        long last = start;
+        Map<String, Object> previous = new HashMap<>();
+        Object solution = null;
+        ParallelBranches.Listener previousListener = ParallelBranches.listen((branch, output, durationNanos) ->
+                sendBranch(emitter, start, branch, output, durationNanos));
+        try {
+            for (NodeOutput output : compiledGraph.stream(Map.of("input", query))) {
+                long now = System.nanoTime();
+                Map<String, Object> current = output.state().data();
+                Map<String, Object> delta = delta(previous, current);
+                previous = new HashMap<>(current);
+                solution = current.getOrDefault("solution", solution);
+
+                /* START / END 不是业务节点，只用来推进计时 */
+                if (!StateGraph.START.equals(output.node()) && !StateGraph.END.equals(output.node())) {
+                    Map<String, Object> event = new LinkedHashMap<>();
+                    event.put("node", output.node());
+                    event.put("durationMs", (now - last) / 1_000_000);
+                    event.put("elapsedMs", (now - start) / 1_000_000);
+                    event.put("delta", delta);
+                    emitter.send(SseEmitter.event().name("node").data(event));
+                }
+                last = now;
+                /* 被取消：不再推进到下一个节点 */
+                if (Thread.currentThread().isInterrupted()) {
+                    logger.debug("Graph stream cancelled after node {}", output.node());
+                    return;
+                }
+            }
+            Map<String, Object> done = new LinkedHashMap<>();
+            done.put("solution", solution);
+            done.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+            emitter.send(SseEmitter.event().name("done").data(done));
+            emitter.complete();
+        } catch (IOException e) {
+            /* 客户端已断开 */
+            logger.debug("SSE client disconnected", e);
+            emitter.completeWithError(e);
+        } catch (Exception e) {
+            /* 取消时 emitter 已经结束，不用再推 error */
+            if (Thread.currentThread().isInterrupted()) {
+                logger.debug("Graph stream cancelled", e);
+                return;
+            }
+            logger.warn("Graph stream failed", e);
+            sendError(emitter, e);
+        } finally {
+            ParallelBranches.restore(previousListener);
+        }
+    }
+
+    /* 在分支线程上调用；推送失败时不打断分支，客户端断开由主循环下一次推送发现 */
+    private static void sendBranch(SseEmitter emitter, long start, String branch, Map<String, Object> output,
+                                   long durationNanos) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("node", branch);
+        event.put("durationMs", durationNanos / 1_000_000);
+        event.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+        event.put("delta", output);
+        try {
+            emitter.send(SseEmitter.event().name("node").data(event));
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Could not send branch {} to the SSE client", branch, e);
+        }
+    }
+
+    private static void sendError(SseEmitter emitter, Exception e) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(Map.of("message", String.valueOf(e.getMessage()))));
+            emitter.complete();
+        } catch (IOException | IllegalStateException ignored) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * 本次节点新增或修改的 key。
+     */
+    static Map<String, Object> delta(Map<String, Object> previous, Map<String, Object> current) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            if (!Objects.equals(previous.get(entry.getKey()), entry.getValue())) {
+                delta.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return delta;
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.woniu.spring_ai_alibaba_graph_dome.Demo;
+
+import com.woniu.spring_ai_alibaba_graph_dome.admission.ModelAdmission;
+import com.woniu.spring_ai_alibaba_graph_dome.memory.BoundedChatMemory;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class HelloworldControllerTest {
+
+    private static final List<String> TOKENS = List.of("你好", "，", "我是", "聊天助手", "。");
+
+    private final CountDownLatch firstToken = new CountDownLatch(1);
+
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    @Test
+    void tokensArriveInOrderFollowedByDone() throws Exception {
+        MockMvc mvc = mvc(prompt -> Flux.fromIterable(TOKENS).delayElements(Duration.ofMillis(5)));
+
+        MvcResult result = mvc.perform(get("/helloworld/simple/chat/stream").param("query", "你好"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        List<String> events = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+        for (String event : result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n\n")) {
+            String name = event.lines().filter(line -> line.startsWith("event:")).findFirst().orElse("");
+            events.add(name.substring("event:".length()));
+            if (name.equals("event:token")) {
+                tokens.add(event.lines().filter(line -> line.startsWith("data:")).findFirst().orElseThrow()
+                        .substring("data:".length()));
+            }
+        }
+        assertEquals(TOKENS, tokens);
+        assertEquals("done", events.get(events.size() - 1));
+    }
+
+    @Test
+    void timeoutCancelsTheUpstreamStream() throws Exception {
+        /* 吐出一段后再也不结束，只有取消订阅才会停 */
+        MockMvc mvc = mvc(prompt -> Flux.concat(Flux.just("第一段"), Flux.<String>never()));
+
+        MvcResult result = mvc.perform(get("/helloworld/simple/chat/stream").param("query", "你好"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(firstToken.await(5, TimeUnit.SECONDS), "stream never started");
+
+        /* MockMvc 不会自己计时，手动触发容器的超时回调 */
+        MockAsyncContext context = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : context.getListeners()) {
+            listener.onTimeout(new AsyncEvent(context));
+        }
+
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS), "upstream subscription was not cancelled");
+    }
+
+    private MockMvc mvc(Function<Prompt, Flux<String>> tokens) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatModel model = new StreamingModel(prompt -> tokens.apply(prompt)
+                .doOnNext(token -> firstToken.countDown())
+                .doOnCancel(cancelled::countDown));
+        ModelAdmission admission = new ModelAdmission(false, 8, 2, 64, 1.5, 32, Duration.ofSeconds(5), "", registry);
+        HelloworldController controller = new HelloworldController(ChatClient.builder(model),
+                new GraphMetrics(registry), admission, mock(BoundedChatMemory.class), 60_000);
+        return MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    /* 只支持流式调用的桩模型，每个元素是一段回答 */
+    private record StreamingModel(Function<Prompt, Flux<String>> tokens) implements ChatModel {
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            throw new UnsupportedOperationException("streaming only");
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            return tokens.apply(prompt)
+                    .map(token -> new ChatResponse(List.of(new Generation(new AssistantMessage(token)))));
+        }
+
+    }
+
+}
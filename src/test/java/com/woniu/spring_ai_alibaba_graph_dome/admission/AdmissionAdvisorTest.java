@@ -0,0 +1,70 @@
+package com.woniu.spring_ai_alibaba_graph_dome.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdmissionAdvisorTest {
+
+    private final ModelAdmission admission = new ModelAdmission(true, new AdaptiveLimit(1, 1, 1, 1.5), 8,
+            Duration.ofSeconds(5), Map.of(), new SimpleMeterRegistry());
+
+    @Test
+    void cancellingAQueuedStreamDoesNotLeakItsPermit() throws Exception {
+        ModelAdmission.Permit held = admission.acquire("helloworld");
+        StreamAdvisorChain chain = mock(StreamAdvisorChain.class);
+        when(chain.nextStream(any())).thenReturn(Flux.never());
+
+        Disposable stream = admission.advisor("helloworld")
+                .adviseStream(new ChatClientRequest(new Prompt("你好"), Map.of()), chain)
+                .subscribe();
+        awaitQueued(1);
+
+        /* 客户端在排队时断开，随后占着的名额归还：排队的调用不管有没有拿到名额，都不能留下 inflight */
+        stream.dispose();
+        held.release(false);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((admission.stats().inflight() > 0 || queued() > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, queued());
+        assertEquals(0, admission.stats().inflight());
+    }
+
+    @Test
+    void completedStreamReturnsItsPermit() {
+        StreamAdvisorChain chain = mock(StreamAdvisorChain.class);
+        when(chain.nextStream(any())).thenReturn(Flux.empty());
+
+        admission.advisor("helloworld")
+                .adviseStream(new ChatClientRequest(new Prompt("你好"), Map.of()), chain)
+                .blockLast(Duration.ofSeconds(5));
+
+        assertEquals(0, admission.stats().inflight());
+    }
+
+    private void awaitQueued(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queued() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private int queued() {
+        return admission.stats().lanes().stream().mapToInt(ModelAdmission.LaneStats::queued).sum();
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.woniu.spring_ai_alibaba_graph_dome.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelAdmissionTest {
+
+    private static final Map<String, Integer> PRIORITIES = Map.of("CustomerGraph", 0, "workflowGraphR", 2, "helloworld", 3);
+
+    @Test
+    void freedSlotGoesToTheHighestPriorityLane() throws Exception {
+        ModelAdmission admission = fixed(1, 8, Duration.ofSeconds(5));
+        ModelAdmission.Permit held = admission.acquire("helloworld");
+
+        List<String> order = new CopyOnWriteArrayList<>();
+        Thread places = waiter(admission, "workflowGraphR", order);
+        awaitQueued(admission, 1);
+        Thread customer = waiter(admission, "CustomerGraph", order);
+        awaitQueued(admission, 2);
+
+        held.release(false);
+        places.join(5000);
+        customer.join(5000);
+        assertEquals(List.of("CustomerGraph", "workflowGraphR"), order);
+        assertEquals(0, admission.stats().inflight());
+    }
+
+    @Test
+    void rejectsWithRetryAfterWhenTheLaneQueueIsFull() throws Exception {
+        ModelAdmission admission = fixed(1, 1, Duration.ofSeconds(5));
+        ModelAdmission.Permit held = admission.acquire("helloworld");
+        Thread queued = waiter(admission, "helloworld", new CopyOnWriteArrayList<>());
+        awaitQueued(admission, 1);
+
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> admission.acquire("helloworld"));
+        assertEquals("queue_full", rejected.reason());
+        assertTrue(rejected.retryAfter().toSeconds() >= 1);
+
+        held.release(false);
+        queued.join(5000);
+    }
+
+    @Test
+    void rejectsCallsThatWaitLongerThanMaxWait() throws Exception {
+        ModelAdmission admission = fixed(1, 8, Duration.ofMillis(50));
+        ModelAdmission.Permit held = admission.acquire("CustomerGraph");
+
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> admission.acquire("helloworld"));
+        assertEquals("timeout", rejected.reason());
+        assertEquals(0, admission.stats().lanes().stream().mapToInt(ModelAdmission.LaneStats::queued).sum());
+        held.release(false);
+    }
+
+    @Test
+    void limitGrowsWhileLatencyIsStableAndShrinksWhenItRises() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 2, 100, 1.5);
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(200), limit.limit(), false);
+        }
+        int grown = limit.limit();
+        assertTrue(grown > 10, "limit should grow, was " + grown);
+
+        for (int i = 0; i < 30; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(2000), limit.limit(), false);
+        }
+        assertTrue(limit.limit() < grown, "limit should shrink, was " + limit.limit());
+
+        int beforeDrop = limit.limit();
+        limit.onSample(TimeUnit.MILLISECONDS.toNanos(200), limit.limit(), true);
+        assertTrue(limit.limit() < beforeDrop);
+    }
+
+    private static ModelAdmission fixed(int concurrency, int queueCapacity, Duration maxWait) {
+        return new ModelAdmission(true, new AdaptiveLimit(concurrency, concurrency, concurrency, 1.5), queueCapacity,
+                maxWait, PRIORITIES, new SimpleMeterRegistry());
+    }
+
+    private static Thread waiter(ModelAdmission admission, String lane, List<String> order) {
+        Thread thread = new Thread(() -> {
+            try {
+                ModelAdmission.Permit permit = admission.acquire(lane);
+                order.add(lane);
+                permit.release(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueued(ModelAdmission admission, int queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (admission.stats().lanes().stream().mapToInt(ModelAdmission.LaneStats::queued).sum() < queued
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+}
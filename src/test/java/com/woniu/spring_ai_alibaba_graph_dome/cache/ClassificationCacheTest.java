@@ -0,0 +1,77 @@
+package com.woniu.spring_ai_alibaba_graph_dome.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ClassificationCacheTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-07-19T00:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    void normalizedInputsShareOneEntry() {
+        ClassificationCache cache = new ClassificationCache(true, 10, Duration.ofHours(1), null, CLOCK);
+        cache.put("workflowGraph", "feedback_classifier", "快递 太慢了！", "negative feedback");
+
+        assertEquals("negative feedback", cache.get("workflowGraph", "feedback_classifier", "快递太慢了"));
+        assertEquals("negative feedback", cache.get("workflowGraph", "feedback_classifier", " 快递太慢了。"));
+        assertNull(cache.get("workflowGraph", "specific_question_classifier", "快递太慢了"));
+        assertEquals(2, cache.stats().hits());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        ClassificationCache cache = new ClassificationCache(true, 2, Duration.ofHours(1), null, CLOCK);
+        cache.put("g", "n", "a", "A");
+        cache.put("g", "n", "b", "B");
+        cache.get("g", "n", "a");
+        cache.put("g", "n", "c", "C");
+
+        assertEquals("A", cache.get("g", "n", "a"));
+        assertNull(cache.get("g", "n", "b"));
+        assertEquals(2, cache.stats().size());
+    }
+
+    @Test
+    void expiredEntriesAreMisses() {
+        ClassificationCache writer = new ClassificationCache(true, 10, Duration.ZERO, null, CLOCK);
+        writer.put("g", "n", "a", "A");
+
+        assertNull(writer.get("g", "n", "a"));
+    }
+
+    @Test
+    void inputsWithNothingLeftAfterNormalizingAreNotCached() {
+        ClassificationCache cache = new ClassificationCache(true, 10, Duration.ofHours(1), null, CLOCK);
+        cache.put("g", "n", "😡😡😡", "negative feedback");
+
+        assertNull(cache.get("g", "n", "👍"));
+        assertNull(cache.get("g", "n", "❤️"));
+        assertNull(cache.get("g", "n", "？！ "));
+        assertEquals(0, cache.stats().size());
+        assertEquals(0, cache.stats().misses());
+    }
+
+    @Test
+    void snapshotSurvivesRestart(@TempDir Path dir) {
+        Path file = dir.resolve("cache.json");
+        ClassificationCache before = new ClassificationCache(true, 10, Duration.ofHours(1), file, CLOCK);
+        before.put("CustomerGraph", "Level1Node", "新增设备", "新增设备");
+        before.save();
+
+        ClassificationCache after = new ClassificationCache(true, 10, Duration.ofHours(1), file, CLOCK);
+        after.load();
+
+        assertEquals("新增设备", after.get("CustomerGraph", "Level1Node", "新增设备"));
+    }
+
+}
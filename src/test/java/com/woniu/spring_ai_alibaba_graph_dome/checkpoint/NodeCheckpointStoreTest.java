@@ -0,0 +1,114 @@
+package com.woniu.spring_ai_alibaba_graph_dome.checkpoint;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NodeCheckpointStoreTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-07-19T00:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    void retryWithSameRunIdReplaysCompletedNode(@TempDir Path dir) throws Exception {
+        NodeCheckpointStore store = store(dir.resolve("checkpoints.log"), 100, 1 << 20);
+        AtomicInteger calls = new AtomicInteger();
+        NodeAction classifier = state -> {
+            calls.incrementAndGet();
+            return Map.of("classifier_output", "negative feedback");
+        };
+        NodeAction node = store.wrap("workflowGraph", "feedback_classifier", classifier);
+
+        node.apply(state("run-1", "快递太慢了"));
+        Map<String, Object> replayed = node.apply(state("run-1", "快递太慢了"));
+        node.apply(state("run-2", "快递太慢了"));
+        node.apply(state(null, "快递太慢了"));
+
+        assertEquals("negative feedback", replayed.get("classifier_output"));
+        assertEquals(3, calls.get());
+        assertEquals(1, store.stats().replayed());
+        assertEquals(2, store.stats().runs());
+    }
+
+    @Test
+    void sameRunIdWithDifferentInputIsNotReplayed(@TempDir Path dir) throws Exception {
+        NodeCheckpointStore store = store(dir.resolve("checkpoints.log"), 100, 1 << 20);
+        NodeAction node = store.wrap("workflowGraph", "feedback_classifier",
+                state -> Map.of("classifier_output", state.value("input").orElseThrow().equals("产品很好用")
+                        ? "positive feedback" : "negative feedback"));
+
+        node.apply(state("run-1", "快递太慢了"));
+        Map<String, Object> output = node.apply(state("run-1", "产品很好用"));
+
+        assertEquals("positive feedback", output.get("classifier_output"));
+        assertEquals(0, store.stats().replayed());
+        assertEquals(1, store.stats().mismatched());
+        assertEquals("positive feedback",
+                store.get("run-1", "workflowGraph", "feedback_classifier", "产品很好用").get("classifier_output"));
+        assertNull(store.get("run-1", "workflowGraph", "feedback_classifier", "快递太慢了"));
+    }
+
+    @Test
+    void checkpointsSurviveRestart(@TempDir Path dir) {
+        Path file = dir.resolve("checkpoints.log");
+        NodeCheckpointStore before = store(file, 100, 1 << 20);
+        before.load();
+        before.put("run-1", "CustomerGraph", "Level1Node", "新增设备", Map.of("classifier_output", "新增设备"));
+        before.close();
+        assertEquals(1, before.stats().written());
+
+        NodeCheckpointStore after = store(file, 100, 1 << 20);
+        after.load();
+
+        assertEquals(Map.of("classifier_output", "新增设备"), after.get("run-1", "CustomerGraph", "Level1Node", "新增设备"));
+        assertNull(after.get("run-1", "workflowGraphR", "Level1Node", "新增设备"));
+        after.close();
+    }
+
+    @Test
+    void compactionKeepsFileBounded(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("checkpoints.log");
+        NodeCheckpointStore store = store(file, 3, 1024);
+        store.load();
+        for (int i = 0; i < 100; i++) {
+            store.put("run-" + i, "workflowGraph", "feedback_classifier", "很好",
+                    Map.of("classifier_output", "positive feedback"));
+        }
+        store.close();
+
+        assertTrue(store.stats().compactions() > 0);
+        assertEquals(100, store.stats().written());
+        assertEquals(3, store.stats().runs());
+        assertTrue(Files.size(file) <= 1024, "log size " + Files.size(file));
+        assertNull(store.get("run-0", "workflowGraph", "feedback_classifier", "很好"));
+        assertEquals("positive feedback",
+                store.get("run-99", "workflowGraph", "feedback_classifier", "很好").get("classifier_output"));
+    }
+
+    private static NodeCheckpointStore store(Path file, int maxRuns, long maxFileBytes) {
+        return new NodeCheckpointStore(true, file, Duration.ofMinutes(30), maxRuns, maxFileBytes, 1000, CLOCK);
+    }
+
+    private static OverAllState state(String runId, String input) {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("input", new ReplaceStrategy());
+        state.registerKeyAndStrategy(NodeCheckpointStore.RUN_ID_KEY, new ReplaceStrategy());
+        state.updateState(runId == null ? Map.of("input", input) : Map.of("input", input, NodeCheckpointStore.RUN_ID_KEY, runId));
+        return state;
+    }
+
+}
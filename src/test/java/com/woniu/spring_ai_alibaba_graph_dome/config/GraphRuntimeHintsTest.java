@@ -0,0 +1,58 @@
+package com.woniu.spring_ai_alibaba_graph_dome.config;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.node.QuestionClassifierNode;
+import com.woniu.spring_ai_alibaba_graph_dome.Demo.RecordingNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GraphRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    GraphRuntimeHintsTest() {
+        new GraphRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void graphStateAndActionsAreReflective() {
+        assertTrue(RuntimeHintsPredicates.reflection().onType(OverAllState.class)
+                .withMemberCategory(MemberCategory.DECLARED_FIELDS).test(hints));
+        assertTrue(RuntimeHintsPredicates.serialization().onType(OverAllState.class).test(hints));
+        for (Class<?> type : new Class<?>[]{QuestionClassifierNode.class, RecordingNode.class,
+                GraphAutoConfiguration.FeedbackQuestionDispatcher.class,
+                CustomerServiceConfiguration.FeedbackQuestionDispatcher.class,
+                RecommendedPlacesConfiguration.IntentClassifier.class}) {
+            assertTrue(RuntimeHintsPredicates.reflection().onType(type)
+                    .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS).test(hints), type.getName());
+        }
+    }
+
+    @Test
+    void gsonSnapshotsKeepTheirFields() throws ClassNotFoundException {
+        for (String name : new String[]{
+                "com.woniu.spring_ai_alibaba_graph_dome.cache.ClassificationCache$SnapshotEntry",
+                "com.woniu.spring_ai_alibaba_graph_dome.checkpoint.NodeCheckpointStore$Record",
+                "com.woniu.spring_ai_alibaba_graph_dome.memory.BoundedChatMemory$SpilledSession",
+                "com.woniu.spring_ai_alibaba_graph_dome.memory.BoundedChatMemory$Turn"}) {
+            /* 按名字登记的类改名后这里会先失败 */
+            Class.forName(name);
+            assertTrue(RuntimeHintsPredicates.reflection().onType(TypeReference.of(name))
+                    .withMemberCategory(MemberCategory.DECLARED_FIELDS).test(hints), name);
+        }
+    }
+
+    @Test
+    void virtualThreadExecutorCanBeLookedUp() {
+        assertTrue(hints.reflection().getTypeHint(Executors.class).methods()
+                .anyMatch(method -> method.getName().equals("newVirtualThreadPerTaskExecutor")));
+    }
+
+}
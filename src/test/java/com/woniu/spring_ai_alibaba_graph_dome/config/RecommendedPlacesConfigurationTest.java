@@ -0,0 +1,58 @@
+package com.woniu.spring_ai_alibaba_graph_dome.config;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import com.woniu.spring_ai_alibaba_graph_dome.Demo.RecordingNode;
+import com.woniu.spring_ai_alibaba_graph_dome.node.ExtractionNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecommendedPlacesConfigurationTest {
+
+    private final RecommendedPlacesConfiguration.IntentClassifier router =
+            new RecommendedPlacesConfiguration.IntentClassifier();
+
+    @Test
+    void recognisedPlaceCategoryOverridesAWithoutIntentOutput() {
+        assertEquals("with intent", router.apply(state("without intent", "cafe", ExtractionNode.NONE)));
+        assertEquals("without intent", router.apply(state("without intent", "unspecified", "杭州")));
+        assertEquals("with intent", router.apply(state("with intent", "unspecified", ExtractionNode.NONE)));
+    }
+
+    @Test
+    void placeQueryReachesTheSolution() {
+        RecordingNode recorder = new RecordingNode(null, "workflowGraphR",
+                RecommendedPlacesConfiguration::describePlaceQuery);
+
+        assertEquals("with intent: cafe @ 杭州西湖",
+                recorder.apply(state("with intent", "cafe", "杭州西湖")).get("solution"));
+        assertEquals("with intent: hospital",
+                recorder.apply(state("with intent", "hospital", ExtractionNode.NONE)).get("solution"));
+        assertEquals("without intent",
+                recorder.apply(state("without intent", "unspecified", ExtractionNode.NONE)).get("solution"));
+    }
+
+    @Test
+    void missingPlaceQueryIsNotDescribed() {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("classifier_output", new ReplaceStrategy());
+        state.updateState(Map.of("classifier_output", "without intent"));
+
+        assertNull(RecommendedPlacesConfiguration.describePlaceQuery(state));
+        assertEquals("without intent", router.apply(state));
+    }
+
+    private static OverAllState state(String intent, String category, String location) {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("classifier_output", new ReplaceStrategy());
+        state.registerKeyAndStrategy(RecommendedPlacesConfiguration.PLACE_QUERY_KEY, new ReplaceStrategy());
+        state.updateState(Map.of("classifier_output", intent,
+                RecommendedPlacesConfiguration.PLACE_QUERY_KEY, Map.of("category", category, "location", location)));
+        return state;
+    }
+
+}
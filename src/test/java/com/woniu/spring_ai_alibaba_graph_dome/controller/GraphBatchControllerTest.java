@@ -0,0 +1,25 @@
+package com.woniu.spring_ai_alibaba_graph_dome.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GraphBatchControllerTest {
+
+    @Test
+    void parsesJsonArray() throws IOException {
+        assertEquals(List.of("快递太慢了", "产品很好用"),
+                GraphBatchController.parseInputs(new StringReader("  [\"快递太慢了\", {\"input\": \"产品很好用\"}]")));
+    }
+
+    @Test
+    void parsesJsonLinesAndPlainText() throws IOException {
+        assertEquals(List.of("快递太慢了", "新增设备", "产品很好用"),
+                GraphBatchController.parseInputs(new StringReader("\"快递太慢了\"\n{\"query\": \"新增设备\"}\n\n产品很好用\n")));
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.woniu.spring_ai_alibaba_graph_dome.distill;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistilledClassifierTest {
+
+    private static final List<String> CATEGORIES = List.of("positive feedback", "negative feedback");
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger modelCalls = new AtomicInteger();
+
+    /* 假的大模型节点：带"差"的算差评，回答带一点自由文本 */
+    private final NodeAction llm = state -> {
+        modelCalls.incrementAndGet();
+        String input = (String) state.value("input").orElse("");
+        return Map.of("classifier_output", input.contains("差") ? "Negative Feedback." : "positive feedback");
+    };
+
+    @Test
+    void activeModeAnswersConfidentInputsWithoutCallingTheModel() throws Exception {
+        DistilledClassifier distilled = classifier(DistilledClassifier.Mode.ACTIVE, null);
+        NodeAction node = distilled.wrap("workflowGraph", "feedback_classifier", llm, CATEGORIES);
+
+        assertEquals("negative feedback", node.apply(state("质量太差了")).get("classifier_output"));
+        assertEquals("positive feedback", node.apply(state("非常好用")).get("classifier_output"));
+        assertEquals(0, modelCalls.get());
+
+        DistilledClassifier.NodeReport report = distilled.stats().nodes().get(0);
+        assertEquals(2, report.answered());
+        assertEquals("test", distilled.stats().version());
+    }
+
+    @Test
+    void shadowModeAlwaysCallsTheModelAndLogsCanonicalLabels() throws Exception {
+        Path labels = dir.resolve("labels.jsonl");
+        DistilledClassifier distilled = classifier(DistilledClassifier.Mode.SHADOW, new LabelLog(labels, 1 << 20, 2, 100));
+        NodeAction node = distilled.wrap("workflowGraph", "feedback_classifier", llm, CATEGORIES);
+
+        assertEquals("Negative Feedback.", node.apply(state("质量太差了")).get("classifier_output"));
+        node.apply(state("非常好用"));
+        distilled.close();
+
+        assertEquals(2, modelCalls.get());
+        DistilledClassifier.NodeReport report = distilled.stats().nodes().get(0);
+        assertEquals(2, report.compared());
+        assertEquals(2, report.agreed());
+
+        List<LabelLog.Entry> entries = LabelLog.read(labels);
+        assertEquals(2, entries.size());
+        assertEquals("negative feedback", entries.get(0).label());
+        assertEquals("feedback_classifier", entries.get(0).node());
+    }
+
+    @Test
+    void activeModeLeavesUnknownLabelsAndEmptyInputsToTheModel() throws Exception {
+        Path labels = dir.resolve("labels.jsonl");
+        DistilledClassifier distilled = classifier(DistilledClassifier.Mode.ACTIVE, new LabelLog(labels, 1 << 20, 2, 100));
+        /* 类别表改过，本地模型还会预测出已经不存在的 positive feedback */
+        NodeAction node = distilled.wrap("workflowGraph", "feedback_classifier", llm,
+                List.of("negative feedback", "positive"));
+
+        assertEquals("negative feedback", node.apply(state("质量太差了")).get("classifier_output"));
+        assertEquals(0, modelCalls.get());
+        assertEquals("positive feedback", node.apply(state("非常好用")).get("classifier_output"));
+        assertEquals(1, modelCalls.get());
+        node.apply(state("？！。。。"));
+        assertEquals(2, modelCalls.get());
+        distilled.close();
+
+        /* 只有标点的输入不作为训练数据 */
+        List<LabelLog.Entry> entries = LabelLog.read(labels);
+        assertEquals(List.of("非常好用"), entries.stream().map(LabelLog.Entry::input).toList());
+        assertEquals("positive", entries.get(0).label());
+        DistilledClassifier.NodeReport report = distilled.stats().nodes().get(0);
+        assertEquals(1, report.answered());
+        assertEquals(2, report.delegated());
+    }
+
+    @Test
+    void modelFileRoundTrips() throws Exception {
+        Path file = dir.resolve("model.bin");
+        trainedModels().write(file);
+        DistilledModels read = DistilledModels.read(file);
+        assertTrue(read.models().containsKey("workflowGraph/feedback_classifier"));
+        assertEquals("positive feedback", read.get("workflowGraph", "feedback_classifier").predict("很好").label());
+    }
+
+    private DistilledClassifier classifier(DistilledClassifier.Mode mode, LabelLog labelLog) throws Exception {
+        Path file = dir.resolve("distilled-model.bin");
+        trainedModels().write(file);
+        DistilledClassifier distilled = new DistilledClassifier(mode, file, 0.7, labelLog, 1, new SimpleMeterRegistry());
+        distilled.load();
+        return distilled;
+    }
+
+    private static DistilledModels trainedModels() {
+        List<CharNgramModel.Example> examples = new ArrayList<>();
+        for (String text : List.of("质量太差了", "服务很差", "差评", "太差劲了", "物流差", "东西很差")) {
+            examples.add(new CharNgramModel.Example(text, "negative feedback"));
+        }
+        for (String text : List.of("非常好用", "很好", "好评", "质量不错", "物流很快", "非常满意")) {
+            examples.add(new CharNgramModel.Example(text, "positive feedback"));
+        }
+        CharNgramModel model = CharNgramModel.train(examples, CATEGORIES, 1, 3, 12, 100, 0.5, 1e-6, 42);
+        return new DistilledModels("test", System.currentTimeMillis(), Map.of("workflowGraph/feedback_classifier", model));
+    }
+
+    private static OverAllState state(String input) {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("input", new ReplaceStrategy());
+        state.updateState(Map.of("input", input));
+        return state;
+    }
+
+}
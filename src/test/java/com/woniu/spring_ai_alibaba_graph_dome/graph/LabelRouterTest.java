@@ -0,0 +1,66 @@
+package com.woniu.spring_ai_alibaba_graph_dome.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LabelRouterTest {
+
+    private final LabelRouter feedback = LabelRouter.builder()
+            .route("negative", "negative", "not positive")
+            .route("positive")
+            .otherwise("negative")
+            .build();
+
+    @Test
+    void earlierRouteWinsWhenLabelsOverlap() {
+        assertEquals("positive", feedback.route("positive feedback"));
+        assertEquals("negative", feedback.route("The user is not positive about it"));
+        assertEquals("negative", feedback.route("positive at first, negative feedback overall"));
+    }
+
+    @Test
+    void fallsBackToDefaultRoute() {
+        assertEquals("negative", feedback.route("no label here"));
+        assertEquals("negative", feedback.route(""));
+        assertEquals("negative", feedback.route(null));
+        assertEquals(List.of("negative", "positive"), List.copyOf(feedback.routes()));
+    }
+
+    @Test
+    void matchesLabelsThatShareSuffixes() {
+        LabelRouter router = LabelRouter.builder()
+                .route("she")
+                .route("hers")
+                .route("his")
+                .otherwise("none")
+                .build();
+
+        assertEquals("hers", router.route("ahers"));
+        assertEquals("she", router.route("ushers"));
+        assertEquals("his", router.route("this"));
+    }
+
+    @Test
+    void routesChineseCategoriesInRegistrationOrder() {
+        LabelRouter router = LabelRouter.builder()
+                .route("新增设备")
+                .route("维修记录")
+                .route("设备下架")
+                .otherwise("Other")
+                .build();
+
+        assertEquals("维修记录", router.route("设备下架，另外要补一条维修记录"));
+        assertEquals("新增设备", router.route("新增设备下架"));
+        assertEquals("Other", router.route("设备"));
+    }
+
+    @Test
+    void requiresDefaultRoute() {
+        assertThrows(IllegalStateException.class, () -> LabelRouter.builder().route("a").build());
+    }
+
+}
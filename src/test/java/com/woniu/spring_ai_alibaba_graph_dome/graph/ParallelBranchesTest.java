@@ -0,0 +1,109 @@
+package com.woniu.spring_ai_alibaba_graph_dome.graph;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelBranchesTest {
+
+    private final StateSchema schema = StateSchema.builder()
+            .replace("input", "classifier_output")
+            .merge("place_query")
+            .build();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void runsBranchesConcurrentlyAndMergesOutputs() throws Exception {
+        /* 三个分支都到齐才放行：顺序执行时第一个分支等不到其它分支，超时失败 */
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        ParallelBranches branches = ParallelBranches.builder(schema, executor)
+                .branch("intent", together(barrier, Map.of("classifier_output", "with intent")))
+                .branch("category", together(barrier, Map.of("place_query", Map.of("category", "cafe"))))
+                .branch("location", together(barrier, Map.of("place_query", Map.of("location", "杭州"))))
+                .build();
+
+        Map<String, Object> output = branches.apply(schema.newState());
+
+        assertEquals("with intent", output.get("classifier_output"));
+        assertEquals(Map.of("category", "cafe", "location", "杭州"), output.get("place_query"));
+
+        OverAllState state = schema.newState();
+        state.updateState(Map.of("place_query", Map.of("category", "hotel", "radius", "5km")));
+        state.updateState(output);
+        assertEquals(Map.of("category", "cafe", "location", "杭州", "radius", "5km"),
+                state.value("place_query").orElseThrow());
+    }
+
+    @Test
+    void rejectsTwoBranchesReplacingTheSameKey() {
+        ParallelBranches branches = ParallelBranches.builder(schema, executor)
+                .branch("a", state -> Map.of("classifier_output", "with intent"))
+                .branch("b", state -> Map.of("classifier_output", "without intent"))
+                .build();
+
+        assertThrows(IllegalStateException.class, () -> branches.apply(schema.newState()));
+    }
+
+    @Test
+    void rethrowsTheBranchFailure() {
+        ParallelBranches branches = ParallelBranches.builder(schema, executor)
+                .branch("failing", state -> {
+                    throw new IllegalArgumentException("model down");
+                })
+                .branch("ok", state -> Map.of("classifier_output", "with intent"))
+                .build();
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> branches.apply(schema.newState()));
+        assertEquals("model down", error.getMessage());
+    }
+
+    @Test
+    void reportsEachBranchToTheCallersListener() throws Exception {
+        ParallelBranches branches = ParallelBranches.builder(schema, executor)
+                .branch("intent", state -> Map.of("classifier_output", "with intent"))
+                .branch("category", state -> Map.of("place_query", Map.of("category", "cafe")))
+                .branch("location", state -> Map.of("place_query", Map.of("location", "杭州")))
+                .build();
+        Map<String, Map<String, Object>> reported = new ConcurrentHashMap<>();
+
+        ParallelBranches.callWith((name, output, durationNanos) -> reported.put(name, output),
+                () -> branches.apply(schema.newState()));
+
+        assertEquals(Map.of("intent", Map.of("classifier_output", "with intent"),
+                "category", Map.of("place_query", Map.of("category", "cafe")),
+                "location", Map.of("place_query", Map.of("location", "杭州"))), reported);
+        assertNull(ParallelBranches.listener());
+
+        /* 没有挂 listener 的线程不报告 */
+        reported.clear();
+        branches.apply(schema.newState());
+        assertEquals(Map.of(), reported);
+    }
+
+    private static NodeAction together(CyclicBarrier barrier, Map<String, Object> output) {
+        return state -> {
+            barrier.await(5, TimeUnit.SECONDS);
+            return output;
+        };
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.woniu.spring_ai_alibaba_graph_dome.graph;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class StateSchemaTest {
+
+    private final StateSchema schema = StateSchema.builder()
+            .replace("input", "classifier_output", "solution")
+            .replace("run_id", "input")
+            .build();
+
+    @Test
+    void keepsFirstRegistrationOrderWithoutDuplicates() {
+        assertEquals(List.of("input", "classifier_output", "solution", "run_id"), schema.keys());
+    }
+
+    @Test
+    void everyRunGetsItsOwnStateWithReplaceSemantics() {
+        OverAllState first = schema.newState();
+        first.updateState(Map.of("input", "快递太慢了"));
+        first.updateState(Map.of("input", "质量不好"));
+        OverAllState second = schema.factory().create();
+
+        assertNotSame(first, second);
+        assertEquals("质量不好", first.value("input").orElseThrow());
+        assertEquals(false, second.value("input").isPresent());
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.woniu.spring_ai_alibaba_graph_dome.memory;
+
+import com.woniu.spring_ai_alibaba_graph_dome.support.StubChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedChatMemoryTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void promptStaysWithinTheBudgetHoweverLongTheConversation() {
+        BoundedChatMemory memory = memory(100, 1000, null, null);
+
+        for (int i = 0; i < 50; i++) {
+            talk(memory, "s1", i);
+        }
+        List<Message> history = memory.get("s1");
+
+        assertEquals(MessageType.SYSTEM, history.get(0).getMessageType());
+        assertEquals("第 49 轮回答", history.get(history.size() - 1).getText());
+        assertEquals(MessageType.USER, history.get(1).getMessageType());
+        int tokens = history.stream().mapToInt(message -> BoundedChatMemory.tokens(message.getText()) + 4).sum();
+        assertTrue(tokens <= 100, "history grew to " + tokens + " tokens");
+        assertTrue(registry.get("graph.memory.prompt.tokens").summary().max() <= 100);
+    }
+
+    @Test
+    void olderTurnsAreSummarizedByTheModel() {
+        StubChatModel model = new StubChatModel();
+        BoundedChatMemory memory = memory(100, 1000, null, ChatClient.builder(model).build());
+
+        for (int i = 0; i < 10; i++) {
+            talk(memory, "s1", i);
+        }
+
+        assertTrue(memory.get("s1").get(0).getText().endsWith(StubChatModel.SUMMARY));
+        assertTrue(model.calls() > 0);
+        assertEquals(model.calls(), memory.stats().modelSummaries());
+    }
+
+    @Test
+    void leastRecentSessionsSpillToDiskAndComeBack(@TempDir Path dir) {
+        BoundedChatMemory memory = memory(100, 2, dir, null);
+
+        talk(memory, "a", 0);
+        talk(memory, "b", 0);
+        talk(memory, "c", 0);
+
+        assertEquals(2, memory.stats().sessions());
+        assertEquals(1, memory.stats().spilled());
+        assertEquals(List.of("第 0 轮提问", "第 0 轮回答"), memory.get("a").stream().map(Message::getText).toList());
+        assertEquals(1, memory.stats().loaded());
+        assertEquals(2, memory.stats().sessions());
+    }
+
+    @Test
+    void spillFilesAreWrittenOffTheRequestPath(@TempDir Path dir) throws IOException {
+        List<Runnable> io = new ArrayList<>();
+        BoundedChatMemory memory = memory(100, 2, dir, null, io::add);
+
+        talk(memory, "a", 0);
+        talk(memory, "b", 0);
+        talk(memory, "c", 0);
+
+        /* a 已经换出，但文件还没写：再访问直接从内存拿回来，不碰磁盘 */
+        assertEquals(0, spillFiles(dir));
+        assertEquals(List.of("第 0 轮提问", "第 0 轮回答"), memory.get("a").stream().map(Message::getText).toList());
+        assertEquals(1, memory.stats().loaded());
+
+        /* 排队的任务：a 的写入（已作废）、a 的删除、b 的写入 */
+        io.forEach(Runnable::run);
+        assertEquals(1, spillFiles(dir));
+        assertEquals(1, memory.stats().spilled());
+        assertEquals(List.of("第 0 轮提问", "第 0 轮回答"), memory.get("b").stream().map(Message::getText).toList());
+    }
+
+    @Test
+    void assembledPromptHasOneLeadingSystemMessage() {
+        BoundedChatMemory memory = memory(100, 1000, null, null);
+        for (int i = 0; i < 10; i++) {
+            talk(memory, "s1", i);
+        }
+        CapturingChatModel model = new CapturingChatModel();
+
+        ChatClient.builder(model).defaultSystem("你是一个聊天助手。").build()
+                .prompt("第 10 轮提问")
+                .advisors(MessageChatMemoryAdvisor.builder(memory).build(), new SingleSystemPromptAdvisor())
+                .advisors(advisor -> advisor.param(ChatMemory.CONVERSATION_ID, "s1"))
+                .call()
+                .content();
+
+        List<Message> prompt = model.prompt.getInstructions();
+        assertEquals(1, prompt.stream().filter(message -> message.getMessageType() == MessageType.SYSTEM).count());
+        assertTrue(prompt.get(0).getText().startsWith("你是一个聊天助手。\n\n" + BoundedChatMemory.SUMMARY_PREFIX));
+        assertEquals(MessageType.USER, prompt.get(1).getMessageType());
+        assertEquals("第 10 轮提问", prompt.get(prompt.size() - 1).getText());
+    }
+
+    @Test
+    void idleSessionsAreDropped() {
+        BoundedChatMemory memory = memory(100, 1000, null, null);
+        talk(memory, "a", 0);
+
+        clock.advance(Duration.ofMinutes(31));
+        talk(memory, "b", 0);
+        memory.sweep();
+
+        assertEquals(List.of(), memory.get("a"));
+        assertEquals(1, memory.stats().sessions());
+        assertEquals(1, memory.stats().evicted());
+    }
+
+    private BoundedChatMemory memory(int promptTokens, int maxSessions, Path spillDir, ChatClient summarizer) {
+        return memory(promptTokens, maxSessions, spillDir, summarizer, Runnable::run);
+    }
+
+    private BoundedChatMemory memory(int promptTokens, int maxSessions, Path spillDir, ChatClient summarizer,
+                                     Executor io) {
+        return new BoundedChatMemory(true, promptTokens - 30, 30, maxSessions, 1 << 20, Duration.ofMinutes(30),
+                spillDir, summarizer, Runnable::run, io, clock, registry);
+    }
+
+    private static long spillFiles(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".json")).count();
+        }
+    }
+
+    /* MessageChatMemoryAdvisor 的顺序：先取历史，再存提问，回答回来后存回答 */
+    private static void talk(BoundedChatMemory memory, String session, int turn) {
+        memory.get(session);
+        memory.add(session, List.of(new UserMessage("第 " + turn + " 轮提问")));
+        memory.add(session, List.of(new AssistantMessage("第 " + turn + " 轮回答")));
+    }
+
+    /* 记下最后一次收到的提示词 */
+    private static final class CapturingChatModel implements ChatModel {
+
+        private Prompt prompt;
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            this.prompt = prompt;
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("好的"))));
+        }
+
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-07-19T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.woniu.spring_ai_alibaba_graph_dome.metrics;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import com.woniu.spring_ai_alibaba_graph_dome.Demo.RecordingNode;
+import com.woniu.spring_ai_alibaba_graph_dome.config.GraphAutoConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GraphMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final GraphMetrics graphMetrics = new GraphMetrics(registry);
+
+    @Test
+    void recordsNodeLatencyAndChosenRoute() throws Exception {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("classifier_output", new ReplaceStrategy());
+        state.updateState(Map.of("classifier_output", "positive feedback"));
+
+        String route = graphMetrics.edge("workflowGraph", "feedback_classifier",
+                new GraphAutoConfiguration.FeedbackQuestionDispatcher()).apply(state);
+        graphMetrics.node("workflowGraph", "recorder", new RecordingNode()).apply(state);
+
+        assertEquals("positive", route);
+        assertEquals(1, registry.get("graph.route").tags("graph", "workflowGraph", "route", "positive").counter().count());
+        assertEquals(1, registry.get("graph.node").tags("node", "recorder", "outcome", "success").timer().count());
+    }
+
+    @Test
+    void recordsBytesAllocatedDuringARun() {
+        graphMetrics.recordRun("workflowGraph", () -> {
+            OverAllState state = new OverAllState();
+            state.registerKeyAndStrategy("solution", new ReplaceStrategy());
+            state.updateState(Map.of("solution", new byte[64 * 1024]));
+            return Optional.of(state);
+        });
+
+        assertEquals(1, registry.get("graph.run").tags("graph", "workflowGraph", "outcome", "success").timer().count());
+        assertTrue(registry.get("graph.run.allocated").tags("graph", "workflowGraph").summary().totalAmount() >= 64 * 1024);
+    }
+
+    @Test
+    void emitsFlightRecorderEventsForNodesAndRoutes() throws Exception {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("input", new ReplaceStrategy());
+        state.registerKeyAndStrategy("classifier_output", new ReplaceStrategy());
+        state.registerKeyAndStrategy("solution", new ReplaceStrategy());
+        state.registerKeyAndStrategy("run_id", new ReplaceStrategy());
+        state.updateState(Map.of("input", "快递太慢了", "classifier_output", "negative feedback", "run_id", "run-1"));
+
+        Path file = Files.createTempFile("graph-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.woniu.graph.Node");
+            recording.enable("com.woniu.graph.Edge");
+            recording.start();
+            graphMetrics.edge("workflowGraph", "feedback_classifier",
+                    new GraphAutoConfiguration.FeedbackQuestionDispatcher()).apply(state);
+            graphMetrics.node("workflowGraph", "recorder", new RecordingNode()).apply(state);
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        RecordedEvent node = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.woniu.graph.Node")).findFirst().orElseThrow();
+        assertEquals("recorder", node.getString("node"));
+        assertEquals("run-1", node.getString("runId"));
+        assertEquals("success", node.getString("outcome"));
+        assertEquals(5, node.getInt("inputChars"));
+        assertEquals("negative feedback".length(), node.getInt("outputChars"));
+        RecordedEvent edge = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.woniu.graph.Edge")).findFirst().orElseThrow();
+        assertEquals("negative", edge.getString("route"));
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.woniu.spring_ai_alibaba_graph_dome.node;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.TokenUsage;
+import com.woniu.spring_ai_alibaba_graph_dome.support.StubChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompactClassifierNodeTest {
+
+    private static final List<String> CATEGORIES = List.of("after-sale service", "transportation", "product quality", "others");
+
+    private final CompactClassifierNode node = new CompactClassifierNode(null, "input", CATEGORIES,
+            "What kind of help is the customer asking for?", 20, 4);
+
+    @Test
+    void mapsCategoryNumberToTheDispatcherLabel() {
+        assertEquals("transportation", node.parse("2"));
+        assertEquals("others", node.parse(" 4.\n"));
+        /* 编号越界或没有编号时按类别原文匹配 */
+        assertEquals("product quality", node.parse("Product Quality"));
+        assertEquals("after-sale service", node.parse("9 - after-sale service"));
+        assertEquals("no idea", node.parse("no idea"));
+    }
+
+    @Test
+    void collapsesWhitespaceAndTruncatesLongInput() {
+        assertEquals("快递 太慢了", CompactClassifierNode.normalize("  快递\n\t太慢了 ", 20));
+        assertEquals("a".repeat(20), CompactClassifierNode.normalize("a".repeat(100), 20));
+        /* 不把表情符号拆成半个代理对 */
+        assertEquals("a", CompactClassifierNode.normalize("a😀", 2));
+    }
+
+    @Test
+    void reportsTokenUsageUnderTheCompactPromptMode() {
+        GraphMetrics graphMetrics = new GraphMetrics(new SimpleMeterRegistry());
+        ChatClient chatClient = ChatClient.builder(new StubChatModel())
+                .defaultAdvisors(graphMetrics.advisor("graph"))
+                .build();
+        CompactClassifierNode compact = new CompactClassifierNode(chatClient, "input", CATEGORIES,
+                "What kind of help is the customer asking for?", 500, 4);
+
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("input", new ReplaceStrategy());
+        state.updateState(Map.of("input", "快递太慢了"));
+
+        assertEquals("transportation", compact.apply(state).get("classifier_output"));
+        TokenUsage.Row row = graphMetrics.tokenUsage().rows().get(0);
+        assertEquals(CompactClassifierNode.PROMPT_MODE, row.prompt());
+        assertEquals(1, row.calls());
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.woniu.spring_ai_alibaba_graph_dome.node;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class FusedFeedbackClassifierNodeTest {
+
+    private final FusedFeedbackClassifierNode node = new FusedFeedbackClassifierNode(null, "input",
+            List.of("positive feedback", "negative feedback"),
+            List.of("after-sale service", "transportation", "product quality", "others"));
+
+    @Test
+    void parsesSentimentAndCategoryFromJson() {
+        Map<String, Object> state = node.parse("```json\n{\"sentiment\": \"Negative Feedback\", \"category\": \"transportation\"}\n```");
+
+        assertEquals("negative feedback", state.get("classifier_output"));
+        assertEquals("negative feedback", state.get(FusedFeedbackClassifierNode.SENTIMENT_KEY));
+        assertEquals("transportation", state.get(FusedFeedbackClassifierNode.CATEGORY_KEY));
+    }
+
+    @Test
+    void unknownCategoryIsLeftForTheFallbackClassifier() {
+        Map<String, Object> state = node.parse("{\"sentiment\": \"negative feedback\", \"category\": \"billing\"}");
+
+        assertEquals("negative feedback", state.get("classifier_output"));
+        assertFalse(state.containsKey(FusedFeedbackClassifierNode.CATEGORY_KEY));
+    }
+
+    @Test
+    void freeTextReplyStillYieldsSentiment() {
+        Map<String, Object> state = node.parse("This is positive feedback.");
+
+        assertEquals("positive feedback", state.get("classifier_output"));
+        assertFalse(state.containsKey(FusedFeedbackClassifierNode.CATEGORY_KEY));
+    }
+
+    @Test
+    void freeTextNegationIsNotReadAsPositive() {
+        assertEquals("negative feedback", node.parse("The feedback is not positive.").get("classifier_output"));
+        assertEquals("negative feedback", node.parse("Negative, not positive").get("classifier_output"));
+        assertEquals("negative feedback", node.parse("no idea").get("classifier_output"));
+    }
+
+}
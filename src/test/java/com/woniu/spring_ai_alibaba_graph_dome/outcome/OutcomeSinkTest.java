@@ -0,0 +1,115 @@
+package com.woniu.spring_ai_alibaba_graph_dome.outcome;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutcomeSinkTest {
+
+    @Test
+    void flushesQueuedRecordsOnShutdown(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("outcomes.jsonl");
+        OutcomeSink sink = sink(file, 100);
+        sink.start();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(sink.submit(record(i % 2 == 0 ? "workflowGraph" : "CustomerGraph", "input-" + i)));
+        }
+        sink.stop();
+
+        assertEquals(50, Files.readAllLines(file).size());
+        assertEquals(50, sink.stats().written());
+        List<OutcomeRecord> recent = sink.recent("CustomerGraph", 3);
+        assertEquals(List.of("input-49", "input-47", "input-45"), recent.stream().map(OutcomeRecord::input).toList());
+    }
+
+    @Test
+    void dropsInsteadOfBlockingWhenQueueIsFull(@TempDir Path dir) throws Exception {
+        /* 不启动写线程，队列只进不出 */
+        OutcomeSink sink = sink(dir.resolve("outcomes.jsonl"), 2);
+
+        assertTrue(sink.submit(record("workflowGraph", "a")));
+        assertTrue(sink.submit(record("workflowGraph", "b")));
+        assertFalse(sink.submit(record("workflowGraph", "c")));
+        assertEquals(1, sink.stats().dropped());
+        assertEquals(2, sink.stats().queued());
+    }
+
+    @Test
+    void rollsOverWhenTheFileGetsTooLarge(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("outcomes.jsonl");
+        OutcomeSink sink = sink(file, 100, 1024, 10);
+        sink.start();
+        for (int i = 0; i < 60; i++) {
+            assertTrue(sink.submit(record("workflowGraph", "input-" + i)));
+            /* 一条一批，让文件多次越过上限 */
+            waitUntil(() -> sink.stats().queued() == 0);
+        }
+        sink.stop();
+
+        assertTrue(Files.exists(dir.resolve("outcomes.jsonl.1")));
+        assertTrue(Files.size(dir.resolve("outcomes.jsonl.1")) >= 1024);
+        int lines = 0;
+        try (var files = Files.list(dir)) {
+            for (Path rolled : files.toList()) {
+                lines += Files.readAllLines(rolled).size();
+            }
+        }
+        assertEquals(60, lines);
+    }
+
+    @Test
+    void writerSurvivesWriteFailures(@TempDir Path dir) throws Exception {
+        /* 目标路径是个目录，打开必然失败 */
+        Path file = Files.createDirectory(dir.resolve("outcomes.jsonl"));
+        OutcomeSink sink = sink(file, 100);
+        sink.start();
+
+        assertTrue(sink.submit(record("workflowGraph", "lost")));
+        waitUntil(() -> sink.stats().failed() == 1);
+        assertEquals(OutcomeSink.MAX_ATTEMPTS, sink.stats().writeErrors());
+
+        Files.delete(file);
+        assertTrue(sink.submit(record("workflowGraph", "kept")));
+        sink.stop();
+
+        assertEquals(1, Files.readAllLines(file).size());
+        assertTrue(Files.readAllLines(file).get(0).contains("kept"));
+        assertEquals(1, sink.stats().written());
+        assertEquals(0, sink.stats().dropped());
+    }
+
+    private static OutcomeSink sink(Path file, int capacity) {
+        return sink(file, capacity, 64 << 20, 5);
+    }
+
+    private static OutcomeSink sink(Path file, int capacity, long maxFileSize, int maxFiles) {
+        return new OutcomeSink(true, file.toString(), capacity, 16, Duration.ofMillis(20), false, 10,
+                DataSize.ofBytes(maxFileSize), maxFiles, new SimpleMeterRegistry());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (!condition.getAsBoolean()) {
+                Thread.sleep(5);
+            }
+        });
+    }
+
+    private static OutcomeRecord record(String graph, String input) {
+        return new OutcomeRecord(System.currentTimeMillis(), graph, null, input, "negative feedback", "transportation",
+                null);
+    }
+
+}
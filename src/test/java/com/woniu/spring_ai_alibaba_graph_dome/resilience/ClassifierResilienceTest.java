@@ -0,0 +1,186 @@
+package com.woniu.spring_ai_alibaba_graph_dome.resilience;
+
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.action.NodeAction;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassifierResilienceTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /* 卡住的模型调用等它，测试结束时放行 */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void slowModelAnswersWithFallbackAtTheRequestDeadline() {
+        CountDownLatch answered = new CountDownLatch(1);
+        NodeAction stuck = state -> {
+            /* 直到测试结束才返回 */
+            release.await();
+            answered.countDown();
+            return Map.of("classifier_output", "transportation");
+        };
+        NodeAction node = resilience(policy(false, 100)).wrap("workflowGraph", "specific_question_classifier",
+                stuck, "others");
+
+        Map<String, Object> output = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> node.apply(state(System.currentTimeMillis() + 200)));
+
+        assertEquals("others", output.get("classifier_output"));
+        assertTrue(FallbackOutput.isFallback(output));
+        /* 兜底结果是在模型回答之前给出的 */
+        assertEquals(1, answered.getCount());
+    }
+
+    @Test
+    void hedgesACallSlowerThanTheRecentPercentile() {
+        /* 前 20 次直接返回攒样本，第 21 次卡住，对冲出去的第 22 次正常返回 */
+        AtomicInteger calls = new AtomicInteger();
+        NodeAction classifier = state -> {
+            if (calls.getAndIncrement() == 20) {
+                release.await();
+            }
+            return Map.of("classifier_output", "transportation");
+        };
+        NodeAction node = resilience(policy(true, 100)).wrap("workflowGraph", "specific_question_classifier",
+                classifier, "others");
+
+        Map<String, Object> output = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 20; i++) {
+                assertEquals("transportation", node.apply(state(null)).get("classifier_output"));
+            }
+            return node.apply(state(null));
+        });
+
+        assertEquals("transportation", output.get("classifier_output"));
+        assertFalse(FallbackOutput.isFallback(output));
+        assertEquals(22, calls.get());
+    }
+
+    @Test
+    void openBreakerStopsCallingTheModelUntilTheProbeSucceeds() throws Exception {
+        MutableClock clock = new MutableClock();
+        AtomicInteger calls = new AtomicInteger();
+        NodeAction flaky = state -> {
+            if (calls.incrementAndGet() <= 4) {
+                throw new IllegalStateException("model unavailable");
+            }
+            return Map.of("classifier_output", "新增设备");
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        NodeAction node = new ClassifierResilience(policy(false, 1000), executor, registry, clock)
+                .wrap("CustomerGraph", "Level1Node", flaky, "Other");
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Other", node.apply(state(null)).get("classifier_output"));
+        }
+        /* 窗口 4 次、全部失败后熔断，后面 6 次都没有调用模型 */
+        assertEquals(4, calls.get());
+        assertEquals(4, registry.get("graph.resilience.fallbacks").tag("reason", "error").counter().count());
+        assertEquals(6, registry.get("graph.resilience.fallbacks").tag("reason", "open").counter().count());
+
+        clock.advance(Duration.ofSeconds(31));
+        /* 熔断时间过后放一个探测请求，成功即恢复 */
+        assertEquals("新增设备", node.apply(state(null)).get("classifier_output"));
+        assertEquals("新增设备", node.apply(state(null)).get("classifier_output"));
+        assertEquals(6, calls.get());
+    }
+
+    @Test
+    void callsAdmittedBeforeTheBreakerOpenedDoNotDecideTheProbe() {
+        MutableClock clock = new MutableClock();
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.5, 30_000, clock);
+        /* 打开之前放行的慢调用 */
+        long slowSuccess = breaker.tryAcquire();
+        long slowFailure = breaker.tryAcquire();
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(breaker.tryAcquire());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        clock.advance(Duration.ofSeconds(31));
+        long probe = breaker.tryAcquire();
+        assertTrue(probe >= 0);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+
+        /* 慢调用这时才回来，既不能关上也不能重新打开熔断 */
+        breaker.onSuccess(slowSuccess);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.onFailure(slowFailure);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.release(slowFailure);
+        assertEquals(-1, breaker.tryAcquire());
+
+        breaker.onSuccess(probe);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    private ClassifierResilience resilience(ClassifierResilience.Policy policy) {
+        return new ClassifierResilience(policy, executor, new SimpleMeterRegistry(), Clock.systemUTC());
+    }
+
+    private static ClassifierResilience.Policy policy(boolean hedge, long hedgeMinDelayMs) {
+        return new ClassifierResilience.Policy(true, Duration.ofSeconds(10), hedge, 0.95,
+                Duration.ofMillis(hedgeMinDelayMs), 20, 0.1, 4, 4, 0.5, Duration.ofSeconds(30));
+    }
+
+    private static OverAllState state(Long deadlineMs) {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("input", new ReplaceStrategy());
+        state.registerKeyAndStrategy(ClassifierResilience.DEADLINE_KEY, new ReplaceStrategy());
+        state.updateState(deadlineMs == null ? Map.of("input", "快递太慢了")
+                : Map.of("input", "快递太慢了", ClassifierResilience.DEADLINE_KEY, deadlineMs));
+        return state;
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+    }
+
+}
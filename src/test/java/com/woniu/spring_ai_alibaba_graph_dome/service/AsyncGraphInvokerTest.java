@@ -0,0 +1,152 @@
+package com.woniu.spring_ai_alibaba_graph_dome.service;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.GraphRegistry;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AsyncGraphInvokerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final CompiledGraph compiledGraph = mock(CompiledGraph.class);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AtomicInteger finished = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void missingSolutionIs204OrTheFallback() throws Exception {
+        when(compiledGraph.invoke(anyMap())).thenReturn(Optional.of(state(Map.of("input", "快递太慢了"))));
+        AsyncGraphInvoker invoker = invoker(4);
+
+        assertEquals(HttpStatus.NO_CONTENT, get(invoker.solution("demo", "快递太慢了", null, null, null)).getStatusCode());
+        ResponseEntity<String> fallback = get(invoker.solution("demo", "快递太慢了", null, null, "没有推荐"));
+        assertEquals(HttpStatus.OK, fallback.getStatusCode());
+        assertEquals("没有推荐", fallback.getBody());
+    }
+
+    @Test
+    void timedOutFollowerGets504WhileTheSharedRunCompletes() throws Exception {
+        blockUntilReleased();
+        AsyncGraphInvoker invoker = invoker(4);
+
+        CompletableFuture<ResponseEntity<String>> patient = invoker.solution("demo", "快递太慢了", null, 5_000L, null);
+        /* 截止时间比领头请求早，合并到它上面；自己的超时只结束自己的副本 */
+        ResponseEntity<String> impatient = get(invoker.solution("demo", "快递太慢了", null, 20L, null));
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, impatient.getStatusCode());
+
+        release.countDown();
+        ResponseEntity<String> response = get(patient);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("solution", response.getBody());
+        assertEquals(1, finished.get());
+    }
+
+    @Test
+    void rejectsWithRetryAfterWhenTooManyGraphsAreRunning() throws Exception {
+        blockUntilReleased();
+        AsyncGraphInvoker invoker = invoker(1);
+
+        /* 超时了，但图还在跑，名额不归还 */
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, get(invoker.solution("demo", "快递太慢了", null, 20L, null)).getStatusCode());
+        ResponseEntity<String> rejected = get(invoker.solution("demo", "质量太差了", null, 20L, null));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+        assertEquals("1", rejected.getHeaders().getFirst("Retry-After"));
+
+        release.countDown();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (invoker.available() == 0) {
+                Thread.sleep(1);
+            }
+        });
+        assertEquals(HttpStatus.OK, get(invoker.solution("demo", "质量太差了", null, 5_000L, null)).getStatusCode());
+    }
+
+    @Test
+    void streamRunsShareTheLimitAndCancelReturnsThePermit() throws Exception {
+        AsyncGraphInvoker invoker = invoker(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        Future<?> run = invoker.submit(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS), "stream run never started");
+        assertThrows(RejectedExecutionException.class, () -> invoker.submit(() -> { }));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+                get(invoker.solution("demo", "快递太慢了", null, 20L, null)).getStatusCode());
+
+        /* 客户端断开：中断图，名额立即归还 */
+        run.cancel(true);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "stream run was not interrupted");
+        assertEquals(1, invoker.available());
+    }
+
+    private AsyncGraphInvoker invoker(int maxInFlight) {
+        GraphRegistry graphRegistry = mock(GraphRegistry.class);
+        when(graphRegistry.get("demo")).thenReturn(compiledGraph);
+        GraphInvocationCoalescer coalescer = new GraphInvocationCoalescer(true, Duration.ofSeconds(5),
+                Duration.ofSeconds(1), new GraphMetrics(new SimpleMeterRegistry()));
+        return new AsyncGraphInvoker(graphRegistry, coalescer, executor, Duration.ofSeconds(5), Duration.ofMinutes(1),
+                maxInFlight);
+    }
+
+    private void blockUntilReleased() {
+        when(compiledGraph.invoke(anyMap())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            finished.incrementAndGet();
+            return Optional.of(state(Map.of("input", "快递太慢了", "solution", "solution")));
+        });
+    }
+
+    private static ResponseEntity<String> get(CompletableFuture<ResponseEntity<String>> response) throws Exception {
+        return response.get(5, TimeUnit.SECONDS);
+    }
+
+    private static OverAllState state(Map<String, Object> values) {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("input", new ReplaceStrategy());
+        state.registerKeyAndStrategy("solution", new ReplaceStrategy());
+        state.updateState(values);
+        return state;
+    }
+
+}
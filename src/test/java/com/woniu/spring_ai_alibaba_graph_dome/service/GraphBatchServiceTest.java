@@ -0,0 +1,167 @@
+package com.woniu.spring_ai_alibaba_graph_dome.service;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.GraphRegistry;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GraphBatchServiceTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final CompiledGraph compiledGraph = mock(CompiledGraph.class);
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void orderedResultsFollowTheInputsWithinTheConcurrencyWindow() throws Exception {
+        /* 越靠前的输入跑得越慢，不按顺序输出的话结果会倒过来 */
+        answer(input -> {
+            Thread.sleep((5 - Integer.parseInt(input)) * 20L);
+            return solution(input);
+        });
+        List<GraphBatchService.BatchItemResult> results = new ArrayList<>();
+
+        GraphBatchService.BatchSummary summary = service(2).run("demo", List.of("0", "1", "2", "3", "4"), 8, true,
+                results::add);
+
+        assertEquals(List.of(0, 1, 2, 3, 4), results.stream().map(GraphBatchService.BatchItemResult::index).toList());
+        assertEquals("solution 3", results.get(3).solution());
+        assertTrue(maxActive.get() <= 2, "window exceeded: " + maxActive.get());
+        assertEquals(2, summary.concurrency());
+        assertEquals(5, summary.total());
+        assertEquals(5, summary.succeeded());
+        assertEquals(0, summary.failed());
+    }
+
+    @Test
+    void failedItemsAreReportedWithoutFailingTheBatch() throws Exception {
+        answer(input -> switch (input) {
+            case "boom" -> throw new IllegalStateException("model unavailable");
+            case "empty" -> Optional.empty();
+            default -> solution(input);
+        });
+        List<GraphBatchService.BatchItemResult> results = new ArrayList<>();
+
+        GraphBatchService.BatchSummary summary = service(4).run("demo", List.of("a", "boom", "empty", "b"), 4, false,
+                results::add);
+
+        results.sort(Comparator.comparingInt(GraphBatchService.BatchItemResult::index));
+        assertEquals("solution a", results.get(0).solution());
+        assertEquals("model unavailable", results.get(1).error());
+        assertNull(results.get(1).solution());
+        assertEquals("no solution", results.get(2).error());
+        assertEquals("solution b", results.get(3).solution());
+        assertTrue(maxActive.get() <= 4);
+        assertEquals(4, summary.total());
+        assertEquals(2, summary.succeeded());
+        assertEquals(2, summary.failed());
+    }
+
+    @Test
+    void clientDisconnectCancelsOutstandingItems() {
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        /* 第一条等第二条开始执行后才返回，第二条一直阻塞到被取消 */
+        answer(input -> {
+            if (input.equals("0")) {
+                await(secondStarted);
+                return solution(input);
+            }
+            secondStarted.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return solution(input);
+        });
+        List<String> inputs = List.of("0", "1", "2", "3", "4", "5", "6", "7");
+
+        assertThrows(UncheckedIOException.class, () -> service(8).run("demo", inputs, 2, true, result -> {
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        }));
+
+        assertTrue(await(interrupted), "running item was not interrupted");
+        assertEquals(2, invocations.get());
+    }
+
+    private GraphBatchService service(int maxConcurrency) {
+        GraphRegistry graphRegistry = mock(GraphRegistry.class);
+        when(graphRegistry.get("demo")).thenReturn(compiledGraph);
+        return new GraphBatchService(graphRegistry, maxConcurrency, executor,
+                new GraphMetrics(new SimpleMeterRegistry()));
+    }
+
+    private void answer(Graph graph) {
+        when(compiledGraph.invoke(anyMap())).thenAnswer(invocation -> {
+            Map<String, Object> inputs = invocation.getArgument(0);
+            invocations.incrementAndGet();
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                return graph.run((String) inputs.get("input"));
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+    }
+
+    private static Optional<OverAllState> solution(String input) {
+        OverAllState state = new OverAllState();
+        state.registerKeyAndStrategy("input", new ReplaceStrategy());
+        state.registerKeyAndStrategy("solution", new ReplaceStrategy());
+        state.updateState(Map.of("input", input, "solution", "solution " + input));
+        return Optional.of(state);
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private interface Graph {
+
+        Optional<OverAllState> run(String input) throws Exception;
+
+    }
+
+}
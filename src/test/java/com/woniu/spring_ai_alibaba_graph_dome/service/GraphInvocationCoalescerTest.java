@@ -0,0 +1,171 @@
+package com.woniu.spring_ai_alibaba_graph_dome.service;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.woniu.spring_ai_alibaba_graph_dome.metrics.GraphMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GraphInvocationCoalescerTest {
+
+    @Test
+    void concurrentIdenticalInputsShareOneExecution() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Optional<OverAllState> result = Optional.of(new OverAllState());
+        CompiledGraph compiledGraph = mock(CompiledGraph.class);
+        when(compiledGraph.invoke(anyMap())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return result;
+        });
+
+        GraphInvocationCoalescer coalescer = coalescer();
+        CompletableFuture<Optional<OverAllState>> leader =
+                CompletableFuture.supplyAsync(() -> coalescer.invoke("demo", compiledGraph, "快递太慢了"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Optional<OverAllState>> follower =
+                CompletableFuture.supplyAsync(() -> coalescer.invoke("demo", compiledGraph, "快递 太慢了！"));
+        /* 等跟随者挂到领头请求上再放行，最多等 5 秒 */
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (coalescer.stats().collapsed() == 0) {
+                Thread.sleep(1);
+            }
+        });
+        release.countDown();
+
+        assertSame(result, leader.get(5, TimeUnit.SECONDS));
+        assertSame(result, follower.get(5, TimeUnit.SECONDS));
+        verify(compiledGraph, times(1)).invoke(anyMap());
+        assertEquals(1, coalescer.stats().executions());
+        assertEquals(0, coalescer.stats().inFlight());
+    }
+
+    @Test
+    void inputsWithNothingLeftAfterNormalizingRunOnTheirOwn() throws Exception {
+        CompiledGraph compiledGraph = mock(CompiledGraph.class);
+        when(compiledGraph.invoke(anyMap())).thenReturn(Optional.of(new OverAllState()));
+        GraphInvocationCoalescer coalescer = coalescer();
+
+        coalescer.invoke("demo", compiledGraph, "😡😡");
+        coalescer.invokeAsync("demo", compiledGraph, "👍", null, Runnable::run).get(5, TimeUnit.SECONDS);
+
+        verify(compiledGraph, times(2)).invoke(anyMap());
+        assertEquals(0, coalescer.stats().collapsed());
+    }
+
+    @Test
+    void asyncFollowerTimeoutDoesNotFailTheSharedExecution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Optional<OverAllState> result = Optional.of(new OverAllState());
+        CompiledGraph compiledGraph = mock(CompiledGraph.class);
+        when(compiledGraph.invoke(anyMap())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return result;
+        });
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            GraphInvocationCoalescer coalescer = coalescer();
+            CompletableFuture<Optional<OverAllState>> leader =
+                    coalescer.invokeAsync("demo", compiledGraph, "快递太慢了", null, executor);
+            CompletableFuture<Optional<OverAllState>> impatient = coalescer
+                    .invokeAsync("demo", compiledGraph, "快递太慢了", null, executor)
+                    .orTimeout(10, TimeUnit.MILLISECONDS);
+
+            ExecutionException timeout = assertThrows(ExecutionException.class, () -> impatient.get(5, TimeUnit.SECONDS));
+            assertTrue(timeout.getCause() instanceof TimeoutException);
+            release.countDown();
+
+            assertSame(result, leader.get(5, TimeUnit.SECONDS));
+            verify(compiledGraph, times(1)).invoke(anyMap());
+            assertEquals(1, coalescer.stats().collapsed());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void differentRunIdsAreNotCoalesced() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompiledGraph compiledGraph = blocking(release);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            GraphInvocationCoalescer coalescer = coalescer();
+            CompletableFuture<Optional<OverAllState>> first =
+                    coalescer.invokeAsync("demo", compiledGraph, "快递太慢了", "run-1", executor);
+            CompletableFuture<Optional<OverAllState>> retry =
+                    coalescer.invokeAsync("demo", compiledGraph, "快递太慢了", "run-1", executor);
+            CompletableFuture<Optional<OverAllState>> other =
+                    coalescer.invokeAsync("demo", compiledGraph, "快递太慢了", "run-2", executor);
+            release.countDown();
+            CompletableFuture.allOf(first, retry, other).get(5, TimeUnit.SECONDS);
+
+            verify(compiledGraph, times(2)).invoke(anyMap());
+            assertEquals(1, coalescer.stats().collapsed());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void followerDoesNotInheritAMuchEarlierDeadline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompiledGraph compiledGraph = blocking(release);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            GraphInvocationCoalescer coalescer = coalescer();
+            long now = System.currentTimeMillis();
+            CompletableFuture<Optional<OverAllState>> leader =
+                    coalescer.invokeAsync("demo", compiledGraph, "快递太慢了", null, now + 2_000, executor);
+            /* 晚到 500ms、超时设置相同：在 deadline-slack 以内，合并 */
+            CompletableFuture<Optional<OverAllState>> close =
+                    coalescer.invokeAsync("demo", compiledGraph, "快递太慢了", null, now + 2_500, executor);
+            /* 超时长得多：自己执行 */
+            CompletableFuture<Optional<OverAllState>> patient =
+                    coalescer.invokeAsync("demo", compiledGraph, "快递太慢了", null, now + 60_000, executor);
+            release.countDown();
+            CompletableFuture.allOf(leader, close, patient).get(5, TimeUnit.SECONDS);
+
+            verify(compiledGraph, times(2)).invoke(anyMap());
+            assertEquals(1, coalescer.stats().collapsed());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static GraphInvocationCoalescer coalescer() {
+        return new GraphInvocationCoalescer(true, Duration.ofSeconds(5), Duration.ofSeconds(1),
+                new GraphMetrics(new SimpleMeterRegistry()));
+    }
+
+    private static CompiledGraph blocking(CountDownLatch release) {
+        CompiledGraph compiledGraph = mock(CompiledGraph.class);
+        when(compiledGraph.invoke(anyMap())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(new OverAllState());
+        });
+        return compiledGraph;
+    }
+
+}
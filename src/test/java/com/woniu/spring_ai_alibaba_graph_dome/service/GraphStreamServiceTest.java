@@ -0,0 +1,163 @@
+package com.woniu.spring_ai_alibaba_graph_dome.service;
+
+import com.alibaba.cloud.ai.graph.CompiledGraph;
+import com.alibaba.cloud.ai.graph.NodeOutput;
+import com.alibaba.cloud.ai.graph.OverAllState;
+import com.alibaba.cloud.ai.graph.StateGraph;
+import com.alibaba.cloud.ai.graph.state.strategy.ReplaceStrategy;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.ParallelBranches;
+import com.woniu.spring_ai_alibaba_graph_dome.graph.StateSchema;
+import org.bsc.async.AsyncGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GraphStreamServiceTest {
+
+    private static final StateSchema SCHEMA = StateSchema.builder()
+            .replace("input", "classifier_output", "solution")
+            .merge("place_query")
+            .build();
+
+    private final GraphStreamService service = new GraphStreamService(1000, null);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void emitsOneEventPerBusinessNodeWithItsDelta() {
+        /* 推荐地点图：queryAnalysis 的三个并行分支各推一条，然后是汇合节点和 recorder */
+        ParallelBranches queryAnalysis = ParallelBranches.builder(SCHEMA, executor)
+                .branch("intentClassifier", state -> Map.of("classifier_output", "with intent"))
+                .branch("placeCategory", state -> Map.of("place_query", Map.of("category", "cafe")))
+                .branch("locationParser", state -> Map.of("place_query", Map.of("location", "杭州")))
+                .build();
+        List<NodeOutput> outputs = List.of(
+                output(StateGraph.START, Map.of("input", "杭州 安静的咖啡馆")),
+                output("queryAnalysis", Map.of("input", "杭州 安静的咖啡馆", "classifier_output", "with intent",
+                        "place_query", Map.of("category", "cafe", "location", "杭州"))),
+                output("recorder", Map.of("input", "杭州 安静的咖啡馆", "classifier_output", "with intent",
+                        "place_query", Map.of("category", "cafe", "location", "杭州"), "solution", "cafe @ 杭州")),
+                output(StateGraph.END, Map.of("input", "杭州 安静的咖啡馆", "classifier_output", "with intent",
+                        "place_query", Map.of("category", "cafe", "location", "杭州"), "solution", "cafe @ 杭州")));
+        CompiledGraph compiledGraph = mock(CompiledGraph.class);
+        when(compiledGraph.stream(anyMap())).thenAnswer(invocation -> {
+            /* 和默认的 graphNodeExecutor 一样，节点在消费 stream 的线程上执行 */
+            queryAnalysis.apply(SCHEMA.newState());
+            return AsyncGenerator.from(outputs.iterator());
+        });
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        service.run(compiledGraph, "杭州 安静的咖啡馆", emitter);
+
+        assertEquals(List.of("node", "node", "node", "node", "node", "done"), emitter.names);
+        Map<Object, Object> branches = new HashMap<>();
+        for (Object event : emitter.data.subList(0, 3)) {
+            branches.put(((Map<?, ?>) event).get("node"), ((Map<?, ?>) event).get("delta"));
+        }
+        assertEquals(Map.of("intentClassifier", Map.of("classifier_output", "with intent"),
+                "placeCategory", Map.of("place_query", Map.of("category", "cafe")),
+                "locationParser", Map.of("place_query", Map.of("location", "杭州"))), branches);
+        Map<?, ?> analysis = (Map<?, ?>) emitter.data.get(3);
+        assertEquals("queryAnalysis", analysis.get("node"));
+        assertEquals(Map.of("classifier_output", "with intent",
+                "place_query", Map.of("category", "cafe", "location", "杭州")), analysis.get("delta"));
+        Map<?, ?> recorder = (Map<?, ?>) emitter.data.get(4);
+        assertEquals("recorder", recorder.get("node"));
+        assertEquals(Map.of("solution", "cafe @ 杭州"), recorder.get("delta"));
+        assertEquals("cafe @ 杭州", ((Map<?, ?>) emitter.data.get(5)).get("solution"));
+        assertTrue(emitter.completed);
+        assertNull(ParallelBranches.listener());
+    }
+
+    @Test
+    void graphFailureIsSentAsAnErrorEvent() {
+        CompiledGraph compiledGraph = mock(CompiledGraph.class);
+        when(compiledGraph.stream(anyMap())).thenThrow(new IllegalStateException("model unavailable"));
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        service.run(compiledGraph, "快递太慢了", emitter);
+
+        assertEquals(List.of("error"), emitter.names);
+        assertEquals(Map.of("message", "model unavailable"), emitter.data.get(0));
+        assertTrue(emitter.completed);
+    }
+
+    @Test
+    void cancelledRunStopsBeforeTheNextNode() {
+        CompiledGraph compiledGraph = graph(List.of(
+                output("feedback_classifier", Map.of("input", "快递太慢了", "classifier_output", "negative")),
+                output("specific_question_classifier", Map.of("input", "快递太慢了", "classifier_output", "negative",
+                        "solution", "transportation"))));
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        /* emitter 的超时 / 断开回调 cancel(true) 中断执行线程 */
+        Thread.currentThread().interrupt();
+        try {
+            service.run(compiledGraph, "快递太慢了", emitter);
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertEquals(List.of("node"), emitter.names);
+        assertFalse(emitter.completed);
+    }
+
+    private static CompiledGraph graph(List<NodeOutput> outputs) {
+        CompiledGraph compiledGraph = mock(CompiledGraph.class);
+        when(compiledGraph.stream(anyMap())).thenAnswer(invocation -> AsyncGenerator.from(outputs.iterator()));
+        return compiledGraph;
+    }
+
+    private static NodeOutput output(String node, Map<String, Object> data) {
+        OverAllState state = new OverAllState();
+        data.keySet().forEach(key -> state.registerKeyAndStrategy(key, new ReplaceStrategy()));
+        state.updateState(data);
+        return NodeOutput.of(node, state);
+    }
+
+    /* 不经过 Servlet 容器，直接记下每条事件的名字和数据 */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<String> names = new ArrayList<>();
+
+        private final List<Object> data = new ArrayList<>();
+
+        private boolean completed;
+
+        /* 并行分支在各自的线程上推送 */
+        @Override
+        public synchronized void send(SseEventBuilder builder) {
+            List<Object> parts = builder.build().stream().map(ResponseBodyEmitter.DataWithMediaType::getData).toList();
+            names.add(parts.get(0).toString().replace("event:", "").replace("data:", "").strip());
+            data.add(parts.get(1));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+    }
+
+}
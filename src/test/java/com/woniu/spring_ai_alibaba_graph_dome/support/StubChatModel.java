@@ -0,0 +1,128 @@
+package com.woniu.spring_ai_alibaba_graph_dome.support;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 进程内的确定性桩模型，用来在不消耗 DashScope 配额的情况下跑通三个工作流。
+ * <p>
+ * 根据提示词里出现的类别列表判断是哪个分类节点，返回固定的类别：
+ * 评价正负 -> negative feedback，负面问题 -> transportation，设备管理 -> 新增设备，地点推荐 -> with intent，
+ * 地点类别 -> cafe，地点抽取 -> 杭州，会话记忆的摘要 -> {@link #SUMMARY}，
+ * 合并分类 -> {"sentiment": "negative feedback", "category": "transportation"}；
+ * 精简提示词（要求只回答编号）时回答上面类别在编号表里的编号；批量提示词按 &lt;text id="n"&gt; 条目逐行回答 "n: 类别"。
+ * 可以注入固定延迟，或者按调用序号（从 0 开始）给出每次的延迟，模拟模型耗时和偶发的长尾。
+ */
+public class StubChatModel implements ChatModel {
+
+    public static final String SUMMARY = "用户在杭州，想找一家安静的咖啡馆。";
+
+    /* 调用序号 -> 延迟（纳秒） */
+    private final LongUnaryOperator latencyNanos;
+
+    private final AtomicLong calls = new AtomicLong();
+
+    public StubChatModel() {
+        this(0, TimeUnit.MILLISECONDS);
+    }
+
+    public StubChatModel(long latency, TimeUnit unit) {
+        long nanos = unit.toNanos(latency);
+        this.latencyNanos = call -> nanos;
+    }
+
+    /**
+     * @param latencyMillis 第 n 次调用（从 0 开始）的延迟毫秒数
+     */
+    public StubChatModel(LongUnaryOperator latencyMillis) {
+        this.latencyNanos = call -> TimeUnit.MILLISECONDS.toNanos(latencyMillis.applyAsLong(call));
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        long latency = latencyNanos.applyAsLong(calls.getAndIncrement());
+        if (latency > 0) {
+            LockSupport.parkNanos(latency);
+        }
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(answer(prompt.getContents())))));
+    }
+
+    /**
+     * 提示词 -> 固定回答；loadtest 的 DashScope HTTP 桩也用它，两边的分类结果一致。
+     */
+    public static String answer(String contents) {
+        String reply = reply(contents);
+        if (contents.contains("Classify each numbered text.")) {
+            return batch(contents, reply);
+        }
+        if (contents.contains("Reply with the category number only.")) {
+            reply = number(contents, reply);
+        }
+        return reply;
+    }
+
+    public long calls() {
+        return calls.get();
+    }
+
+    /* 用户消息里每条 <text id="n">输入</text> 回答一行 "n: label" */
+    private static String batch(String prompt, String label) {
+        StringBuilder reply = new StringBuilder();
+        for (String line : prompt.split("\n")) {
+            int end = line.indexOf("\">");
+            if (line.startsWith("<text id=\"") && end > 10) {
+                reply.append(line, 10, end).append(": ").append(label).append('\n');
+            }
+        }
+        return reply.toString();
+    }
+
+    /* 在 "1. xxx" 形式的编号表里找 label 的编号 */
+    private static String number(String prompt, String label) {
+        for (String line : prompt.split("\n")) {
+            int dot = line.indexOf(". ");
+            if (dot > 0 && line.substring(dot + 2).strip().equals(label)) {
+                return line.substring(0, dot).strip();
+            }
+        }
+        return label;
+    }
+
+    static String reply(String prompt) {
+        if (prompt.contains("新增对话")) {
+            return SUMMARY;
+        }
+        if (prompt.contains("Extract from the text")) {
+            return "杭州";
+        }
+        if (prompt.contains("scenic spot")) {
+            return "cafe";
+        }
+        if (prompt.contains("\"sentiment\"")) {
+            return "{\"sentiment\": \"negative feedback\", \"category\": \"transportation\"}";
+        }
+        if (prompt.contains("after-sale service")) {
+            return "transportation";
+        }
+        if (prompt.contains("negative feedback")) {
+            return "negative feedback";
+        }
+        if (prompt.contains("运维经验录入")) {
+            return "新增设备";
+        }
+        if (prompt.contains("with intent")) {
+            return "with intent";
+        }
+        return "Other";
+    }
+
+}